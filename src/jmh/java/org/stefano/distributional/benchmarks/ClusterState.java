@@ -0,0 +1,41 @@
+package org.stefano.distributional.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.stefano.distributional.model.components.StopWordLexicon;
+import org.stefano.distributional.model.components.TokenCache;
+
+import java.util.List;
+
+/**
+ * The synthetic cluster shared by the stage benchmarks, generated once per trial by {@link SyntheticCluster}.
+ * <p>
+ * Sizes are kept moderate because {@code DefaultPathCompressor} enumerates every path of the {@code word graph},
+ * whose number grows exponentially with the overlap of the sentences.
+ * <p>
+ * The same sentences are encoded on every invocation, hence the {@link TokenCache#global()} cache is disabled
+ * by default, so that encoding includes tokenisation and tagging; {@code -p tokenCache=10000} measures cache hits
+ * instead.
+ */
+@State(Scope.Benchmark)
+public class ClusterState {
+
+    @Param({"5", "10", "20"})
+    public int clusterSize;
+
+    @Param({"8", "12"})
+    public int sentenceLength;
+
+    @Param({"0"})
+    public int tokenCache;
+
+    public List<String> sentences;
+
+    public StopWordLexicon stopWords;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sentences = SyntheticCluster.generate(clusterSize, sentenceLength);
+        stopWords = StopWordLexicon.forLanguage("en");
+        TokenCache.global().setMaximumSize(tokenCache);
+    }
+}
@@ -0,0 +1,70 @@
+package org.stefano.distributional.benchmarks;
+
+import org.neo4j.graphdb.Label;
+import org.openjdk.jmh.annotations.*;
+import org.stefano.distributional.model.components.GraphEncoder;
+import org.stefano.distributional.model.components.GraphWeigher;
+import org.stefano.distributional.model.components.PathCompressor;
+import org.stefano.distributional.model.components.WordGraph;
+import org.stefano.distributional.model.components.impl.AdvancedGraphWeigher;
+import org.stefano.distributional.model.components.impl.DefaultGraphEncoder;
+import org.stefano.distributional.model.components.impl.DefaultPathCompressor;
+import org.stefano.distributional.model.components.impl.OptimalPathCompressor;
+import org.stefano.distributional.model.components.impl.ParallelPathCompressor;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link DefaultPathCompressor#compress} on both back-ends and, for reference,
+ * {@link OptimalPathCompressor#compress} and {@link ParallelPathCompressor#compress} in memory.
+ * <p>
+ * Clusters are encoded and weighed once per trial; compression doesn't modify the graph.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompressBenchmark {
+
+    private final PathCompressor compressor = new DefaultPathCompressor();
+    private final PathCompressor optimal = new OptimalPathCompressor();
+    private final PathCompressor parallel = new ParallelPathCompressor();
+    private WordGraph graph;
+    private Label partition;
+    private int maxLength;
+
+    @Setup(Level.Trial)
+    public void setUp(ClusterState cluster, DatabaseState database) {
+        GraphEncoder encoder = new DefaultGraphEncoder();
+        GraphWeigher weigher = new AdvancedGraphWeigher();
+        graph = new WordGraph();
+        maxLength = encoder.encode(graph, cluster.sentences, cluster.stopWords);
+        weigher.weight(graph);
+        partition = database.nextPartition();
+        encoder.encode(database.graph, partition, cluster.sentences, cluster.stopWords);
+        weigher.weight(database.graph, partition);
+    }
+
+    @Benchmark
+    public Optional<String> inMemory() {
+        return compressor.compress(graph, maxLength);
+    }
+
+    @Benchmark
+    public Optional<String> neo4j(DatabaseState database) {
+        return compressor.compress(database.graph, partition, maxLength);
+    }
+
+    @Benchmark
+    public Optional<String> optimalInMemory() {
+        return optimal.compress(graph, maxLength);
+    }
+
+    @Benchmark
+    public Optional<String> parallelInMemory() {
+        return parallel.compress(graph, maxLength);
+    }
+}
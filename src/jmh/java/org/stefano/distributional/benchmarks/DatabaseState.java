@@ -0,0 +1,65 @@
+package org.stefano.distributional.benchmarks;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.openjdk.jmh.annotations.*;
+import org.stefano.distributional.model.components.GraphModel;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An embedded Neo4j database in a temporary folder, created once per trial and deleted at its end.
+ * Each cluster is encoded in its own partition (see {@link #nextPartition()}), as in the shared mode of
+ * {@code Summarizer}.
+ */
+@State(Scope.Benchmark)
+public class DatabaseState {
+
+    private final AtomicLong partitions = new AtomicLong();
+
+    public GraphDatabaseService graph;
+
+    private Path folder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("compression-benchmark");
+        graph = new GraphDatabaseFactory().newEmbeddedDatabase(folder.toFile());
+        GraphModel.index(graph);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        graph.shutdown();
+        delete(folder);
+    }
+
+    static void delete(Path folder) throws IOException {
+        Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Returns the label of a new, empty partition of the database.
+     *
+     * @return the {@link Label} of the new partition
+     */
+    public Label nextPartition() {
+        return GraphModel.cluster(partitions.incrementAndGet());
+    }
+}
@@ -0,0 +1,63 @@
+package org.stefano.distributional.benchmarks;
+
+import org.neo4j.graphdb.Label;
+import org.openjdk.jmh.annotations.*;
+import org.stefano.distributional.model.components.GraphEncoder;
+import org.stefano.distributional.model.components.GraphModel;
+import org.stefano.distributional.model.components.WordGraph;
+import org.stefano.distributional.model.components.impl.DefaultGraphEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link DefaultGraphEncoder#encode} on both back-ends, in memory both on the heap and off-heap
+ * (see {@link WordGraph#offHeap()}).
+ * <p>
+ * The Neo4j benchmarks encode each cluster in a new partition and drop it afterwards, hence they include the cost
+ * of the clean-up transaction, as the shared mode of {@code Summarizer} does; the bulk one commits a transaction
+ * every {@value GraphModel#BATCH_SIZE} changes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodeBenchmark {
+
+    private static final GraphEncoder ENCODER = new DefaultGraphEncoder();
+    private static final GraphEncoder BULK_ENCODER = new DefaultGraphEncoder(GraphModel.BATCH_SIZE);
+
+    @Benchmark
+    public WordGraph inMemory(ClusterState cluster) {
+        WordGraph graph = new WordGraph();
+        ENCODER.encode(graph, cluster.sentences, cluster.stopWords);
+        return graph;
+    }
+
+    @Benchmark
+    public WordGraph offHeap(ClusterState cluster) {
+        WordGraph graph = WordGraph.offHeap();
+        ENCODER.encode(graph, cluster.sentences, cluster.stopWords);
+        return graph;
+    }
+
+    @Benchmark
+    public int neo4j(ClusterState cluster, DatabaseState database) {
+        Label partition = database.nextPartition();
+        try {
+            return ENCODER.encode(database.graph, partition, cluster.sentences, cluster.stopWords);
+        } finally {
+            GraphModel.drop(database.graph, partition);
+        }
+    }
+
+    @Benchmark
+    public int neo4jBulk(ClusterState cluster, DatabaseState database) {
+        Label partition = database.nextPartition();
+        try {
+            return BULK_ENCODER.encode(database.graph, partition, cluster.sentences, cluster.stopWords);
+        } finally {
+            GraphModel.drop(database.graph, partition);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.stefano.distributional.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.stefano.distributional.model.components.GraphSnapshot;
+import org.stefano.distributional.model.components.WordGraph;
+import org.stefano.distributional.model.components.impl.DefaultGraphEncoder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing a {@link GraphSnapshot} and reading it back into a {@link WordGraph}, to be compared
+ * with {@link EncodeBenchmark#inMemory}.
+ * <p>
+ * Clusters are encoded once per trial; the snapshot file lives in a temporary folder.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+    private GraphSnapshot snapshot;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp(ClusterState cluster) throws IOException {
+        WordGraph graph = new WordGraph();
+        int maxLength = new DefaultGraphEncoder().encode(graph, cluster.sentences, cluster.stopWords);
+        snapshot = GraphSnapshot.of(graph, maxLength);
+        file = Files.createTempFile("snapshot", ".wg");
+        snapshot.write(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        snapshot.write(file);
+    }
+
+    @Benchmark
+    public WordGraph mapAndDecode() throws IOException {
+        return GraphSnapshot.map(file).toWordGraph();
+    }
+}
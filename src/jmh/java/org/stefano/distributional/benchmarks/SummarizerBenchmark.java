@@ -0,0 +1,62 @@
+package org.stefano.distributional.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.stefano.distributional.model.Summarizer;
+import org.stefano.distributional.model.components.impl.AdvancedGraphWeigher;
+import org.stefano.distributional.model.components.impl.DefaultGraphEncoder;
+import org.stefano.distributional.model.components.impl.DefaultPathCompressor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Summarizer#process} end to end (encoding, weighing and compression) in memory and on a
+ * shared Neo4j database, where each call encodes the cluster in a partition which is dropped afterwards.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SummarizerBenchmark {
+
+    @Param({"memory", "shared"})
+    public String mode;
+
+    private Summarizer summarizer;
+    private Path folder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Summarizer.RequiresFolder builder = Summarizer.builder();
+        Summarizer.RequiresEncoder storage;
+        if ("memory".equals(mode)) {
+            storage = builder.inMemory();
+        } else {
+            folder = Files.createTempDirectory("compression-benchmark");
+            storage = builder.onShared(folder);
+        }
+        summarizer = storage
+                .withEncoder(new DefaultGraphEncoder())
+                .withWeigher(new AdvancedGraphWeigher())
+                .withCompressor(new DefaultPathCompressor())
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        summarizer.close();
+        if (folder != null) {
+            DatabaseState.delete(folder);
+        }
+    }
+
+    @Benchmark
+    public Optional<String> process(ClusterState cluster) {
+        return summarizer.process(cluster.sentences, cluster.stopWords);
+    }
+}
@@ -0,0 +1,84 @@
+package org.stefano.distributional.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A deterministic generator of synthetic clusters of related English sentences.
+ * <p>
+ * Sentences follow the pattern {@code subject verb object (preposition determiner noun)*} and draw their words
+ * from small shared vocabularies, so that they overlap as the sentences of a news cluster do and always contain
+ * a verb. The same seed, size and length always produce the same cluster.
+ */
+public final class SyntheticCluster {
+
+    /**
+     * The default seed of the generator.
+     */
+    public static final long SEED = 20170123L;
+
+    private static final String[] SUBJECTS = {"The minister", "The president", "The company", "Local officials",
+            "The committee", "Investors", "The police", "The government", "Protesters", "The board"};
+    private static final String[] VERBS = {"visited", "announced", "rejected", "approved", "criticised",
+            "postponed", "discussed", "welcomed", "signed", "opened"};
+    private static final String[] OBJECTS = {"the plan", "the agreement", "the new factory", "the proposal",
+            "the budget", "the report", "the museum", "the talks", "the deal", "the project"};
+    private static final String[] PREPOSITIONS = {"in", "on", "after", "before", "during", "near", "with", "for"};
+    private static final String[] DETERMINERS = {"the", "a", "this", "their"};
+    private static final String[] NOUNS = {"capital", "morning", "meeting", "summit", "week", "city", "crisis",
+            "election", "visit", "parliament", "weekend", "conference", "region", "border", "evening"};
+
+    private SyntheticCluster() {
+        throw new UnsupportedOperationException("'SyntheticCluster' class should not be instantiated");
+    }
+
+    /**
+     * Returns a cluster of {@code size} sentences of {@code length} words each, generated with {@link #SEED}.
+     *
+     * @param size   the number of sentences
+     * @param length the number of words of each sentence (at least 5)
+     * @return the sentences of the cluster
+     */
+    public static List<String> generate(int size, int length) {
+        return generate(SEED, size, length);
+    }
+
+    /**
+     * Returns a cluster of {@code size} sentences of {@code length} words each, generated with the given {@code seed}.
+     *
+     * @param seed   the seed of the generator
+     * @param size   the number of sentences
+     * @param length the number of words of each sentence (at least 5)
+     * @return the sentences of the cluster
+     */
+    public static List<String> generate(long seed, int size, int length) {
+        if (size < 0) {
+            throw new IllegalArgumentException("'size' is negative: " + size);
+        }
+        if (length < 5) {
+            throw new IllegalArgumentException("'length' is less than 5: " + length);
+        }
+
+        Random random = new Random(seed);
+        List<String> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            List<String> words = new ArrayList<>(length + 2);
+            Collections.addAll(words, pick(random, SUBJECTS).split(" "));
+            words.add(pick(random, VERBS));
+            Collections.addAll(words, pick(random, OBJECTS).split(" "));
+            while (words.size() < length) {
+                words.add(pick(random, PREPOSITIONS));
+                words.add(pick(random, DETERMINERS));
+                words.add(pick(random, NOUNS));
+            }
+            result.add(String.join(" ", words.subList(0, length)) + ".");
+        }
+        return result;
+    }
+
+    private static String pick(Random random, String[] words) {
+        return words[random.nextInt(words.length)];
+    }
+}
@@ -0,0 +1,58 @@
+package org.stefano.distributional.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.stefano.distributional.model.components.GraphEncoder.Token;
+import org.stefano.distributional.utils.NLPPipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput and, by means of the GC profiler ({@code -prof gc}), the garbage per sentence
+ * of {@link Token#parse(String)} against the former regex-based implementation, which is kept here as a baseline.
+ * <p>
+ * Both benchmarks include tokenisation and POS tagging, hence the difference in {@code gc.alloc.rate.norm}
+ * is the garbage saved by the tokenization path itself.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TokenizationBenchmark {
+
+    @Param({
+            "Hillary Clinton paid a visit to the People Republic of China on Monday.",
+            "The wife of a former U.S. president Bill Clinton, Hillary Clinton, visited China last Monday.",
+            "Last week the Secretary State Ms. Clinton -- who was in Beijing -- visited 12 Chinese officials."
+    })
+    public String sentence;
+
+    @Setup
+    public void setUp() {
+        Token.parse(sentence);
+    }
+
+    @Benchmark
+    public Token[] parse() {
+        return Token.parse(sentence);
+    }
+
+    @Benchmark
+    public String[][] parseBaseline() {
+        String trimmed = sentence.trim();
+        String[] tokens = NLPPipeline.tokenize(trimmed);
+        String[] tags = NLPPipeline.tag(tokens);
+        List<String[]> result = new ArrayList<>();
+        for (int i = 0; i < tokens.length; i++) {
+            String symbol = tokens[i].trim();
+            if (symbol.matches("^(?=.*[\\p{L}\\p{N}'-]).+$")) {
+                String token = tokens[i].trim();
+                result.add(new String[]{token.toLowerCase(), token, tags[i].trim()});
+            }
+        }
+        return result.toArray(new String[result.size()][]);
+    }
+}
@@ -0,0 +1,54 @@
+package org.stefano.distributional.benchmarks;
+
+import org.neo4j.graphdb.Label;
+import org.openjdk.jmh.annotations.*;
+import org.stefano.distributional.model.components.GraphEncoder;
+import org.stefano.distributional.model.components.GraphWeigher;
+import org.stefano.distributional.model.components.WordGraph;
+import org.stefano.distributional.model.components.impl.AdvancedGraphWeigher;
+import org.stefano.distributional.model.components.impl.DefaultGraphEncoder;
+import org.stefano.distributional.model.components.impl.NaiveGraphWeigher;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link NaiveGraphWeigher#weight} and {@link AdvancedGraphWeigher#weight} on both back-ends.
+ * <p>
+ * Clusters are encoded once per trial; since weighing overwrites the weights, it can be repeated on the same graph.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WeighBenchmark {
+
+    @Param({"naive", "advanced"})
+    public String weigher;
+
+    private GraphWeigher instance;
+    private WordGraph graph;
+    private Label partition;
+
+    @Setup(Level.Trial)
+    public void setUp(ClusterState cluster, DatabaseState database) {
+        GraphEncoder encoder = new DefaultGraphEncoder();
+        instance = "naive".equals(weigher) ? new NaiveGraphWeigher() : new AdvancedGraphWeigher();
+        graph = new WordGraph();
+        encoder.encode(graph, cluster.sentences, cluster.stopWords);
+        partition = database.nextPartition();
+        encoder.encode(database.graph, partition, cluster.sentences, cluster.stopWords);
+    }
+
+    @Benchmark
+    public WordGraph inMemory() {
+        instance.weight(graph);
+        return graph;
+    }
+
+    @Benchmark
+    public void neo4j(DatabaseState database) {
+        instance.weight(database.graph, partition);
+    }
+}
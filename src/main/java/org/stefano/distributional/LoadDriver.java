@@ -0,0 +1,404 @@
+package org.stefano.distributional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stefano.distributional.metrics.LatencyHistogram;
+import org.stefano.distributional.metrics.Metrics;
+import org.stefano.distributional.metrics.MetricsListener;
+import org.stefano.distributional.metrics.Stage;
+import org.stefano.distributional.model.Summarizer;
+import org.stefano.distributional.model.components.PathCompressor;
+import org.stefano.distributional.model.components.StopWordLexicon;
+import org.stefano.distributional.model.components.TokenCache;
+import org.stefano.distributional.model.components.impl.AdvancedGraphWeigher;
+import org.stefano.distributional.model.components.impl.DefaultGraphEncoder;
+import org.stefano.distributional.model.components.impl.DefaultPathCompressor;
+import org.stefano.distributional.model.components.impl.OptimalPathCompressor;
+import org.stefano.distributional.model.components.impl.ParallelPathCompressor;
+import org.stefano.distributional.utils.ClusterReader;
+import org.stefano.distributional.utils.ClusterReader.Cluster;
+import org.stefano.distributional.utils.Workers;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A load driver which replays a corpus of clusters (see {@link ClusterReader}) through a {@link Summarizer}
+ * with a given concurrency for a given duration, and reports throughput, latency percentiles, heap usage,
+ * the hit rate of the {@link TokenCache} and the slowest clusters with the size of their {@code word graphs}.
+ * <p>
+ * Each worker takes the next cluster of the corpus, starting over from the first when the corpus is exhausted,
+ * until the duration has elapsed. Clusters started during the warm-up are not reported, and each cluster
+ * is listed among the slowest ones with its worst latency only.
+ * Usage:
+ * <pre>
+ *     LoadDriver &lt;file.jsonl|file.tsv&gt; [--concurrency N] [--duration SECONDS] [--warmup SECONDS]
+ *                [--database FOLDER] [--compressor default|optimal|parallel] [--slowest N] [--language CODE]
+ *                [--search-ms MILLIS] [--storage heap|off-heap] [--token-cache SIZE]
+ * </pre>
+ * If {@code --search-ms} is given, the path search of each cluster stops after that time with the best summary
+ * found so far (see {@link org.stefano.distributional.model.components.SearchBudget}).
+ * Without {@code --database}, {@code word graphs} are kept on the heap by default or off-heap with
+ * {@code --storage off-heap}, whose effect shows in the reported heap usage.
+ * Since the corpus is replayed in a loop, every sentence is tokenised and tagged only once as long as it fits
+ * into the {@link TokenCache} ({@value TokenCache#DEFAULT_SIZE} sentences by default): {@code --token-cache 0}
+ * disables the cache, so that latencies include tokenisation and tagging as they do for clusters never seen before.
+ */
+public class LoadDriver {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadDriver.class);
+
+    private static final String USAGE = "Usage: LoadDriver <file.jsonl|file.tsv> [--concurrency N] "
+            + "[--duration SECONDS] [--warmup SECONDS] [--database FOLDER] [--compressor default|optimal|parallel] "
+            + "[--slowest N] [--language CODE] [--search-ms MILLIS] [--storage heap|off-heap] [--token-cache SIZE]";
+
+    private static final ThreadLocal<long[]> GRAPH = ThreadLocal.withInitial(() -> new long[3]);
+
+    private LoadDriver() {
+        throw new UnsupportedOperationException("'LoadDriver' class should not be instantiated");
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        List<Cluster> clusters = ClusterReader.read(options.file);
+        if (clusters.isEmpty()) {
+            System.err.println("No clusters in " + options.file);
+            System.exit(1);
+            return;
+        }
+        logger.info("{} cluster/s read from '{}'.", clusters.size(), options.file);
+        TokenCache.global().setMaximumSize(options.tokenCache);
+
+        Summarizer.RequiresFolder builder = Summarizer.builder();
+        Summarizer.SummarizerBuilder summarizerBuilder = (options.database != null ?
+                builder.onShared(options.database) : options.offHeap ? builder.offHeap() : builder.inMemory())
+                .withEncoder(new DefaultGraphEncoder())
+                .withWeigher(new AdvancedGraphWeigher())
+                .withCompressor(options.compressor);
+        if (options.search > 0) {
+            summarizerBuilder.withSearchTimeout(Duration.ofMillis(options.search));
+        }
+        try (Summarizer summarizer = summarizerBuilder.build()) {
+            Report report = run(summarizer, clusters, StopWordLexicon.forLanguage(options.language), options);
+            report.print(System.out);
+        }
+    }
+
+    private static Report run(Summarizer summarizer, List<Cluster> clusters, StopWordLexicon stopWords,
+                              Options options) throws InterruptedException {
+        MetricsListener listener = new MetricsListener() {
+            @Override
+            public void onStage(Stage stage, long nanos) {
+            }
+
+            @Override
+            public void onGraph(long nodes, long relationships) {
+                long[] graph = GRAPH.get();
+                graph[0] += nodes;
+                graph[1] += relationships;
+            }
+
+            @Override
+            public void onPaths(long paths) {
+                GRAPH.get()[2] += paths;
+            }
+        };
+        Metrics.global().addListener(listener);
+        ExecutorService executor = Workers.newFixedExecutor("load-driver", options.concurrency);
+        try {
+            Report report = new Report(options);
+            AtomicLong next = new AtomicLong();
+            long started = System.nanoTime();
+            long warmedUp = started + TimeUnit.SECONDS.toNanos(options.warmup);
+            long deadline = warmedUp + TimeUnit.SECONDS.toNanos(options.duration);
+            CountDownLatch done = new CountDownLatch(options.concurrency);
+            for (int i = 0; i < options.concurrency; i++) {
+                executor.execute(() -> {
+                    try {
+                        while (System.nanoTime() < deadline) {
+                            Cluster cluster = clusters.get((int) (next.getAndIncrement() % clusters.size()));
+                            long[] graph = GRAPH.get();
+                            Arrays.fill(graph, 0L);
+                            long start = System.nanoTime();
+                            boolean failed = false;
+                            try {
+                                summarizer.process(cluster.getSentences(), stopWords);
+                            } catch (RuntimeException e) {
+                                logger.warn("Cluster '{}' failed: {}", cluster.getId(), e.getMessage(), e);
+                                failed = true;
+                            }
+                            long elapsed = System.nanoTime() - start;
+                            if (start >= warmedUp) {
+                                report.add(new Sample(cluster, elapsed, graph), failed);
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            long remaining;
+            while ((remaining = warmedUp - System.nanoTime()) > 0L
+                    && !done.await(Long.min(remaining, TimeUnit.SECONDS.toNanos(1)), TimeUnit.NANOSECONDS)) {
+                logger.debug("Warming up...");
+            }
+            report.begin(warmedUp);
+            while (!done.await(1, TimeUnit.SECONDS)) {
+                report.sample();
+                logger.info("{} cluster/s completed so far...", report.latencies.getCount());
+            }
+            report.sample();
+            report.end(Long.max(System.nanoTime(), warmedUp));
+            return report;
+        } finally {
+            executor.shutdown();
+            Metrics.global().removeListener(listener);
+        }
+    }
+
+    private static String millis(double nanos) {
+        return String.format("%,.3f", nanos / 1_000_000.0);
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format("%,.1f", bytes / (1024.0 * 1024.0));
+    }
+
+    /**
+     * The command line options of the load driver.
+     */
+    private static final class Options {
+        private Path file;
+        private int concurrency = Runtime.getRuntime().availableProcessors();
+        private long duration = 60;
+        private long warmup = 0;
+        private Path database;
+        private PathCompressor compressor = new DefaultPathCompressor();
+        private int slowest = 10;
+        private String language = "en";
+        private long search = 0;
+        private boolean offHeap = false;
+        private int tokenCache = TokenCache.DEFAULT_SIZE;
+
+        private static Options parse(String[] args) {
+            Options result = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (!arg.startsWith("--")) {
+                    if (result.file != null) {
+                        throw new IllegalArgumentException("Unexpected argument: " + arg);
+                    }
+                    result.file = Paths.get(arg);
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + arg);
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "--concurrency":
+                        result.concurrency = positive(arg, value);
+                        break;
+                    case "--duration":
+                        result.duration = positive(arg, value);
+                        break;
+                    case "--warmup":
+                        result.warmup = Long.max(0, integer(arg, value));
+                        break;
+                    case "--database":
+                        result.database = Paths.get(value);
+                        break;
+                    case "--compressor":
+                        if ("default".equals(value)) {
+                            result.compressor = new DefaultPathCompressor();
+                        } else if ("optimal".equals(value)) {
+                            result.compressor = new OptimalPathCompressor();
+                        } else if ("parallel".equals(value)) {
+                            result.compressor = new ParallelPathCompressor();
+                        } else {
+                            throw new IllegalArgumentException("Unknown compressor: " + value);
+                        }
+                        break;
+                    case "--slowest":
+                        result.slowest = positive(arg, value);
+                        break;
+                    case "--language":
+                        result.language = value;
+                        break;
+                    case "--search-ms":
+                        result.search = positive(arg, value);
+                        break;
+                    case "--storage":
+                        if ("heap".equals(value)) {
+                            result.offHeap = false;
+                        } else if ("off-heap".equals(value)) {
+                            result.offHeap = true;
+                        } else {
+                            throw new IllegalArgumentException("Unknown storage: " + value);
+                        }
+                        break;
+                    case "--token-cache":
+                        result.tokenCache = integer(arg, value);
+                        if (result.tokenCache < 0) {
+                            throw new IllegalArgumentException("Value for " + arg + " is negative: " + value);
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+            if (result.file == null) {
+                throw new IllegalArgumentException("Missing corpus file");
+            }
+            return result;
+        }
+
+        private static int integer(String option, String value) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+            }
+        }
+
+        private static int positive(String option, String value) {
+            int result = integer(option, value);
+            if (result < 1) {
+                throw new IllegalArgumentException("Value for " + option + " is not positive: " + value);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The latency of a cluster and the size of its {@code word graph}.
+     */
+    private static final class Sample {
+        private final Cluster cluster;
+        private final long elapsed;
+        private final long nodes;
+        private final long relationships;
+        private final long paths;
+
+        private Sample(Cluster cluster, long elapsed, long[] graph) {
+            this.cluster = requireNonNull(cluster, "'cluster' is null");
+            this.elapsed = elapsed;
+            this.nodes = graph[0];
+            this.relationships = graph[1];
+            this.paths = graph[2];
+        }
+    }
+
+    /**
+     * The measurements of a run, which are collected concurrently by the workers.
+     */
+    private static final class Report {
+        private final Options options;
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final AtomicLong failures = new AtomicLong();
+        private final Map<Cluster, Sample> slowest = new HashMap<>();
+        private long began;
+        private long ended;
+        private long peakHeap;
+        private long collections;
+        private long collectionTime;
+        private long tokenHits;
+        private long tokenMisses;
+
+        private Report(Options options) {
+            this.options = options;
+        }
+
+        private void add(Sample sample, boolean failed) {
+            latencies.record(sample.elapsed);
+            if (failed) {
+                failures.incrementAndGet();
+            }
+            synchronized (slowest) {
+                slowest.merge(sample.cluster, sample, (a, b) -> a.elapsed >= b.elapsed ? a : b);
+            }
+        }
+
+        /**
+         * Takes the baselines of the collections and of the token cache, which must be called once the warm-up
+         * is over, so that neither includes it.
+         */
+        private void begin(long began) {
+            this.began = began;
+            tokenHits -= TokenCache.global().getHits();
+            tokenMisses -= TokenCache.global().getMisses();
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                collections -= Long.max(0, collector.getCollectionCount());
+                collectionTime -= Long.max(0, collector.getCollectionTime());
+            }
+        }
+
+        private void sample() {
+            peakHeap = Long.max(peakHeap, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        }
+
+        private void end(long ended) {
+            this.ended = ended;
+            tokenHits += TokenCache.global().getHits();
+            tokenMisses += TokenCache.global().getMisses();
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                collections += Long.max(0, collector.getCollectionCount());
+                collectionTime += Long.max(0, collector.getCollectionTime());
+            }
+        }
+
+        private void print(PrintStream out) {
+            double seconds = (ended - began) / 1_000_000_000.0;
+            long count = latencies.getCount();
+            MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            out.printf("Clusters:    %,d (%,d failed) in %,.1f s with %d worker/s%n",
+                    count, failures.get(), seconds, options.concurrency);
+            out.printf("Throughput:  %,.2f cluster/s%n", seconds > 0 ? count / seconds : 0.0);
+            out.printf("Latency:     p50 %s ms, p95 %s ms, p99 %s ms, max %s ms%n",
+                    millis(latencies.getValueAtQuantile(0.50)), millis(latencies.getValueAtQuantile(0.95)),
+                    millis(latencies.getValueAtQuantile(0.99)), millis(latencies.getMax()));
+            out.printf("Heap:        peak %s MB used, %s MB committed, %s MB max%n",
+                    megabytes(peakHeap), megabytes(heap.getCommitted()), megabytes(heap.getMax()));
+            out.printf("GC:          %,d collection/s in %,d ms%n", collections, collectionTime);
+            long lookups = tokenHits + tokenMisses;
+            out.printf("Tokens:      %,.1f%% cache hit rate over %,d sentence/s, %,d cached%n",
+                    lookups > 0 ? tokenHits * 100.0 / lookups : 0.0, lookups, TokenCache.global().getSize());
+            List<Sample> samples;
+            synchronized (slowest) {
+                samples = new ArrayList<>(slowest.values());
+            }
+            samples.sort(Comparator.comparingLong((Sample sample) -> sample.elapsed).reversed());
+            samples = samples.subList(0, Integer.min(options.slowest, samples.size()));
+            out.printf("Slowest %d cluster/s:%n", samples.size());
+            out.printf("  %12s  %9s  %8s  %13s  %12s  %s%n",
+                    "latency (ms)", "sentences", "nodes", "relationships", "paths", "cluster");
+            for (Sample sample : samples) {
+                out.printf("  %12s  %,9d  %,8d  %,13d  %,12d  %s%n", millis(sample.elapsed),
+                        sample.cluster.getSentences().size(), sample.nodes, sample.relationships, sample.paths,
+                        sample.cluster.getId());
+            }
+        }
+    }
+}
@@ -3,16 +3,14 @@ package org.stefano.distributional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.stefano.distributional.model.Summarizer;
+import org.stefano.distributional.model.components.StopWordLexicon;
 import org.stefano.distributional.model.components.impl.AdvancedGraphWeigher;
 import org.stefano.distributional.model.components.impl.DefaultGraphEncoder;
 import org.stefano.distributional.model.components.impl.DefaultPathCompressor;
-import org.stefano.distributional.utils.OpenNLP;
 
 import java.io.IOException;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,7 +24,6 @@ public class Main {
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
 
     public static void main(String[] args) throws IOException {
-        Path folder = Paths.get(args[0]);
 
         List<String> sentences = Arrays.asList(
                 "The wife of a former U.S. president Bill Clinton, Hillary Clinton, visited China last Monday.",
@@ -34,31 +31,31 @@ public class Main {
                 "Hillary Clinton paid a visit to the People Republic of China on Monday.",
                 "Last week the Secretary State Ms. Clinton visited Chinese officials.");
 
-        Collection<String> stopWords = Arrays.asList("a", "able", "about", "above", "after", "all", "also", "an",
-                "and", "any", "as", "ask", "at", "back", "bad", "be", "because", "beneath", "big", "but", "by",
-                "call", "can", "case", "child", "come", "company", "could", "day", "different", "do", "early", "even",
-                "eye", "fact", "feel", "few", "find", "first", "for", "from", "get", "give", "go", "good",
-                "government", "great", "group", "hand", "have", "he", "her", "high", "him", "his", "how", "i", "if",
-                "important", "in", "into", "it", "its", "just", "know", "large", "last", "leave", "life", "like",
-                "little", "long", "look", "make", "man", "me", "most", "my", "new", "next", "no", "not", "now",
-                "number", "of", "old", "on", "one", "only", "or", "other", "our", "out", "over", "own", "part",
-                "people", "person", "place", "point", "problem", "public", "right", "same", "say", "see", "seem",
-                "she", "small", "so", "some", "take", "tell", "than", "that", "the", "their", "them", "then", "there",
-                "these", "they", "thing", "think", "this", "time", "to", "try", "two", "under", "up", "us", "use",
-                "want", "way", "we", "week", "well", "what", "when", "which", "who", "will", "with", "woman", "work",
-                "world", "would", "year", "you", "young", "your");
-
-        Summarizer summarizer = Summarizer.builder()
-                .on(folder)
+        StopWordLexicon stopWords = StopWordLexicon.forLanguage("en");
+
+        Summarizer.RequiresFolder builder = Summarizer.builder();
+        if (args.length == 2) { // streaming mode: <input.jsonl|tsv> <output.jsonl|tsv>
+            try (Summarizer summarizer = builder.inMemory()
+                    .withEncoder(new DefaultGraphEncoder())
+                    .withWeigher(new AdvancedGraphWeigher())
+                    .withCompressor(new DefaultPathCompressor())
+                    .build()) {
+                long count = summarizer.pipeline(stopWords).run(Paths.get(args[0]), Paths.get(args[1]));
+                logger.info("{} summary/ies written to '{}'.", count, args[1]);
+            }
+            return;
+        }
+        try (Summarizer summarizer = (args.length > 0 ? builder.on(Paths.get(args[0])) : builder.inMemory())
                 .withEncoder(new DefaultGraphEncoder())
                 .withWeigher(new AdvancedGraphWeigher())
                 .withCompressor(new DefaultPathCompressor())
-                .build();
-        Optional<String> summary = summarizer.process(sentences, stopWords);
-        if (summary.isPresent()) {
-            System.out.println(" >> " +summary.get());
-        } else {
-            logger.info("No summary available.");
+                .build()) {
+            Optional<String> summary = summarizer.process(sentences, stopWords);
+            if (summary.isPresent()) {
+                System.out.println(" >> " + summary.get());
+            } else {
+                logger.info("No summary available.");
+            }
         }
         logger.info("Done.");
     }
@@ -0,0 +1,47 @@
+package org.stefano.distributional.metrics;
+
+/**
+ * The JMX management interface of the caches of the summarisation (see {@link Metrics#expose(String, CacheMXBean)}).
+ */
+public interface CacheMXBean {
+
+    /**
+     * Returns the number of lookups that found a live entry.
+     *
+     * @return the number of hits
+     */
+    long getHits();
+
+    /**
+     * Returns the number of lookups that found no live entry.
+     *
+     * @return the number of misses
+     */
+    long getMisses();
+
+    /**
+     * Returns the ratio between hits and lookups, or {@code 0} if no lookups happened yet.
+     *
+     * @return the hit rate, between {@code 0} and {@code 1}
+     */
+    double getHitRate();
+
+    /**
+     * Returns the number of entries discarded because the cache was full or they expired.
+     *
+     * @return the number of evictions
+     */
+    long getEvictions();
+
+    /**
+     * Returns the number of entries currently held in memory.
+     *
+     * @return the number of entries in memory
+     */
+    long getSize();
+
+    /**
+     * Discards all the entries.
+     */
+    void clear();
+}
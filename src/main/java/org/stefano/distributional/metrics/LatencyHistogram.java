@@ -0,0 +1,122 @@
+package org.stefano.distributional.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds with a fixed relative error.
+ * <p>
+ * Values are counted in log-linear buckets: each power of two is split into {@code 16} buckets of equal width,
+ * so that a percentile is reported within 6.25% of its exact value in constant memory (less than 8 KB),
+ * whatever the number of values. Recording a value takes a few atomic operations and never allocates.
+ * <p>
+ * Reads are not atomic with respect to concurrent writes, hence percentiles computed while values are being recorded
+ * are approximate as well.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BITS) * SUB_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long highest(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Records the given latency.
+     *
+     * @param nanos the latency in nanoseconds; negative values are recorded as {@code 0}
+     */
+    public void record(long nanos) {
+        long value = Long.max(0L, nanos);
+        buckets.incrementAndGet(index(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Long::max);
+    }
+
+    /**
+     * Returns the number of recorded latencies.
+     *
+     * @return the number of recorded latencies
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the mean of the recorded latencies, in nanoseconds.
+     *
+     * @return the mean latency, {@code 0.0} if none
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0.0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Returns the highest recorded latency, in nanoseconds.
+     *
+     * @return the highest latency, {@code 0} if none
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the latency, in nanoseconds, below which the given fraction of the recorded latencies falls.
+     *
+     * @param quantile the fraction of latencies, between {@code 0.0} and {@code 1.0} (e.g. {@code 0.99})
+     * @return the (upper bound of the bucket of the) latency at the given {@code quantile}, {@code 0} if none
+     */
+    public long getValueAtQuantile(double quantile) {
+        if (quantile < 0.0 || quantile > 1.0) {
+            throw new IllegalArgumentException("'quantile' is not between 0 and 1: " + quantile);
+        }
+
+        long n = count.get();
+        if (n == 0) {
+            return 0L;
+        }
+        long rank = Long.max(1L, (long) Math.ceil(quantile * n));
+        long seen = 0L;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Long.min(highest(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Discards all the recorded latencies.
+     */
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0L);
+        }
+        count.set(0L);
+        sum.set(0L);
+        max.set(0L);
+    }
+}
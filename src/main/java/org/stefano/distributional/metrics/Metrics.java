@@ -0,0 +1,240 @@
+package org.stefano.distributional.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A registry of the latencies (see {@link LatencyHistogram}) of each {@link Stage} of the summarisations
+ * and of the size of their {@code word graphs}.
+ * <p>
+ * The {@link #global()} registry is shared by the whole JVM: the components of a {@code Summarizer} record their
+ * measurements into it, it notifies each measurement to the registered {@link MetricsListener}s and it is
+ * exposed via JMX as {@value #OBJECT_NAME}, so that p50 and p99 latencies can be watched without DEBUG logging.
+ * <p>
+ * Instances are thread-safe; recording a measurement takes a few atomic operations and never blocks.
+ */
+public final class Metrics implements MetricsMXBean {
+
+    /**
+     * The JMX name of the {@link #global()} registry.
+     */
+    public static final String OBJECT_NAME = "org.stefano.distributional:type=Metrics";
+
+    private static final Logger logger = LoggerFactory.getLogger(Metrics.class);
+
+    private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+    private final List<MetricsListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong nodes = new AtomicLong();
+    private final AtomicLong relationships = new AtomicLong();
+    private final AtomicLong paths = new AtomicLong();
+
+    /**
+     * Creates a new, empty registry which is not exposed via JMX.
+     */
+    public Metrics() {
+        for (Stage stage : Stage.values()) {
+            histograms.put(stage, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Returns the registry shared by the whole JVM, which is registered as {@value #OBJECT_NAME}
+     * on the platform MBean server when first used.
+     *
+     * @return the global registry
+     */
+    public static Metrics global() {
+        return Global.INSTANCE;
+    }
+
+    /**
+     * Exposes the given {@code cache} via JMX as {@code org.stefano.distributional:type=Cache,name=<name>},
+     * in place of any cache previously exposed with the same {@code name}.
+     *
+     * @param name  the name of the cache, such as {@code summaries}
+     * @param cache the {@link CacheMXBean} to expose
+     */
+    public static void expose(String name, CacheMXBean cache) {
+        requireNonNull(name, "'name' is null");
+        requireNonNull(cache, "'cache' is null");
+
+        String objectName = "org.stefano.distributional:type=Cache,name=" + ObjectName.quote(name);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName key = new ObjectName(objectName);
+            if (server.isRegistered(key)) {
+                server.unregisterMBean(key);
+            }
+            server.registerMBean(cache, key);
+        } catch (JMException | SecurityException e) {
+            logger.warn("Cache can't be exposed via JMX as '{}'", objectName, e);
+        }
+    }
+
+    private static double millis(double nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Registers the given {@code listener}, which is notified of all the following measurements.
+     *
+     * @param listener the {@link MetricsListener} to register
+     */
+    public void addListener(MetricsListener listener) {
+        requireNonNull(listener, "'listener' is null");
+
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters the given {@code listener}, if registered.
+     *
+     * @param listener the {@link MetricsListener} to unregister
+     */
+    public void removeListener(MetricsListener listener) {
+        requireNonNull(listener, "'listener' is null");
+
+        listeners.remove(listener);
+    }
+
+    /**
+     * Records that an instance of the given {@code stage} completed in the given time.
+     *
+     * @param stage the completed {@link Stage}
+     * @param nanos the elapsed time, in nanoseconds
+     */
+    public void record(Stage stage, long nanos) {
+        requireNonNull(stage, "'stage' is null");
+
+        histograms.get(stage).record(nanos);
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onStage(stage, nanos);
+            } catch (RuntimeException e) {
+                logger.warn("Metrics listener failed: {}", listener, e);
+            }
+        }
+    }
+
+    /**
+     * Records that a cluster has been encoded into a {@code word graph} with the given number of nodes
+     * and {@code FOLLOWS} relationships.
+     *
+     * @param nodes         the number of nodes created
+     * @param relationships the number of {@code FOLLOWS} relationships created
+     */
+    public void recordGraph(long nodes, long relationships) {
+        this.nodes.addAndGet(nodes);
+        this.relationships.addAndGet(relationships);
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onGraph(nodes, relationships);
+            } catch (RuntimeException e) {
+                logger.warn("Metrics listener failed: {}", listener, e);
+            }
+        }
+    }
+
+    /**
+     * Records that a search explored the given number of (possibly partial) paths.
+     *
+     * @param paths the number of paths explored
+     */
+    public void recordPaths(long paths) {
+        this.paths.addAndGet(paths);
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onPaths(paths);
+            } catch (RuntimeException e) {
+                logger.warn("Metrics listener failed: {}", listener, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the histogram of the latencies of the given {@code stage}.
+     *
+     * @param stage the {@link Stage} of interest
+     * @return the {@link LatencyHistogram} of the given {@code stage}
+     */
+    public LatencyHistogram getHistogram(Stage stage) {
+        requireNonNull(stage, "'stage' is null");
+
+        return histograms.get(stage);
+    }
+
+    /**
+     * Returns the latency statistics of the given {@code stage}, in milliseconds.
+     *
+     * @param stage the {@link Stage} of interest
+     * @return the {@link StageStatistics} of the given {@code stage}
+     */
+    public StageStatistics getStatistics(Stage stage) {
+        LatencyHistogram histogram = getHistogram(stage);
+        return new StageStatistics(stage.name(), histogram.getCount(), millis(histogram.getMean()),
+                millis(histogram.getValueAtQuantile(0.5)), millis(histogram.getValueAtQuantile(0.99)),
+                millis(histogram.getMax()));
+    }
+
+    @Override
+    public List<StageStatistics> getStages() {
+        List<StageStatistics> result = new ArrayList<>();
+        for (Stage stage : Stage.values()) {
+            result.add(getStatistics(stage));
+        }
+        return result;
+    }
+
+    @Override
+    public long getNodes() {
+        return nodes.get();
+    }
+
+    @Override
+    public long getRelationships() {
+        return relationships.get();
+    }
+
+    @Override
+    public long getPaths() {
+        return paths.get();
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        nodes.set(0L);
+        relationships.set(0L);
+        paths.set(0L);
+    }
+
+    /**
+     * The lazily initialised {@link #global()} registry.
+     */
+    private static final class Global {
+        private static final Metrics INSTANCE = new Metrics();
+
+        static {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+            } catch (JMException | SecurityException e) {
+                logger.warn("Metrics can't be exposed via JMX as '{}'", OBJECT_NAME, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.stefano.distributional.metrics;
+
+/**
+ * A listener notified by {@link Metrics} of each measurement, for instance to forward them to a monitoring system.
+ * <p>
+ * Listeners are invoked synchronously by the thread which performed the measured work, possibly by many threads
+ * at once: implementations must be thread-safe and should return quickly.
+ */
+@FunctionalInterface
+public interface MetricsListener {
+
+    /**
+     * Notifies that an instance of the given {@code stage} completed in the given time.
+     *
+     * @param stage the completed {@link Stage}
+     * @param nanos the elapsed time, in nanoseconds
+     */
+    void onStage(Stage stage, long nanos);
+
+    /**
+     * Notifies that a cluster has been encoded into a {@code word graph} with the given number of nodes
+     * and {@code FOLLOWS} relationships.
+     *
+     * @param nodes         the number of nodes created
+     * @param relationships the number of {@code FOLLOWS} relationships created
+     */
+    default void onGraph(long nodes, long relationships) {
+    }
+
+    /**
+     * Notifies that a search explored the given number of (possibly partial) paths.
+     *
+     * @param paths the number of paths explored
+     */
+    default void onPaths(long paths) {
+    }
+}
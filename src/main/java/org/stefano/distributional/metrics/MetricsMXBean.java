@@ -0,0 +1,42 @@
+package org.stefano.distributional.metrics;
+
+import java.util.List;
+
+/**
+ * The JMX management interface of {@link Metrics}, registered as {@value Metrics#OBJECT_NAME}.
+ */
+public interface MetricsMXBean {
+
+    /**
+     * Returns the latency statistics of all the stages, in milliseconds.
+     *
+     * @return the {@link List} of {@link StageStatistics}, one per {@link Stage}
+     */
+    List<StageStatistics> getStages();
+
+    /**
+     * Returns the total number of nodes created by the encoders.
+     *
+     * @return the total number of nodes created
+     */
+    long getNodes();
+
+    /**
+     * Returns the total number of {@code FOLLOWS} relationships created by the encoders.
+     *
+     * @return the total number of {@code FOLLOWS} relationships created
+     */
+    long getRelationships();
+
+    /**
+     * Returns the total number of (possibly partial) paths explored by the compressors.
+     *
+     * @return the total number of paths explored
+     */
+    long getPaths();
+
+    /**
+     * Discards all the measurements.
+     */
+    void reset();
+}
@@ -0,0 +1,42 @@
+package org.stefano.distributional.metrics;
+
+/**
+ * The stages of a summarisation whose latency is tracked by {@link Metrics}.
+ */
+public enum Stage {
+
+    /**
+     * The split of a text into sentences.
+     */
+    DETECTION,
+
+    /**
+     * The split of a sentence into tokens.
+     */
+    TOKENIZATION,
+
+    /**
+     * The POS tagging of the tokens of a sentence.
+     */
+    TAGGING,
+
+    /**
+     * The encoding of a cluster of sentences into a {@code word graph}, including the stages above.
+     */
+    ENCODING,
+
+    /**
+     * The weighting of the relationships of a {@code word graph}.
+     */
+    WEIGHTING,
+
+    /**
+     * The search of the best paths of a {@code word graph}.
+     */
+    SEARCH,
+
+    /**
+     * A whole summarisation, from the sentences to the summary.
+     */
+    SUMMARY
+}
@@ -0,0 +1,56 @@
+package org.stefano.distributional.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * An immutable summary of the latencies of a {@link Stage}, in milliseconds, as exposed by {@link MetricsMXBean}.
+ */
+public final class StageStatistics {
+
+    private final String stage;
+    private final long count;
+    private final double mean;
+    private final double p50;
+    private final double p99;
+    private final double max;
+
+    @ConstructorProperties({"stage", "count", "mean", "p50", "p99", "max"})
+    public StageStatistics(String stage, long count, double mean, double p50, double p99, double max) {
+        this.stage = stage;
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getP50() {
+        return p50;
+    }
+
+    public double getP99() {
+        return p99;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %,d call/s, mean %,.3f ms, p50 %,.3f ms, p99 %,.3f ms, max %,.3f ms",
+                stage, count, mean, p50, p99, max);
+    }
+}
@@ -0,0 +1,391 @@
+package org.stefano.distributional.model;
+
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.graphdb.schema.ConstraintDefinition;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stefano.distributional.model.components.GraphEncoder;
+import org.stefano.distributional.model.components.GraphModel;
+import org.stefano.distributional.model.components.StopWordLexicon;
+import org.stefano.distributional.model.components.WordGraph;
+import org.stefano.distributional.utils.ClusterReader.Cluster;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A persistent store of the encoded {@code word graphs} of a corpus of clusters, in a single embedded Neo4j
+ * database, so that each cluster is tokenised, tagged and encoded once and then summarised any number of times,
+ * for instance with different weighers or compressors (see {@link Summarizer#processTopK(CorpusStore, String, int)}).
+ * <p>
+ * Each cluster is encoded in its own partition (see {@link GraphModel#cluster(long)}), with its own {@code START}
+ * and {@code END} nodes, and is registered by a {@code CORPUS} node with its {@code id}, the number of its
+ * partition, its number of sentences and the length of its longest sentence. The {@code id} of {@code CORPUS} nodes
+ * is unique and indexed, hence the partition of a cluster is found in constant time, and its nodes by means of
+ * the label of the partition. Partition numbers are never reused, not even after a cluster is removed.
+ * <p>
+ * Unlike the databases of {@link Summarizer}, the database of a store is never deleted: opening an existing store
+ * gives access to all the clusters added so far. A large corpus is best loaded into a new store in bulk, by
+ * {@link #create(Path, Iterable, Collection, GraphEncoder)}, and then updated by {@link #add}.
+ * Stores are released by {@link #close()}.
+ * Instances are thread-safe, though each database can be opened by a single store at a time.
+ */
+public final class CorpusStore implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CorpusStore.class);
+
+    private static final Label CORPUS = Label.label("CORPUS");
+
+    private final GraphDatabaseService database;
+    private final AtomicLong partitions;
+
+    private CorpusStore(GraphDatabaseService database, long partitions) {
+        this.database = database;
+        this.partitions = new AtomicLong(partitions);
+    }
+
+    /**
+     * Opens the store in the given {@code folder}, which is created if missing.
+     *
+     * @param folder the {@link Path} of the database folder
+     * @return the store in the given {@code folder}
+     */
+    public static CorpusStore open(Path folder) {
+        requireNonNull(folder, "'folder' is null");
+        folder = folder.toAbsolutePath().normalize();
+        if (Files.exists(folder) && !Files.isDirectory(folder)) {
+            throw new IllegalArgumentException("'folder' is not a folder: " + folder);
+        }
+
+        long elapsed = System.nanoTime();
+        GraphDatabaseService database = new GraphDatabaseFactory().newEmbeddedDatabase(folder.toFile());
+        GraphModel.index(database);
+        try (Transaction tx = database.beginTx()) {
+            boolean exists = false;
+            for (ConstraintDefinition constraint : database.schema().getConstraints(CORPUS)) {
+                for (String key : constraint.getPropertyKeys()) {
+                    exists |= "id".equals(key);
+                }
+            }
+            if (!exists) {
+                database.schema().constraintFor(CORPUS).assertPropertyIsUnique("id").create();
+            }
+            tx.success();
+        }
+        long partitions = 0;
+        try (Transaction tx = database.beginTx()) {
+            database.schema().awaitIndexesOnline(1, TimeUnit.MINUTES);
+            String prefix = GraphModel.CLUSTER.name() + "_";
+            for (Label label : database.getAllLabels()) {
+                String name = label.name();
+                if (name.startsWith(prefix) && name.length() > prefix.length()
+                        && name.substring(prefix.length()).chars().allMatch(Character::isDigit)) {
+                    partitions = Long.max(partitions, Long.parseLong(name.substring(prefix.length())) + 1);
+                }
+            }
+            tx.success();
+        }
+        CorpusStore result = new CorpusStore(database, partitions);
+        elapsed = System.nanoTime() - elapsed;
+        logger.info("Corpus store of {} cluster/s opened in {} ms.", result.size(),
+                String.format("%,.3f", elapsed / 1_000_000.0));
+        return result;
+    }
+
+    /**
+     * Creates a new store in the given {@code folder} with all the given {@code clusters}, encoded with respect to
+     * the given {@code stopWords} by means of the given {@code encoder}, and opens it.
+     * <p>
+     * Unlike {@link #addAll(Iterable, Collection, GraphEncoder)}, each cluster is encoded into an in-memory
+     * {@link WordGraph} first and then written by Neo4j batch insertion, without transactions (see
+     * {@link GraphModel#store(BatchInserter, Label, WordGraph)}), which is many times faster for large corpora;
+     * only one cluster at a time is kept on the heap. Clusters whose {@code id} is repeated are skipped.
+     * If the creation fails, the {@code folder} is left in an undefined state.
+     *
+     * @param folder    the {@link Path} of the database folder, which must be missing or empty
+     * @param clusters  the {@link Iterable<Cluster>} to store
+     * @param stopWords the {@link Collection<String>} of common words
+     * @param encoder   the {@link GraphEncoder} to use
+     * @return the new store in the given {@code folder}
+     * @throws IOException if the database can't be created
+     */
+    public static CorpusStore create(Path folder, Iterable<Cluster> clusters, Collection<String> stopWords,
+                                     GraphEncoder encoder) throws IOException {
+        requireNonNull(folder, "'folder' is null");
+        requireNonNull(clusters, "'clusters' is null");
+        requireNonNull(stopWords, "'stopWords' is null");
+        requireNonNull(encoder, "'encoder' is null");
+        folder = folder.toAbsolutePath().normalize();
+        if (Files.exists(folder)) {
+            try (Stream<Path> files = Files.list(folder)) {
+                if (files.findAny().isPresent()) {
+                    throw new IllegalArgumentException("'folder' is not empty: " + folder);
+                }
+            }
+        }
+
+        long elapsed = System.nanoTime();
+        StopWordLexicon lexicon = StopWordLexicon.of(stopWords);
+        Set<String> ids = new HashSet<>();
+        BatchInserter inserter = BatchInserters.inserter(folder.toFile());
+        try {
+            for (Cluster cluster : clusters) {
+                if (!ids.add(cluster.getId())) {
+                    continue;
+                }
+                long partition = ids.size() - 1;
+                WordGraph graph = new WordGraph();
+                int maxLength = encoder.encode(graph, cluster.getSentences(), lexicon);
+                GraphModel.store(inserter, GraphModel.cluster(partition), graph);
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("id", cluster.getId());
+                entry.put("partition", partition);
+                entry.put("sentences", cluster.getSentences().size());
+                entry.put("maxLength", maxLength);
+                inserter.createNode(entry, CORPUS);
+            }
+        } finally {
+            inserter.shutdown();
+        }
+        elapsed = System.nanoTime() - elapsed;
+        logger.info("{} cluster/s inserted in {} ms.", ids.size(), String.format("%,.3f", elapsed / 1_000_000.0));
+        return open(folder);
+    }
+
+    /**
+     * Encodes the given {@code sentences} with respect to the given {@code stopWords} by means of the given
+     * {@code encoder} and stores them as the cluster with the given {@code id}, unless a cluster with the same
+     * {@code id} is stored already. If the encoding fails, whatever it has written is dropped.
+     *
+     * @param id        the identifier of the cluster
+     * @param sentences the {@link List<String>} to encode
+     * @param stopWords the {@link Collection<String>} of common words
+     * @param encoder   the {@link GraphEncoder} to use
+     * @return {@code true} if the cluster has been stored, {@code false} if it was stored already
+     */
+    public boolean add(String id, List<String> sentences, Collection<String> stopWords, GraphEncoder encoder) {
+        requireNonNull(id, "'id' is null");
+        requireNonNull(sentences, "'sentences' is null");
+        requireNonNull(stopWords, "'stopWords' is null");
+        requireNonNull(encoder, "'encoder' is null");
+
+        if (contains(id)) {
+            return false;
+        }
+        long partition = partitions.getAndIncrement();
+        Label label = GraphModel.cluster(partition);
+        int maxLength;
+        try {
+            maxLength = encoder.encode(database, label, sentences, StopWordLexicon.of(stopWords));
+        } catch (RuntimeException | Error e) {
+            GraphModel.drop(database, label);
+            throw e;
+        }
+        try (Transaction tx = database.beginTx()) {
+            Node entry = database.createNode(CORPUS);
+            entry.setProperty("id", id);
+            entry.setProperty("partition", partition);
+            entry.setProperty("sentences", sentences.size());
+            entry.setProperty("maxLength", maxLength);
+            tx.success();
+        } catch (ConstraintViolationException | TransactionFailureException e) {
+            GraphModel.drop(database, label);
+            if (contains(id)) {
+                return false;
+            }
+            throw e;
+        }
+        logger.debug("Cluster '{}' stored in partition {}.", id, label.name());
+        return true;
+    }
+
+    /**
+     * Encodes all the given {@code clusters} with respect to the given {@code stopWords} by means of the given
+     * {@code encoder} and stores them, one after the other, skipping the ones stored already; clusters are
+     * tokenised and tagged only if they are not stored yet.
+     *
+     * @param clusters  the {@link Iterable<Cluster>} to store
+     * @param stopWords the {@link Collection<String>} of common words
+     * @param encoder   the {@link GraphEncoder} to use
+     * @return the number of clusters stored
+     */
+    public int addAll(Iterable<Cluster> clusters, Collection<String> stopWords, GraphEncoder encoder) {
+        requireNonNull(clusters, "'clusters' is null");
+        requireNonNull(stopWords, "'stopWords' is null");
+        requireNonNull(encoder, "'encoder' is null");
+
+        long elapsed = System.nanoTime();
+        StopWordLexicon lexicon = StopWordLexicon.of(stopWords);
+        int result = 0;
+        int skipped = 0;
+        for (Cluster cluster : clusters) {
+            if (add(cluster.getId(), cluster.getSentences(), lexicon, encoder)) {
+                result += 1;
+            } else {
+                skipped += 1;
+            }
+        }
+        elapsed = System.nanoTime() - elapsed;
+        logger.info("{} cluster/s stored ({} already stored) in {} ms.", result, skipped,
+                String.format("%,.3f", elapsed / 1_000_000.0));
+        return result;
+    }
+
+    /**
+     * Removes the cluster with the given {@code id}, if stored, together with its {@code word graph}.
+     *
+     * @param id the identifier of the cluster
+     * @return {@code true} if the cluster has been removed, {@code false} if it was not stored
+     */
+    public boolean remove(String id) {
+        requireNonNull(id, "'id' is null");
+
+        Label partition;
+        try (Transaction tx = database.beginTx()) {
+            Node entry = database.findNode(CORPUS, "id", id);
+            if (entry == null) {
+                return false;
+            }
+            partition = GraphModel.cluster((long) entry.getProperty("partition"));
+            entry.delete();
+            tx.success();
+        }
+        GraphModel.drop(database, partition);
+        return true;
+    }
+
+    /**
+     * Checks whether a cluster with the given {@code id} is stored.
+     *
+     * @param id the identifier of the cluster
+     * @return {@code true} if the cluster is stored, {@code false} otherwise
+     */
+    public boolean contains(String id) {
+        requireNonNull(id, "'id' is null");
+
+        try (Transaction tx = database.beginTx()) {
+            boolean result = database.findNode(CORPUS, "id", id) != null;
+            tx.success();
+            return result;
+        }
+    }
+
+    /**
+     * Returns the identifiers of the clusters stored, in order of addition.
+     *
+     * @return the {@link List<String>} of the identifiers of the clusters
+     */
+    public List<String> getIds() {
+        SortedMap<Long, String> result = new TreeMap<>();
+        try (Transaction tx = database.beginTx()) {
+            ResourceIterator<Node> entries = database.findNodes(CORPUS);
+            while (entries.hasNext()) {
+                Node entry = entries.next();
+                result.put((long) entry.getProperty("partition"), (String) entry.getProperty("id"));
+            }
+            tx.success();
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    public int size() {
+        return getIds().size();
+    }
+
+    /**
+     * Returns the {@link Label} of the partition of the cluster with the given {@code id}, to be used with
+     * the components that work on the database (see {@link #getDatabase()}).
+     *
+     * @param id the identifier of the cluster
+     * @return the {@link Label} of the partition of the cluster
+     * @throws NoSuchElementException if no cluster with the given {@code id} is stored
+     */
+    public Label getPartition(String id) {
+        return GraphModel.cluster((long) getProperty(id, "partition"));
+    }
+
+    /**
+     * Returns the length of the longest sentence of the cluster with the given {@code id}, which bounds the paths
+     * of its compression.
+     *
+     * @param id the identifier of the cluster
+     * @return the length of the longest sentence of the cluster
+     * @throws NoSuchElementException if no cluster with the given {@code id} is stored
+     */
+    public int getMaxLength(String id) {
+        return (int) getProperty(id, "maxLength");
+    }
+
+    private Object getProperty(String id, String key) {
+        requireNonNull(id, "'id' is null");
+
+        try (Transaction tx = database.beginTx()) {
+            Node entry = database.findNode(CORPUS, "id", id);
+            if (entry == null) {
+                throw new NoSuchElementException("Cluster not stored: " + id);
+            }
+            Object result = entry.getProperty(key);
+            tx.success();
+            return result;
+        }
+    }
+
+    /**
+     * Copies the {@code word graph} of the cluster with the given {@code id} into a new in-memory {@link WordGraph}
+     * (see {@link GraphModel#load(GraphDatabaseService, Label)}), which can be weighted and compressed without
+     * affecting the store.
+     *
+     * @param id the identifier of the cluster
+     * @return the {@link WordGraph} of the cluster
+     * @throws NoSuchElementException if no cluster with the given {@code id} is stored
+     */
+    public WordGraph load(String id) {
+        return load(id, new WordGraph());
+    }
+
+    /**
+     * Copies the {@code word graph} of the cluster with the given {@code id} into the given empty {@code target}
+     * (see {@link GraphModel#load(GraphDatabaseService, Label, WordGraph)}), such as an off-heap one,
+     * which can be weighted and compressed without affecting the store.
+     *
+     * @param id     the identifier of the cluster
+     * @param target the empty {@link WordGraph} to fill
+     * @return the given {@code target}
+     * @throws NoSuchElementException if no cluster with the given {@code id} is stored
+     */
+    public WordGraph load(String id, WordGraph target) {
+        requireNonNull(id, "'id' is null");
+        requireNonNull(target, "'target' is null");
+
+        long elapsed = System.nanoTime();
+        WordGraph result = GraphModel.load(database, getPartition(id), target);
+        elapsed = System.nanoTime() - elapsed;
+        logger.debug("Cluster '{}' loaded in {} ms.", id, String.format("%,.3f", elapsed / 1_000_000.0));
+        return result;
+    }
+
+    /**
+     * Returns the database of this store, where the {@code word graph} of each cluster lives in its own partition
+     * (see {@link #getPartition(String)}).
+     *
+     * @return the {@link GraphDatabaseService} of this store
+     */
+    public GraphDatabaseService getDatabase() {
+        return database;
+    }
+
+    @Override
+    public void close() {
+        database.shutdown();
+    }
+}
@@ -0,0 +1,176 @@
+package org.stefano.distributional.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stefano.distributional.model.components.GraphEncoder;
+import org.stefano.distributional.model.components.GraphWeigher;
+import org.stefano.distributional.model.components.PathCompressor;
+import org.stefano.distributional.model.components.PathCompressor.Compression;
+import org.stefano.distributional.model.components.StopWordLexicon;
+import org.stefano.distributional.model.components.WordGraph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A cluster of sentences that changes over time, such as a sliding window over a news stream.
+ * <p>
+ * The cluster is kept in an in-memory {@link WordGraph} which is updated incrementally: adding a content only creates
+ * or updates the nodes and relationships of its sentences, removing a sentence only decreases their {@code frequency},
+ * and in both cases only the {@code FOLLOWS} relationships whose weight is affected by the change are re-weighted.
+ * The cost of an update is therefore proportional to the size of the change rather than to the size of the cluster.
+ * <p>
+ * Notice that the nodes a word is merged into depend on the sentences in the cluster when it is added,
+ * hence after some removals the {@code word graph} may differ from the one obtained by encoding the remaining
+ * sentences from scratch.
+ * <p>
+ * Live clusters should be closed when no longer needed, so that an off-heap {@code word graph} is released at once
+ * (see {@link WordGraph#close()}).
+ * <p>
+ * Instances are thread-safe: updates and summaries are serialised.
+ */
+public final class LiveCluster implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LiveCluster.class);
+
+    private final GraphEncoder encoder;
+    private final GraphWeigher weigher;
+    private final PathCompressor compressor;
+    private final StopWordLexicon stopWords;
+    private final WordGraph graph;
+    private final BitSet live = new BitSet();
+    private final TreeMap<Integer, Integer> lengths = new TreeMap<>();
+
+    LiveCluster(GraphEncoder encoder, GraphWeigher weigher, PathCompressor compressor,
+                StopWordLexicon stopWords, WordGraph graph) {
+        this.encoder = requireNonNull(encoder, "'encoder' is null");
+        this.weigher = requireNonNull(weigher, "'weigher' is null");
+        this.compressor = requireNonNull(compressor, "'compressor' is null");
+        this.stopWords = requireNonNull(stopWords, "'stopWords' is null");
+        this.graph = requireNonNull(graph, "'graph' is null");
+    }
+
+    /**
+     * Adds the given {@code content} to the cluster.
+     *
+     * @param content the text to add, which may contain more than one sentence
+     * @return the {@code id}s of the sentences added to the cluster, to be used with {@link #remove(int)}
+     */
+    public synchronized int[] add(String content) {
+        requireNonNull(content, "'content' is null");
+
+        long elapsed = System.nanoTime();
+        int[] sentences = encoder.add(graph, content, stopWords);
+        for (int sentence : sentences) {
+            live.set(sentence);
+            lengths.merge(graph.getSentenceLength(sentence), 1, Integer::sum);
+        }
+        weigher.weight(graph, touched(sentences));
+        elapsed = System.nanoTime() - elapsed;
+        logger.info("{} sentence/s added in {} ms.",
+                sentences.length, String.format("%,.3f", elapsed / 1_000_000.0));
+        return sentences;
+    }
+
+    /**
+     * Removes the given {@code sentence} from the cluster.
+     *
+     * @param sentence the {@code id} of the sentence to remove, as returned by {@link #add(String)}
+     */
+    public synchronized void remove(int sentence) {
+        if (sentence < 0 || sentence >= graph.getSentenceCount()) {
+            throw new IllegalArgumentException("'sentence' is unknown: " + sentence);
+        }
+        if (!live.get(sentence)) {
+            return;
+        }
+
+        long elapsed = System.nanoTime();
+        int length = graph.getSentenceLength(sentence);
+        int[] nodes = touched(new int[]{sentence});
+        encoder.evict(graph, sentence);
+        live.clear(sentence);
+        lengths.computeIfPresent(length, (k, v) -> v > 1 ? v - 1 : null);
+        weigher.weight(graph, nodes);
+        elapsed = System.nanoTime() - elapsed;
+        logger.info("Sentence #{} removed in {} ms.",
+                sentence, String.format("%,.3f", elapsed / 1_000_000.0));
+    }
+
+    /**
+     * Returns the number of sentences in the cluster.
+     *
+     * @return the number of sentences in the cluster
+     */
+    public synchronized int size() {
+        return live.cardinality();
+    }
+
+    /**
+     * Returns the {@code multi-sentence compression} of the sentences currently in the cluster, if any.
+     *
+     * @return the {@code multi-sentence compression} of the cluster, if any
+     */
+    public synchronized Optional<String> summarize() {
+        if (lengths.isEmpty()) {
+            return Optional.empty();
+        }
+        return compressor.compress(graph, lengths.lastKey());
+    }
+
+    /**
+     * Returns the {@code k} best candidate {@code multi-sentence compressions} of the sentences currently
+     * in the cluster, by increasing cost.
+     *
+     * @param k the maximum number of candidates to return
+     * @return the (at most) {@code k} best {@link Compression}s, by increasing cost
+     */
+    public synchronized List<Compression> summarizeTopK(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("'k' is not positive: " + k);
+        }
+
+        if (lengths.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return compressor.compressTopK(graph, lengths.lastKey(), k);
+    }
+
+    /**
+     * Closes this live cluster and its {@code word graph}, which can't be updated nor summarised any more.
+     */
+    @Override
+    public synchronized void close() {
+        graph.close();
+    }
+
+    private int[] touched(int[] sentences) {
+        int size = 2;
+        for (int sentence : sentences) {
+            size += graph.getSentenceLength(sentence);
+        }
+        int[] result = new int[size];
+        result[0] = WordGraph.START;
+        result[1] = WordGraph.END;
+        int i = 2;
+        for (int sentence : sentences) {
+            for (int pos = 0; pos < graph.getSentenceLength(sentence); pos++) {
+                result[i++] = graph.getSentenceWord(sentence, pos);
+            }
+        }
+        Arrays.sort(result);
+        int unique = 0;
+        for (int j = 0; j < result.length; j++) {
+            if (j == 0 || result[j] != result[j - 1]) {
+                result[unique++] = result[j];
+            }
+        }
+        return Arrays.copyOf(result, unique);
+    }
+}
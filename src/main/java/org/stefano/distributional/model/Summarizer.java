@@ -1,12 +1,22 @@
 package org.stefano.distributional.model;
 
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.factory.GraphDatabaseFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.stefano.distributional.metrics.Metrics;
+import org.stefano.distributional.metrics.Stage;
 import org.stefano.distributional.model.components.GraphEncoder;
+import org.stefano.distributional.model.components.GraphModel;
+import org.stefano.distributional.model.components.GraphSnapshot;
 import org.stefano.distributional.model.components.GraphWeigher;
 import org.stefano.distributional.model.components.PathCompressor;
+import org.stefano.distributional.model.components.PathCompressor.Compression;
+import org.stefano.distributional.model.components.SearchBudget;
+import org.stefano.distributional.model.components.StopWordLexicon;
+import org.stefano.distributional.model.components.WordGraph;
+import org.stefano.distributional.utils.Workers;
 
 import java.io.IOException;
 import java.nio.file.FileVisitResult;
@@ -14,16 +24,53 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * A facade for {@link GraphEncoder}, {@link GraphWeigher} and {@link PathCompressor} to summarise {@code sentences}.
+ * The {@code word graph} is either stored in an embedded Neo4j database or kept in an in-memory {@link WordGraph},
+ * which is kept off-heap for very large clusters (see {@link RequiresFolder#offHeap()}).
+ * <p>
+ * The embedded database is either created from scratch on each call (see {@link RequiresFolder#on(Path)}),
+ * or opened once and shared by all the calls (see {@link RequiresFolder#onShared(Path)}): in the latter case,
+ * each cluster of sentences is encoded in its own partition, which is dropped as soon as the summary is available.
+ * Shared databases are released by {@link #close()}.
+ * <p>
+ * Batches of clusters can be summarised concurrently by means of {@code processAll}, which runs on the
+ * {@link ExecutorService} given to the builder or, by default, on virtual threads where available.
+ * Concurrent calls on a database created from scratch on each call are serialised.
+ * <p>
+ * Stop words are best given as a shared {@link StopWordLexicon}: any other {@link Collection} is converted
+ * into a lexicon once per call, so that each token is looked up in constant time.
+ * <p>
+ * The latency of each stage of the summarisation and the size of the {@code word graphs} are recorded
+ * in the {@link Metrics#global()} registry (see {@link #getMetrics()}), which is also exposed via JMX.
+ * <p>
+ * The path search of each call can be bounded by a timeout and a limit on the paths given to the builder,
+ * or by an explicit {@link SearchBudget}, which can also be cancelled: once the budget is over, the best summary
+ * found so far is returned, hence a pathological cluster can't stall a worker.
+ * <p>
+ * The {@code word graphs} of a whole corpus can be encoded once into a {@link CorpusStore} and summarised from there
+ * any number of times, with different components (see {@link #processTopK(CorpusStore, String, int)}).
+ * <p>
+ * If a {@link SummaryCache} is given to the builder, the summaries of {@code process} (and hence of
+ * {@code processAll} and {@code submit}) are looked up there first and cached once computed.
  */
-public final class Summarizer {
+public final class Summarizer implements AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(Summarizer.class);
 
@@ -31,6 +78,15 @@ public final class Summarizer {
     private final GraphEncoder encoder;
     private final GraphWeigher weigher;
     private final PathCompressor compressor;
+    private final GraphDatabaseService database;
+    private final AtomicLong partitions = new AtomicLong();
+    private final Object lock = new Object();
+    private final ExecutorService executor;
+    private final boolean ownedExecutor;
+    private final SummaryCache cache;
+    private final Duration searchTimeout;
+    private final long maxPaths;
+    private final boolean offHeap;
 
     private Summarizer(SummarizerBuilder builder) {
         requireNonNull(builder, "'builder' is null");
@@ -38,6 +94,22 @@ public final class Summarizer {
         this.encoder = builder.currentEncoder;
         this.weigher = builder.currentWeigher;
         this.compressor = builder.currentCompressor;
+        this.ownedExecutor = builder.currentExecutor == null;
+        this.executor = ownedExecutor ? Workers.newExecutor("summarizer") : builder.currentExecutor;
+        this.cache = builder.currentCache;
+        this.searchTimeout = builder.currentSearchTimeout;
+        this.maxPaths = builder.currentMaxPaths;
+        this.offHeap = builder.currentOffHeap;
+        if (builder.currentShared) {
+            cleanup();
+            long elapsed = System.nanoTime();
+            this.database = new GraphDatabaseFactory().newEmbeddedDatabase(folder.toFile());
+            GraphModel.index(database);
+            elapsed = System.nanoTime() - elapsed;
+            logger.info("Shared database started in {} ms.", String.format("%,.3f", elapsed / 1_000_000.0));
+        } else {
+            this.database = null;
+        }
     }
 
     /**
@@ -52,6 +124,7 @@ public final class Summarizer {
     /**
      * Process the given {@code sentences} with respect to the given {@code stopWords} and returns
      * the equivalent {@code multi-sentence compression}, if any.
+     * The path search is bounded by the default {@link SearchBudget} of this summarizer (see {@link #newBudget()}).
      *
      * @param sentences the {@link List<String>} to compress
      * @param stopWords the {@link Collection<String>} of common words
@@ -61,20 +134,416 @@ public final class Summarizer {
         requireNonNull(sentences, "'sentences' is null");
         requireNonNull(stopWords, "'stopWords' is null");
 
+        return summary(sentences, stopWords, this::newBudget);
+    }
+
+    /**
+     * Process the given {@code sentences} with respect to the given {@code stopWords} within the given
+     * {@code budget}, which may be cancelled by another thread, and returns the equivalent
+     * {@code multi-sentence compression}, if any. If the budget is over before the search completes
+     * (see {@link SearchBudget#isExhausted()}), the summary is the best one found so far, if any,
+     * and it is not cached.
+     *
+     * @param sentences the {@link List<String>} to compress
+     * @param stopWords the {@link Collection<String>} of common words
+     * @param budget    the {@link SearchBudget} of the search
+     * @return the equivalent {@code multi-sentence compression}, if any
+     */
+    public Optional<String> process(List<String> sentences, Collection<String> stopWords, SearchBudget budget) {
+        requireNonNull(sentences, "'sentences' is null");
+        requireNonNull(stopWords, "'stopWords' is null");
+        requireNonNull(budget, "'budget' is null");
+
+        return summary(sentences, stopWords, () -> budget);
+    }
+
+    private Optional<String> summary(List<String> sentences, Collection<String> stopWords,
+                                     Supplier<SearchBudget> budgets) {
         if (sentences.isEmpty()) {
             return Optional.empty();
         }
+        String key = null;
+        if (cache != null) {
+            key = cache.key(sentences, StopWordLexicon.of(stopWords), encoder, weigher, compressor,
+                    folder == null ? "memory" : "neo4j");
+            Optional<String> result = cache.get(key);
+            if (result != null) {
+                logger.debug("Cached summary found for the following sentences:\n\t{}",
+                        String.join("\n\t", sentences));
+                return result;
+            }
+        }
+        Candidates candidates = summarize(sentences, stopWords, 1, budgets);
+        Optional<String> result = candidates.compressions.isEmpty() ?
+                Optional.empty() : candidates.compressions.get(0).getSummary();
+        if (candidates.approximate) {
+            logger.info("Search budget over: the summary is approximate.");
+        } else if (key != null) {
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Process the given {@code sentences} with respect to the given {@code stopWords} and returns
+     * the {@code k} best candidate {@code multi-sentence compressions}, by increasing cost.
+     * The path search is bounded by the default {@link SearchBudget} of this summarizer (see {@link #newBudget()}).
+     *
+     * @param sentences the {@link List<String>} to compress
+     * @param stopWords the {@link Collection<String>} of common words
+     * @param k         the maximum number of candidates to return
+     * @return the (at most) {@code k} best {@link Compression}s, by increasing cost
+     */
+    public List<Compression> processTopK(List<String> sentences, Collection<String> stopWords, int k) {
+        return topK(sentences, stopWords, k, this::newBudget);
+    }
+
+    /**
+     * Process the given {@code sentences} with respect to the given {@code stopWords} within the given
+     * {@code budget}, which may be cancelled by another thread, and returns the {@code k} best candidate
+     * {@code multi-sentence compressions}, by increasing cost. If the budget is over before the search completes,
+     * the candidates are the best ones found so far and they are {@code approximate}.
+     *
+     * @param sentences the {@link List<String>} to compress
+     * @param stopWords the {@link Collection<String>} of common words
+     * @param k         the maximum number of candidates to return
+     * @param budget    the {@link SearchBudget} of the search
+     * @return the (at most) {@code k} best {@link Compression}s, by increasing cost
+     */
+    public List<Compression> processTopK(List<String> sentences, Collection<String> stopWords, int k,
+                                         SearchBudget budget) {
+        requireNonNull(budget, "'budget' is null");
+
+        return topK(sentences, stopWords, k, () -> budget);
+    }
+
+    private List<Compression> topK(List<String> sentences, Collection<String> stopWords, int k,
+                                   Supplier<SearchBudget> budgets) {
+        requireNonNull(sentences, "'sentences' is null");
+        requireNonNull(stopWords, "'stopWords' is null");
+        if (k < 1) {
+            throw new IllegalArgumentException("'k' is not positive: " + k);
+        }
+
+        if (sentences.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return summarize(sentences, stopWords, k, budgets).compressions;
+    }
+
+    /**
+     * Summarises the given {@code sentences}; the budget of the path search is taken from the given supplier
+     * right before the search, so that the default timeout doesn't include the encoding of the cluster.
+     */
+    private Candidates summarize(List<String> sentences, Collection<String> stopWords, int k,
+                                 Supplier<SearchBudget> budgets) {
         long elapsed = System.nanoTime();
+        StopWordLexicon lexicon = StopWordLexicon.of(stopWords);
         logger.debug("Compressing the following sentences:\n\t{}", String.join("\n\t", sentences));
-        cleanup();
-        GraphDatabaseService graph = new GraphDatabaseFactory().newEmbeddedDatabase(folder.toFile());
-        int maxLength = encoder.encode(graph, sentences, stopWords);
-        weigher.weight(graph);
-        Optional<String> summary = compressor.compress(graph, maxLength);
-        graph.shutdown();
+        SearchBudget budget;
+        List<Compression> result;
+        if (folder == null) {
+            try (WordGraph graph = newGraph()) {
+                int maxLength = encoder.encode(graph, sentences, lexicon);
+                weigher.weight(graph);
+                budget = budgets.get();
+                result = compressor.compressTopK(graph, maxLength, k, budget);
+            }
+        } else if (database != null) {
+            Label partition = GraphModel.cluster(partitions.getAndIncrement());
+            try {
+                int maxLength = encoder.encode(database, partition, sentences, lexicon);
+                weigher.weight(database, partition);
+                budget = budgets.get();
+                result = compressor.compressTopK(database, partition, maxLength, k, budget);
+            } finally {
+                GraphModel.drop(database, partition);
+            }
+        } else {
+            synchronized (lock) {
+                cleanup();
+                GraphDatabaseService graph = new GraphDatabaseFactory().newEmbeddedDatabase(folder.toFile());
+                GraphModel.index(graph);
+                int maxLength = encoder.encode(graph, sentences, lexicon);
+                weigher.weight(graph);
+                budget = budgets.get();
+                result = compressor.compressTopK(graph, GraphModel.CLUSTER, maxLength, k, budget);
+                graph.shutdown();
+            }
+        }
+        elapsed = System.nanoTime() - elapsed;
+        Metrics.global().record(Stage.SUMMARY, elapsed);
+        logger.info("Compression completed in {} ms.", String.format("%,.3f", elapsed / 1_000_000.0));
+        return new Candidates(result, budget.isExhausted() || Thread.currentThread().isInterrupted()
+                || (!result.isEmpty() && result.get(0).isApproximate()));
+    }
+
+    /**
+     * Encodes the given {@code sentences} with respect to the given {@code stopWords} into an in-memory
+     * {@code word graph}, which is not weighted, and returns its {@link GraphSnapshot}, so that weighting
+     * and compression can be run many times on it (see {@link #processTopK(GraphSnapshot, int)}).
+     *
+     * @param sentences the {@link List<String>} to encode
+     * @param stopWords the {@link Collection<String>} of common words
+     * @return the {@link GraphSnapshot} of the encoded {@code word graph}
+     */
+    public GraphSnapshot snapshot(List<String> sentences, Collection<String> stopWords) {
+        requireNonNull(sentences, "'sentences' is null");
+        requireNonNull(stopWords, "'stopWords' is null");
+
+        try (WordGraph graph = newGraph()) {
+            int maxLength = encoder.encode(graph, sentences, StopWordLexicon.of(stopWords));
+            return GraphSnapshot.of(graph, maxLength);
+        }
+    }
+
+    /**
+     * Weighs a new {@code word graph} decoded from the given {@code snapshot} and returns its {@code k} best
+     * candidate {@code multi-sentence compressions}, by increasing cost, using the weigher and the compressor
+     * of this summarizer in memory, whatever its storage.
+     * The path search is bounded by the default {@link SearchBudget} of this summarizer (see {@link #newBudget()}).
+     *
+     * @param snapshot the {@link GraphSnapshot} of an encoded {@code word graph}
+     * @param k        the maximum number of candidates to return
+     * @return the (at most) {@code k} best {@link Compression}s, by increasing cost
+     */
+    public List<Compression> processTopK(GraphSnapshot snapshot, int k) {
+        requireNonNull(snapshot, "'snapshot' is null");
+        if (k < 1) {
+            throw new IllegalArgumentException("'k' is not positive: " + k);
+        }
+
+        long elapsed = System.nanoTime();
+        List<Compression> result;
+        try (WordGraph graph = offHeap ? snapshot.toOffHeapWordGraph() : snapshot.toWordGraph()) {
+            weigher.weight(graph);
+            result = compressor.compressTopK(graph, snapshot.getMaxLength(), k, newBudget());
+        }
+        elapsed = System.nanoTime() - elapsed;
+        Metrics.global().record(Stage.SUMMARY, elapsed);
+        logger.info("Compression completed in {} ms.", String.format("%,.3f", elapsed / 1_000_000.0));
+        return result;
+    }
+
+    /**
+     * Weighs a copy of the {@code word graph} of the cluster with the given {@code id} in the given {@code store}
+     * and returns its {@code k} best candidate {@code multi-sentence compressions}, by increasing cost, using
+     * the weigher and the compressor of this summarizer in memory, whatever its storage, and off-heap if so are
+     * the in-memory graphs of this summarizer: the store is not modified, and the cluster is neither tokenised
+     * nor encoded again.
+     * The path search is bounded by the default {@link SearchBudget} of this summarizer (see {@link #newBudget()}).
+     *
+     * @param store the {@link CorpusStore} where the cluster is stored
+     * @param id    the identifier of the cluster
+     * @param k     the maximum number of candidates to return
+     * @return the (at most) {@code k} best {@link Compression}s, by increasing cost
+     * @throws java.util.NoSuchElementException if no cluster with the given {@code id} is stored
+     */
+    public List<Compression> processTopK(CorpusStore store, String id, int k) {
+        requireNonNull(store, "'store' is null");
+        requireNonNull(id, "'id' is null");
+        if (k < 1) {
+            throw new IllegalArgumentException("'k' is not positive: " + k);
+        }
+
+        long elapsed = System.nanoTime();
+        int maxLength = store.getMaxLength(id);
+        List<Compression> result;
+        try (WordGraph graph = newGraph()) {
+            store.load(id, graph);
+            weigher.weight(graph);
+            result = compressor.compressTopK(graph, maxLength, k, newBudget());
+        }
         elapsed = System.nanoTime() - elapsed;
-        logger.info("Compression completed in {} ms.", String.format("%,.3f", elapsed / 1_000_000_000.0));
-        return summary;
+        Metrics.global().record(Stage.SUMMARY, elapsed);
+        logger.info("Compression completed in {} ms.", String.format("%,.3f", elapsed / 1_000_000.0));
+        return result;
+    }
+
+    private WordGraph newGraph() {
+        return offHeap ? WordGraph.offHeap() : new WordGraph();
+    }
+
+    /**
+     * Returns a new {@link SearchBudget} with the default search timeout and limit on the paths of this summarizer
+     * (see {@link SummarizerBuilder#withSearchTimeout(Duration)} and {@link SummarizerBuilder#withMaxPaths(long)}),
+     * if any, starting from now.
+     *
+     * @return a new default {@link SearchBudget}
+     */
+    public SearchBudget newBudget() {
+        SearchBudget result = SearchBudget.unlimited();
+        if (searchTimeout != null) {
+            result = result.withTimeout(searchTimeout);
+        }
+        if (maxPaths > 0) {
+            result = result.withMaxPaths(maxPaths);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the registry of the latencies of the stages of the summarisations and of the size of their
+     * {@code word graphs}, where listeners can be registered as well.
+     * This is the process-wide {@link Metrics#global()} registry, which is shared by all the summarizers
+     * (and the components used on their own), hence it records their summarisations together.
+     *
+     * @return the {@link Metrics#global()} registry
+     */
+    public Metrics getMetrics() {
+        return Metrics.global();
+    }
+
+    /**
+     * Returns a new, empty {@link LiveCluster} that summarises a changing set of sentences with respect
+     * to the given {@code stopWords}, using the components of this summarizer.
+     * Live clusters are always kept in memory, whatever the storage of this summarizer, and off-heap
+     * if so are the in-memory graphs of this summarizer, hence they should be closed when no longer needed.
+     *
+     * @param stopWords the {@link Collection<String>} of common words
+     * @return a new, empty {@link LiveCluster}
+     */
+    public LiveCluster live(Collection<String> stopWords) {
+        requireNonNull(stopWords, "'stopWords' is null");
+
+        return new LiveCluster(encoder, weigher, compressor, StopWordLexicon.of(stopWords), newGraph());
+    }
+
+    /**
+     * Returns a {@link SummaryPipeline} that summarises files of clusters with respect to the given
+     * {@code stopWords}, using the components of this summarizer, with bounded memory.
+     * Pipelines always keep the {@code word graphs} in memory, whatever the storage of this summarizer,
+     * and off-heap if so are the in-memory graphs of this summarizer.
+     *
+     * @param stopWords the {@link Collection<String>} of common words
+     * @return a new {@link SummaryPipeline}
+     */
+    public SummaryPipeline pipeline(Collection<String> stopWords) {
+        requireNonNull(stopWords, "'stopWords' is null");
+
+        return new SummaryPipeline(encoder, weigher, compressor, StopWordLexicon.of(stopWords), this::newBudget,
+                this::newGraph);
+    }
+
+    /**
+     * Process the given {@code clusters} concurrently with respect to the given {@code stopWords} and returns
+     * their equivalent {@code multi-sentence compressions}, if any, in the same order of the {@code clusters}.
+     *
+     * @param clusters  the {@link List} of {@link List<String>} to compress
+     * @param stopWords the {@link Collection<String>} of common words
+     * @return the equivalent {@code multi-sentence compressions}, if any, in input order
+     */
+    public List<Optional<String>> processAll(List<List<String>> clusters, Collection<String> stopWords) {
+        requireNonNull(clusters, "'clusters' is null");
+        requireNonNull(stopWords, "'stopWords' is null");
+
+        List<CompletableFuture<Optional<String>>> futures = submitAll(clusters, stopWords);
+        List<Optional<String>> result = new ArrayList<>(futures.size());
+        for (CompletableFuture<Optional<String>> future : futures) {
+            result.add(join(future));
+        }
+        return result;
+    }
+
+    /**
+     * Process the given {@code clusters} concurrently with respect to the given {@code stopWords} and notifies
+     * the given {@code listener} with the index of each cluster and its {@code multi-sentence compression},
+     * if any, as soon as it is available.
+     * Notice that the {@code listener} may be invoked concurrently by different threads.
+     * This method returns when all the {@code clusters} have been processed.
+     *
+     * @param clusters  the {@link List} of {@link List<String>} to compress
+     * @param stopWords the {@link Collection<String>} of common words
+     * @param listener  the {@link BiConsumer} to notify with the index and the summary of each cluster
+     */
+    public void processAll(List<List<String>> clusters, Collection<String> stopWords,
+                           BiConsumer<Integer, Optional<String>> listener) {
+        requireNonNull(clusters, "'clusters' is null");
+        requireNonNull(stopWords, "'stopWords' is null");
+        requireNonNull(listener, "'listener' is null");
+
+        List<CompletableFuture<Optional<String>>> futures = submitAll(clusters, stopWords);
+        List<CompletableFuture<Void>> notifications = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            int index = i;
+            notifications.add(futures.get(i).thenAccept(summary -> listener.accept(index, summary)));
+        }
+        join(CompletableFuture.allOf(notifications.toArray(new CompletableFuture[notifications.size()])));
+    }
+
+    /**
+     * Submits the given {@code sentences} to be processed asynchronously with respect to the given
+     * {@code stopWords} and returns the future {@code multi-sentence compression}, if any.
+     *
+     * @param sentences the {@link List<String>} to compress
+     * @param stopWords the {@link Collection<String>} of common words
+     * @return the future equivalent {@code multi-sentence compression}, if any
+     */
+    public CompletableFuture<Optional<String>> submit(List<String> sentences, Collection<String> stopWords) {
+        requireNonNull(sentences, "'sentences' is null");
+        requireNonNull(stopWords, "'stopWords' is null");
+
+        return CompletableFuture.supplyAsync(() -> process(sentences, stopWords), executor);
+    }
+
+    /**
+     * Submits the given {@code sentences} to be processed asynchronously with respect to the given
+     * {@code stopWords} within the given {@code budget} (see {@link #process(List, Collection, SearchBudget)})
+     * and returns the future {@code multi-sentence compression}, if any.
+     * Cancelling the returned future doesn't stop the task: cancelling the {@code budget} does, and a task
+     * whose budget is cancelled before it starts fails with a {@link CancellationException} at once.
+     *
+     * @param sentences the {@link List<String>} to compress
+     * @param stopWords the {@link Collection<String>} of common words
+     * @param budget    the {@link SearchBudget} of the search
+     * @return the future equivalent {@code multi-sentence compression}, if any
+     */
+    public CompletableFuture<Optional<String>> submit(List<String> sentences, Collection<String> stopWords,
+                                                      SearchBudget budget) {
+        requireNonNull(sentences, "'sentences' is null");
+        requireNonNull(stopWords, "'stopWords' is null");
+        requireNonNull(budget, "'budget' is null");
+
+        return CompletableFuture.supplyAsync(() -> {
+            if (budget.isCancelled()) {
+                throw new CancellationException("Search budget cancelled");
+            }
+            return process(sentences, stopWords, budget);
+        }, executor);
+    }
+
+    private List<CompletableFuture<Optional<String>>> submitAll(List<List<String>> clusters,
+                                                                Collection<String> stopWords) {
+        StopWordLexicon lexicon = StopWordLexicon.of(stopWords);
+        List<CompletableFuture<Optional<String>>> result = new ArrayList<>(clusters.size());
+        for (List<String> sentences : clusters) {
+            result.add(submit(sentences, lexicon));
+        }
+        return result;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Shuts the shared database and the default {@link ExecutorService} down, if any.
+     */
+    @Override
+    public void close() {
+        if (ownedExecutor) {
+            executor.shutdown();
+        }
+        if (database != null) {
+            database.shutdown();
+        }
     }
 
     private void cleanup() {
@@ -106,7 +575,20 @@ public final class Summarizer {
             }
         }
         elapsed = System.nanoTime() - elapsed;
-        logger.debug("Database ready in {} ms.", String.format("%,.3f", elapsed / 1_000_000_000.0));
+        logger.debug("Database ready in {} ms.", String.format("%,.3f", elapsed / 1_000_000.0));
+    }
+
+    /**
+     * The candidates of a summarisation, which are approximate if the search stopped early.
+     */
+    private static final class Candidates {
+        private final List<Compression> compressions;
+        private final boolean approximate;
+
+        private Candidates(List<Compression> compressions, boolean approximate) {
+            this.compressions = compressions;
+            this.approximate = approximate;
+        }
     }
 
     /**
@@ -114,6 +596,19 @@ public final class Summarizer {
      */
     public interface RequiresFolder {
         RequiresEncoder on(Path folder);
+
+        RequiresEncoder onShared(Path folder);
+
+        RequiresEncoder inMemory();
+
+        /**
+         * Keeps the {@code word graphs} in memory, as {@link #inMemory()} does, but off-heap
+         * (see {@link WordGraph#offHeap()}), so that very large clusters neither fill the heap
+         * nor lengthen GC pauses.
+         *
+         * @return this builder
+         */
+        RequiresEncoder offHeap();
     }
 
     /**
@@ -143,9 +638,15 @@ public final class Summarizer {
     public static class SummarizerBuilder implements RequiresCompressor {
 
         private Path currentFolder;
+        private boolean currentShared;
         private GraphEncoder currentEncoder;
         private GraphWeigher currentWeigher;
         private PathCompressor currentCompressor;
+        private ExecutorService currentExecutor;
+        private SummaryCache currentCache;
+        private Duration currentSearchTimeout;
+        private long currentMaxPaths;
+        private boolean currentOffHeap;
 
         private SummarizerBuilder() {
         }
@@ -158,6 +659,30 @@ public final class Summarizer {
                 throw new IllegalArgumentException("'graph' is not a folder: " + folder);
             }
             currentFolder = folder;
+            currentShared = false;
+            currentOffHeap = false;
+            return this;
+        }
+
+        @Override
+        public RequiresEncoder onShared(Path folder) {
+            on(folder);
+            currentShared = true;
+            return this;
+        }
+
+        @Override
+        public RequiresEncoder inMemory() {
+            currentFolder = null;
+            currentShared = false;
+            currentOffHeap = false;
+            return this;
+        }
+
+        @Override
+        public RequiresEncoder offHeap() {
+            inMemory();
+            currentOffHeap = true;
             return this;
         }
 
@@ -182,6 +707,35 @@ public final class Summarizer {
             return this;
         }
 
+        public SummarizerBuilder withExecutor(ExecutorService executor) {
+            requireNonNull(executor, "'executor' is null");
+            currentExecutor = executor;
+            return this;
+        }
+
+        public SummarizerBuilder withCache(SummaryCache cache) {
+            requireNonNull(cache, "'cache' is null");
+            currentCache = cache;
+            return this;
+        }
+
+        public SummarizerBuilder withSearchTimeout(Duration timeout) {
+            requireNonNull(timeout, "'timeout' is null");
+            if (timeout.isNegative() || timeout.isZero()) {
+                throw new IllegalArgumentException("'timeout' is not positive: " + timeout);
+            }
+            currentSearchTimeout = timeout;
+            return this;
+        }
+
+        public SummarizerBuilder withMaxPaths(long maxPaths) {
+            if (maxPaths < 1) {
+                throw new IllegalArgumentException("'maxPaths' is not positive: " + maxPaths);
+            }
+            currentMaxPaths = maxPaths;
+            return this;
+        }
+
         public Summarizer build() {
             return new Summarizer(this);
         }
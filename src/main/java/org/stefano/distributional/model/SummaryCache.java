@@ -0,0 +1,428 @@
+package org.stefano.distributional.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stefano.distributional.metrics.CacheMXBean;
+import org.stefano.distributional.metrics.Metrics;
+import org.stefano.distributional.model.components.GraphEncoder;
+import org.stefano.distributional.model.components.GraphWeigher;
+import org.stefano.distributional.model.components.PathCompressor;
+import org.stefano.distributional.model.components.StopWordLexicon;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A cache of the summaries of the clusters already seen, to be given to {@link Summarizer.SummarizerBuilder}
+ * so that resubmitted clusters skip the NLP pipeline, the {@code word graph} and the path search altogether.
+ * <p>
+ * Summaries are keyed by a SHA-256 digest of the sentences of the cluster (trimmed, with runs of whitespace
+ * collapsed into a single space, in order), of the stop words (see {@link StopWordLexicon#digest()}), of the classes
+ * of the encoder, weigher and compressor and of the storage of the {@code word graph} (in memory or in Neo4j, which
+ * may break exact ties between candidates differently), hence components must not have any configuration that
+ * affects their result other than their class. Since the ranking of the candidates is deterministic, a cached summary
+ * is the same summary that would be computed again.
+ * <p>
+ * At most {@code maxSize} summaries are kept in memory, where the least recently used ones are evicted first,
+ * and each summary expires {@code ttl} after it has been computed. On-disk caches (see {@link #onDisk(Path, int,
+ * int, Duration)}) also write each summary to a file of their folder, so that they survive restarts: entries missing
+ * from memory are looked up there. At most {@code maxFiles} summaries are kept on disk, where the ones that expire
+ * first are evicted first; expired files are deleted when found and swept whenever a summary is written, hence
+ * the folder doesn't grow however long the cache is used.
+ * <p>
+ * Hits, misses and evictions are counted, and can be exposed via JMX by means of {@link Metrics#expose(String,
+ * CacheMXBean)}. Instances are thread-safe.
+ */
+public final class SummaryCache implements CacheMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(SummaryCache.class);
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * The default maximum number of summaries on disk.
+     */
+    public static final int MAX_FILES = 100_000;
+
+    private final int maxSize;
+    private final int maxFiles;
+    private final long ttl;
+    private final Path folder;
+    private final Map<String, Cached> entries;
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private SummaryCache(int maxSize, int maxFiles, Duration ttl, Path folder) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("'maxSize' is not positive: " + maxSize);
+        }
+        if (maxFiles < 1) {
+            throw new IllegalArgumentException("'maxFiles' is not positive: " + maxFiles);
+        }
+        requireNonNull(ttl, "'ttl' is null");
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("'ttl' is not positive: " + ttl);
+        }
+        this.maxSize = maxSize;
+        this.maxFiles = maxFiles;
+        this.ttl = ttl.toMillis();
+        this.folder = folder;
+        this.entries = new LinkedHashMap<String, Cached>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                if (size() > SummaryCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a new cache that keeps at most {@code maxSize} summaries in memory for the given {@code ttl}.
+     *
+     * @param maxSize the maximum number of summaries in memory
+     * @param ttl     the time a summary is valid for, after it has been computed
+     * @return a new in-memory cache
+     */
+    public static SummaryCache inMemory(int maxSize, Duration ttl) {
+        return new SummaryCache(maxSize, 1, ttl, null);
+    }
+
+    /**
+     * Returns a new cache that keeps at most {@code maxSize} summaries in memory and at most {@value #MAX_FILES}
+     * in the given {@code folder}, for the given {@code ttl}, as {@link #onDisk(Path, int, int, Duration)}.
+     *
+     * @param folder  the {@link Path} of the folder of the summaries, which is created if missing
+     * @param maxSize the maximum number of summaries in memory
+     * @param ttl     the time a summary is valid for, after it has been computed
+     * @return a new on-disk cache
+     * @throws IOException if the folder can't be created or read
+     */
+    public static SummaryCache onDisk(Path folder, int maxSize, Duration ttl) throws IOException {
+        return onDisk(folder, maxSize, Integer.max(maxSize, MAX_FILES), ttl);
+    }
+
+    /**
+     * Returns a new cache that keeps at most {@code maxSize} summaries in memory and at most {@code maxFiles}
+     * in the given {@code folder}, for the given {@code ttl}. The summaries already in the {@code folder} are reused,
+     * if still valid, and the expired ones (as well as the ones that expire first, beyond {@code maxFiles})
+     * are deleted.
+     *
+     * @param folder   the {@link Path} of the folder of the summaries, which is created if missing
+     * @param maxSize  the maximum number of summaries in memory
+     * @param maxFiles the maximum number of summaries on disk
+     * @param ttl      the time a summary is valid for, after it has been computed
+     * @return a new on-disk cache
+     * @throws IOException if the folder can't be created or read
+     */
+    public static SummaryCache onDisk(Path folder, int maxSize, int maxFiles, Duration ttl) throws IOException {
+        requireNonNull(folder, "'folder' is null");
+
+        SummaryCache result = new SummaryCache(maxSize, maxFiles, ttl, folder.toAbsolutePath().normalize());
+        Files.createDirectories(result.folder);
+        long now = System.currentTimeMillis();
+        long[] expired = new long[1];
+        Map<String, Long> valid = new HashMap<>();
+        result.walk(file -> {
+            Cached entry = result.read(file, now);
+            if (entry == null) {
+                expired[0] += 1;
+            } else {
+                valid.put(file.getFileName().toString(), entry.expires);
+            }
+        });
+        List<Map.Entry<String, Long>> sorted = new ArrayList<>(valid.entrySet());
+        sorted.sort(Map.Entry.comparingByValue());
+        for (Map.Entry<String, Long> entry : sorted) {
+            result.files.put(entry.getKey(), entry.getValue());
+        }
+        result.sweep(now);
+        logger.info("Summary cache opened in '{}' ({} summary/ies kept, {} expired summary/ies deleted).",
+                result.folder, result.files.size(), expired[0]);
+        return result;
+    }
+
+    private static String normalize(String sentence) {
+        return WHITESPACE.matcher(sentence.trim()).replaceAll(" ");
+    }
+
+    /**
+     * Returns the key of the summary of the given {@code sentences} with respect to the given {@code stopWords},
+     * components and {@code storage}.
+     */
+    String key(List<String> sentences, StopWordLexicon stopWords, GraphEncoder encoder, GraphWeigher weigher,
+               PathCompressor compressor, String storage) {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        StringBuilder header = new StringBuilder()
+                .append(encoder.getClass().getName()).append('\n')
+                .append(weigher.getClass().getName()).append('\n')
+                .append(compressor.getClass().getName()).append('\n')
+                .append(storage).append('\n')
+                .append(stopWords.digest()).append('\n')
+                .append(sentences.size()).append('\n');
+        sha256.update(header.toString().getBytes(StandardCharsets.UTF_8));
+        for (String sentence : sentences) {
+            sha256.update(normalize(sentence).getBytes(StandardCharsets.UTF_8));
+            sha256.update((byte) '\n');
+        }
+        StringBuilder result = new StringBuilder();
+        for (byte b : sha256.digest()) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns the cached summary with the given {@code key}, or {@code null} if none is valid.
+     */
+    Optional<String> get(String key) {
+        long now = System.currentTimeMillis();
+        Cached entry;
+        boolean expired = false;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.expires <= now) {
+                entries.remove(key);
+                evictions.incrementAndGet();
+                entry = null;
+                expired = true;
+            }
+        }
+        if (expired && folder != null) {
+            forget(key);
+            delete(file(key));
+        } else if (entry == null && folder != null) {
+            entry = read(file(key), now);
+            if (entry != null) {
+                synchronized (entries) {
+                    entries.put(key, entry);
+                }
+            } else {
+                forget(key);
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.summary;
+    }
+
+    /**
+     * Caches the given {@code summary} with the given {@code key}.
+     */
+    void put(String key, Optional<String> summary) {
+        Cached entry = new Cached(summary, System.currentTimeMillis() + ttl);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+        if (folder != null) {
+            write(file(key), entry);
+            synchronized (files) {
+                files.remove(key);
+                files.put(key, entry.expires);
+            }
+            sweep(System.currentTimeMillis());
+        }
+    }
+
+    private void forget(String key) {
+        synchronized (files) {
+            files.remove(key);
+        }
+    }
+
+    /**
+     * Deletes the files of the summaries that have expired at the given time {@code now} and, if there are still
+     * more than {@code maxFiles}, of the ones that expire first. Since all the summaries are valid for the same time,
+     * the files are kept by increasing expiration time and only the ones to be deleted are visited.
+     */
+    private void sweep(long now) {
+        List<String> deleted = new ArrayList<>();
+        synchronized (files) {
+            Iterator<Map.Entry<String, Long>> iterator = files.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Long> eldest = iterator.next();
+                if (eldest.getValue() > now && files.size() <= maxFiles) {
+                    break;
+                }
+                deleted.add(eldest.getKey());
+                iterator.remove();
+            }
+        }
+        for (String key : deleted) {
+            evictions.incrementAndGet();
+            delete(file(key));
+        }
+    }
+
+    private Path file(String key) {
+        return folder.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    /**
+     * Reads the entry in the given {@code file}, if any, and deletes the file if the entry has expired
+     * or can't be read.
+     */
+    private Cached read(Path file, long now) {
+        String content;
+        try {
+            content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.warn("Cached summary can't be read: {}", file, e);
+            return null;
+        }
+        Cached result = null;
+        int newline = content.indexOf('\n');
+        if (newline > 0 && newline + 1 < content.length()) {
+            try {
+                long expires = Long.parseLong(content.substring(0, newline));
+                if (expires > now) {
+                    result = new Cached(content.charAt(newline + 1) == '+' ?
+                            Optional.of(content.substring(newline + 2)) : Optional.empty(), expires);
+                }
+            } catch (NumberFormatException e) {
+                logger.warn("Cached summary is malformed: {}", file);
+            }
+        }
+        if (result == null) {
+            evictions.incrementAndGet();
+            delete(file);
+        }
+        return result;
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Expired summary can't be deleted: {}", file, e);
+        }
+    }
+
+    /**
+     * Writes the given {@code entry} into the given {@code file}, atomically.
+     * Failures are logged, since the summary is still cached in memory.
+     */
+    private void write(Path file, Cached entry) {
+        String content = entry.expires + "\n" + (entry.summary.isPresent() ? "+" + entry.summary.get() : "-");
+        try {
+            Files.createDirectories(file.getParent());
+            Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temporary, content.getBytes(StandardCharsets.UTF_8));
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            logger.warn("Summary can't be cached on disk: {}", file, e);
+        }
+    }
+
+    private void walk(FileAction action) throws IOException {
+        Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (file.getFileName().toString().endsWith(".tmp")) {
+                    Files.delete(file);
+                } else {
+                    action.accept(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public double getHitRate() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return lookups > 0 ? (double) hits / lookups : 0.0;
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public long getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Discards all the summaries, in memory and on disk.
+     */
+    @Override
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        synchronized (files) {
+            files.clear();
+        }
+        if (folder != null) {
+            try {
+                walk(Files::deleteIfExists);
+            } catch (IOException e) {
+                logger.warn("Cached summaries can't be deleted from '{}'", folder, e);
+            }
+        }
+    }
+
+    /**
+     * An action on a file of the cache.
+     */
+    @FunctionalInterface
+    private interface FileAction {
+        void accept(Path file) throws IOException;
+    }
+
+    /**
+     * A cached summary with its expiration time, in milliseconds since the epoch.
+     */
+    private static final class Cached {
+        private final Optional<String> summary;
+        private final long expires;
+
+        private Cached(Optional<String> summary, long expires) {
+            this.summary = summary;
+            this.expires = expires;
+        }
+    }
+}
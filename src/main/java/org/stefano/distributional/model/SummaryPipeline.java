@@ -0,0 +1,317 @@
+package org.stefano.distributional.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stefano.distributional.model.components.GraphEncoder;
+import org.stefano.distributional.model.components.GraphEncoder.Token;
+import org.stefano.distributional.model.components.GraphWeigher;
+import org.stefano.distributional.model.components.PathCompressor;
+import org.stefano.distributional.model.components.PathCompressor.Compression;
+import org.stefano.distributional.model.components.SearchBudget;
+import org.stefano.distributional.model.components.StopWordLexicon;
+import org.stefano.distributional.model.components.WordGraph;
+import org.stefano.distributional.utils.ClusterReader;
+import org.stefano.distributional.utils.ClusterReader.Cluster;
+import org.stefano.distributional.utils.Workers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A streaming pipeline that summarises all the clusters of a (possibly very large) file into another file.
+ * <p>
+ * Clusters are read one at a time (see {@link ClusterReader#open(Path)}) and flow through four stages,
+ * each run by its own workers and connected to the next one by a bounded queue: parsing, encoding into an in-memory
+ * {@link WordGraph}, weighting and compression. A full queue blocks the stage before it, down to the reader,
+ * and the number of clusters in flight is capped as well, hence memory stays flat whatever the size of the input.
+ * <p>
+ * Summaries are written as soon as they are available, in input order, as JSON lines
+ * ({@code {"id": "c1", "summary": "..."}}, with a {@code null} summary if none) or, if the output file ends with
+ * {@code .tsv}, as {@code <cluster id>\t<summary>} lines. A cluster that can't be summarised is reported
+ * with an {@code error} (in JSON) or an empty summary (in TSV) and doesn't stop the pipeline, whereas
+ * an {@link Error} (such as an {@link OutOfMemoryError}) in any stage stops it and makes {@link #run} fail.
+ * The search of each cluster is bounded by the default {@link SearchBudget} of its {@link Summarizer}, if any:
+ * summaries found when the budget was over are marked as {@code "approximate": true} (in JSON).
+ * {@code Word graphs} are kept off-heap if so are the ones of its {@link Summarizer}.
+ * <p>
+ * Instances are immutable and can run any number of files, one after the other or concurrently.
+ */
+public final class SummaryPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(SummaryPipeline.class);
+
+    private static final Item END = new Item(-1L, null);
+
+    private final GraphEncoder encoder;
+    private final GraphWeigher weigher;
+    private final PathCompressor compressor;
+    private final StopWordLexicon stopWords;
+    private final Supplier<SearchBudget> budgets;
+    private final Supplier<WordGraph> graphs;
+    private final int workers;
+    private final int capacity;
+
+    SummaryPipeline(GraphEncoder encoder, GraphWeigher weigher, PathCompressor compressor,
+                    StopWordLexicon stopWords, Supplier<SearchBudget> budgets, Supplier<WordGraph> graphs) {
+        this(encoder, weigher, compressor, stopWords, budgets, graphs, Runtime.getRuntime().availableProcessors(), 0);
+    }
+
+    private SummaryPipeline(GraphEncoder encoder, GraphWeigher weigher, PathCompressor compressor,
+                            StopWordLexicon stopWords, Supplier<SearchBudget> budgets, Supplier<WordGraph> graphs,
+                            int workers, int capacity) {
+        this.encoder = requireNonNull(encoder, "'encoder' is null");
+        this.weigher = requireNonNull(weigher, "'weigher' is null");
+        this.compressor = requireNonNull(compressor, "'compressor' is null");
+        this.stopWords = requireNonNull(stopWords, "'stopWords' is null");
+        this.budgets = requireNonNull(budgets, "'budgets' is null");
+        this.graphs = requireNonNull(graphs, "'graphs' is null");
+        this.workers = workers;
+        this.capacity = capacity > 0 ? capacity : 2 * workers;
+    }
+
+    /**
+     * Returns a copy of this pipeline where each stage is run by the given number of {@code workers}.
+     * By default, stages have a worker per available processor.
+     *
+     * @param workers the number of workers per stage
+     * @return a copy of this pipeline with the given number of {@code workers}
+     */
+    public SummaryPipeline withWorkers(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("'workers' is not positive: " + workers);
+        }
+
+        return new SummaryPipeline(encoder, weigher, compressor, stopWords, budgets, graphs, workers, capacity);
+    }
+
+    /**
+     * Returns a copy of this pipeline where the queue between two stages holds at most {@code capacity} clusters.
+     * By default, queues hold twice as many clusters as the workers per stage.
+     *
+     * @param capacity the capacity of the queues between stages
+     * @return a copy of this pipeline with the given queue {@code capacity}
+     */
+    public SummaryPipeline withQueueCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("'capacity' is not positive: " + capacity);
+        }
+
+        return new SummaryPipeline(encoder, weigher, compressor, stopWords, budgets, graphs, workers, capacity);
+    }
+
+    /**
+     * Summarises all the clusters in the given {@code input} file into the given {@code output} file,
+     * which is overwritten.
+     *
+     * @param input  the {@link Path} of a {@code .jsonl} or {@code .tsv} file of clusters (see {@link ClusterReader})
+     * @param output the {@link Path} of the file of summaries
+     * @return the number of clusters processed
+     * @throws IOException if either file can't be read or written
+     */
+    public long run(Path input, Path output) throws IOException {
+        requireNonNull(input, "'input' is null");
+        requireNonNull(output, "'output' is null");
+
+        long elapsed = System.nanoTime();
+        boolean tsv = output.getFileName().toString().toLowerCase().endsWith(".tsv");
+        List<Consumer<Item>> stages = new ArrayList<>();
+        stages.add(item -> item.tokens = GraphEncoder.parse(item.cluster.getSentences()));
+        stages.add(item -> {
+            item.graph = graphs.get();
+            item.maxLength = encoder.encode(item.graph, item.tokens, stopWords);
+            item.tokens = null;
+        });
+        stages.add(item -> weigher.weight(item.graph));
+        stages.add(item -> {
+            List<Compression> compressions = compressor.compressTopK(item.graph, item.maxLength, 1, budgets.get());
+            if (!compressions.isEmpty()) {
+                item.summary = compressions.get(0).getSummary();
+                item.approximate = compressions.get(0).isApproximate();
+            } else {
+                item.summary = Optional.empty();
+            }
+            item.close();
+        });
+        List<BlockingQueue<Item>> queues = new ArrayList<>();
+        for (int i = 0; i <= stages.size(); i++) {
+            queues.add(new ArrayBlockingQueue<>(capacity));
+        }
+        Semaphore inFlight = new Semaphore((stages.size() + 1) * (capacity + workers));
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ExecutorService executor = Workers.newFixedExecutor("pipeline", stages.size() * workers + 1);
+        long count = 0;
+        try (ClusterReader.Source source = ClusterReader.open(input);
+             BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            executor.execute(() -> {
+                try {
+                    long seq = 0;
+                    Cluster cluster;
+                    while ((cluster = source.next()) != null) {
+                        inFlight.acquire();
+                        queues.get(0).put(new Item(seq++, cluster));
+                    }
+                    queues.get(0).put(END);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            for (int i = 0; i < stages.size(); i++) {
+                AtomicInteger running = new AtomicInteger(workers);
+                for (int j = 0; j < workers; j++) {
+                    BlockingQueue<Item> in = queues.get(i);
+                    BlockingQueue<Item> out = queues.get(i + 1);
+                    Consumer<Item> stage = stages.get(i);
+                    executor.execute(() -> {
+                        try {
+                            work(in, out, stage, running);
+                        } catch (Throwable e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    });
+                }
+            }
+            TreeMap<Long, Item> pending = new TreeMap<>();
+            BlockingQueue<Item> results = queues.get(stages.size());
+            while (true) {
+                Item item = results.poll(100, TimeUnit.MILLISECONDS);
+                rethrow(failure.get());
+                if (item == END) {
+                    break;
+                }
+                if (item != null) {
+                    pending.put(item.seq, item);
+                    while (!pending.isEmpty() && pending.firstKey() == count) {
+                        write(writer, pending.pollFirstEntry().getValue(), tsv);
+                        inFlight.release();
+                        count += 1;
+                        if (count % 1_000 == 0) {
+                            logger.info("{} cluster/s summarised so far...", count);
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Pipeline interrupted", e);
+        } finally {
+            executor.shutdownNow();
+            for (BlockingQueue<Item> queue : queues) {
+                for (Item item = queue.poll(); item != null; item = queue.poll()) {
+                    if (item != END) {
+                        item.close();
+                    }
+                }
+            }
+        }
+        elapsed = System.nanoTime() - elapsed;
+        logger.info("{} cluster/s summarised in {} ms.", count, String.format("%,.3f", elapsed / 1_000_000.0));
+        return count;
+    }
+
+    private static void rethrow(Throwable failure) throws IOException {
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Pipeline failed: " + failure.getMessage(), failure);
+        }
+    }
+
+    private static void work(BlockingQueue<Item> in, BlockingQueue<Item> out, Consumer<Item> stage,
+                             AtomicInteger running) throws InterruptedException {
+        while (true) {
+            Item item = in.take();
+            if (item == END) {
+                in.put(END);
+                if (running.decrementAndGet() == 0) {
+                    out.put(END);
+                }
+                return;
+            }
+            if (item.error == null) {
+                try {
+                    stage.accept(item);
+                } catch (RuntimeException e) {
+                    logger.warn("Cluster '{}' can't be summarised: {}", item.cluster.getId(), e.getMessage(), e);
+                    item.error = e;
+                    item.tokens = null;
+                    item.close();
+                }
+            }
+            out.put(item);
+        }
+    }
+
+    private static void write(BufferedWriter writer, Item item, boolean tsv) throws IOException {
+        String summary = item.summary != null && item.summary.isPresent() ? item.summary.get() : null;
+        if (tsv) {
+            writer.write(item.cluster.getId());
+            writer.write('\t');
+            writer.write(summary == null ? "" : summary.replaceAll("[\\t\\r\\n]+", " "));
+        } else {
+            writer.write("{\"id\": ");
+            writer.write(ClusterReader.quote(item.cluster.getId()));
+            writer.write(", \"summary\": ");
+            writer.write(summary == null ? "null" : ClusterReader.quote(summary));
+            if (item.approximate) {
+                writer.write(", \"approximate\": true");
+            }
+            if (item.error != null) {
+                writer.write(", \"error\": ");
+                writer.write(ClusterReader.quote(String.valueOf(item.error.getMessage())));
+            }
+            writer.write('}');
+        }
+        writer.newLine();
+    }
+
+    /**
+     * A cluster on its way through the pipeline, with the result of the last stage it went through.
+     */
+    private static final class Item {
+        private final long seq;
+        private final Cluster cluster;
+        private Token[][] tokens;
+        private WordGraph graph;
+        private int maxLength;
+        private Optional<String> summary;
+        private boolean approximate;
+        private RuntimeException error;
+
+        private Item(long seq, Cluster cluster) {
+            this.seq = seq;
+            this.cluster = cluster;
+        }
+
+        /**
+         * Closes the {@code word graph} of this cluster, if any, as soon as it is no longer needed.
+         */
+        private void close() {
+            if (graph != null) {
+                graph.close();
+                graph = null;
+            }
+        }
+    }
+}
@@ -1,11 +1,11 @@
 package org.stefano.distributional.model.components;
 
-import opennlp.tools.postag.POSTagger;
-import opennlp.tools.tokenize.Tokenizer;
+import opennlp.tools.util.Span;
 import org.neo4j.graphdb.*;
-import org.stefano.distributional.utils.OpenNLP;
+import org.stefano.distributional.utils.NLPPipeline;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.util.Objects.requireNonNull;
 
@@ -37,6 +37,47 @@ public interface GraphEncoder {
         return relationship;
     }
 
+    /**
+     * Creates a {@code FOLLOWS} relationship between the given {@code tail} and {@code head} nodes
+     * of the given in-memory {@code graph} with {@code frequency} {@code 1.0} if no such relationship
+     * already exists, or updates the {@code frequency} of the existing and eventually returns it.
+     *
+     * @param graph the {@link WordGraph} where to link the nodes
+     * @param tail  the start node of the link to handle
+     * @param head  the end node of the link to handle
+     * @return the relationship between {@code tail} and {@code head} with updated {@code frequency}
+     * if exists, a newly created relationship with {@code frequency} {@code 1.0} otherwise
+     */
+    static int link(WordGraph graph, int tail, int head) {
+        int relationship = graph.findFollows(tail, head);
+        if (relationship >= 0) {
+            graph.setFollowsFreq(relationship, 1.0 + graph.getFollowsFreq(relationship));
+            return relationship;
+        }
+        return graph.addFollows(tail, head);
+    }
+
+    /**
+     * Decreases by 1 the {@code frequency} of the {@code FOLLOWS} relationship between the given {@code tail}
+     * and {@code head} nodes of the given in-memory {@code graph}, and removes the relationship
+     * when its {@code frequency} drops to {@code 0.0}.
+     *
+     * @param graph the {@link WordGraph} where to unlink the nodes
+     * @param tail  the start node of the link to handle
+     * @param head  the end node of the link to handle
+     */
+    static void unlink(WordGraph graph, int tail, int head) {
+        int relationship = graph.findFollows(tail, head);
+        if (relationship >= 0) {
+            double freq = graph.getFollowsFreq(relationship) - 1.0;
+            if (freq > 0.0) {
+                graph.setFollowsFreq(relationship, freq);
+            } else {
+                graph.removeFollows(relationship);
+            }
+        }
+    }
+
     /**
      * Creates a {@link Node} in the given {@code graph} using the given {@code token} and {@code stopWord} flag.
      *
@@ -46,18 +87,66 @@ public interface GraphEncoder {
      * @return the resulting {@link Node}
      */
     static Node word(GraphDatabaseService graph, Token token, boolean stopWord) {
+        return word(graph, GraphModel.CLUSTER, token, stopWord);
+    }
+
+    /**
+     * Creates a {@link Node} in the given {@code partition} of the given {@code graph}
+     * using the given {@code token} and {@code stopWord} flag.
+     *
+     * @param graph     the {@link GraphDatabaseService} where to create a node
+     * @param partition the {@link Label} of the partition of the {@code word graph}
+     * @param token     the {@link Token} to convert into a node
+     * @param stopWord  a flag which tells if the node refers to a common word or not
+     * @return the resulting {@link Node}
+     */
+    static Node word(GraphDatabaseService graph, Label partition, Token token, boolean stopWord) {
         Label label = token.getLabel();
-        Node node = graph.createNode(GraphModel.WORD, label);
+        Node node = graph.createNode(GraphModel.WORD, label, partition);
         if (token.getTag().startsWith("VB")) {
             node.addLabel(GraphModel.VERB);
         }
         node.setProperty("text", token.getText());
+        node.setProperty("key", GraphModel.key(partition, token.getText()));
         node.setProperty("word", token.getWord());
         node.setProperty("freq", 1.0);
         node.setProperty("stop", stopWord);
         return node;
     }
 
+    /**
+     * Creates a node in the given in-memory {@code graph} using the given {@code token} and {@code stopWord} flag.
+     *
+     * @param graph    the {@link WordGraph} where to create a node
+     * @param token    the {@link Token} to convert into a node
+     * @param stopWord a flag which tells if the node refers to a common word or not
+     * @return the resulting node
+     */
+    static int word(WordGraph graph, Token token, boolean stopWord) {
+        return graph.addWord(token.getText(), token.getWord(), token.getTag(), stopWord,
+                token.getTag().startsWith("VB"));
+    }
+
+
+    /**
+     * Splits the given {@code contents} into sentences and parses each of them into {@link Token}s,
+     * so that they can be encoded later by {@link #encode(WordGraph, Token[][], Collection)}, possibly by another
+     * thread. Sentences already parsed are taken from the {@link TokenCache#global()} cache.
+     *
+     * @param contents the {@link List<String>} to parse, each of which may contain more than one sentence
+     * @return the tokens of each sentence, in order
+     */
+    static Token[][] parse(List<String> contents) {
+        requireNonNull(contents, "'contents' is null");
+
+        List<Token[]> result = new ArrayList<>();
+        for (String content : contents) {
+            for (String sentence : NLPPipeline.detect(content)) {
+                result.add(TokenCache.global().parse(sentence));
+            }
+        }
+        return result.toArray(new Token[result.size()][]);
+    }
 
     /**
      * Encodes the given {@code sentences} as a {@code word graph} using the given {@code stopWords}
@@ -69,16 +158,101 @@ public interface GraphEncoder {
      * @param stopWords the {@link Collection<String>} to identify common words
      * @return the number of words of the longest sentence among the given {@code sentences}
      */
-    int encode(GraphDatabaseService graph, List<String> sentences, Collection<String> stopWords);
+    default int encode(GraphDatabaseService graph, List<String> sentences, Collection<String> stopWords) {
+        return encode(graph, GraphModel.CLUSTER, sentences, stopWords);
+    }
+
+    /**
+     * Encodes the given {@code sentences} as a {@code word graph} using the given {@code stopWords}
+     * into the given {@code partition} of the given {@code graph}, returning the length of the longest sentence.
+     * Notice that punctuation is ignored and common words tend to build secondary paths.
+     *
+     * @param graph     the {@link GraphDatabaseService} where the given {@code sentences} are going to be saved
+     * @param partition the {@link Label} of the partition of the {@code word graph}
+     * @param sentences the {@link List<String>} to be encoded into the given {@code graph}
+     * @param stopWords the {@link Collection<String>} to identify common words
+     * @return the number of words of the longest sentence among the given {@code sentences}
+     */
+    int encode(GraphDatabaseService graph, Label partition, List<String> sentences, Collection<String> stopWords);
+
+    /**
+     * Encodes the given {@code sentences} as a {@code word graph} using the given {@code stopWords}
+     * into the given in-memory {@code graph}, returning the length of the longest sentence.
+     * Notice that punctuation is ignored and common words tend to build secondary paths.
+     *
+     * @param graph     the {@link WordGraph} where the given {@code sentences} are going to be saved
+     * @param sentences the {@link List<String>} to be encoded into the given {@code graph}
+     * @param stopWords the {@link Collection<String>} to identify common words
+     * @return the number of words of the longest sentence among the given {@code sentences}
+     */
+    int encode(WordGraph graph, List<String> sentences, Collection<String> stopWords);
+
+    /**
+     * Encodes the given already parsed {@code sentences} (see {@link #parse(List)}) as a {@code word graph}
+     * using the given {@code stopWords} into the given in-memory {@code graph}, returning the length of the longest
+     * sentence. The result is the same as {@link #encode(WordGraph, List, Collection)} on the original contents.
+     *
+     * @param graph     the {@link WordGraph} where the given {@code sentences} are going to be saved
+     * @param sentences the tokens of each sentence to be encoded into the given {@code graph}
+     * @param stopWords the {@link Collection<String>} to identify common words
+     * @return the number of words of the longest sentence among the given {@code sentences}
+     */
+    int encode(WordGraph graph, Token[][] sentences, Collection<String> stopWords);
+
+    /**
+     * Adds the given {@code content} to the given in-memory {@code graph} using the given {@code stopWords},
+     * creating or updating only the nodes and relationships of its sentences.
+     * Encoding some contents one at a time or all at once with {@link #encode(WordGraph, List, Collection)}
+     * results in the same {@code word graph}.
+     *
+     * @param graph     the {@link WordGraph} where the given {@code content} is going to be saved
+     * @param content   the text to add, which may contain more than one sentence
+     * @param stopWords the {@link Collection<String>} to identify common words
+     * @return the {@code id}s of the sentences added to the given {@code graph}
+     */
+    int[] add(WordGraph graph, String content, Collection<String> stopWords);
+
+    /**
+     * Removes the given {@code sentence} from the given in-memory {@code graph}:
+     * the {@code frequency} of its nodes and relationships is decreased by 1, its {@code CONTAINS} relationships are
+     * removed, and so are the nodes and relationships that are no longer used by any sentence.
+     * Weights are not updated (see {@link GraphWeigher#weight(WordGraph, int[])}).
+     *
+     * @param graph    the {@link WordGraph} where the given {@code sentence} has been added
+     * @param sentence the {@code id} of the sentence to remove
+     */
+    default void evict(WordGraph graph, int sentence) {
+        requireNonNull(graph, "'graph' is null");
+
+        int length = graph.getSentenceLength(sentence);
+        int previous = WordGraph.START;
+        graph.setFreq(previous, graph.getFreq(previous) - 1.0);
+        for (int pos = 0; pos < length; pos++) {
+            int current = graph.getSentenceWord(sentence, pos);
+            graph.setFreq(current, graph.getFreq(current) - 1.0);
+            unlink(graph, previous, current);
+            previous = current;
+        }
+        unlink(graph, previous, WordGraph.END);
+        graph.setFreq(WordGraph.END, graph.getFreq(WordGraph.END) - 1.0);
+        int[] nodes = new int[length];
+        for (int pos = 0; pos < length; pos++) {
+            nodes[pos] = graph.getSentenceWord(sentence, pos);
+        }
+        graph.removeSentence(sentence);
+        for (int node : nodes) {
+            if (graph.isNode(node) && graph.getFreq(node) <= 0.0) {
+                graph.removeWord(node);
+            }
+        }
+    }
 
     /**
      * A {@code token} with (lower) text, word and POS tag.
      */
     final class Token {
 
-        private static final Tokenizer TOKENIZER = OpenNLP.getTokenizer();
-        private static final POSTagger TAGGER = OpenNLP.getPOSTagger();
-        private static final Map<String, Label> LABELS = new HashMap<>();
+        private static final Map<String, Label> LABELS = new ConcurrentHashMap<>();
         private final String text;
         private final String word;
         private final String tag;
@@ -96,35 +270,68 @@ public interface GraphEncoder {
             this.word = token;
         }
 
+        /**
+         * Splits the given {@code sentence} into {@code tokens}, ignoring punctuation.
+         * Tokens are checked on their spans in the given {@code sentence} and collected in a presized array,
+         * so that the only objects allocated per token are its text, its lower case copy (only if different)
+         * and the {@link Token} itself.
+         *
+         * @param sentence the sentence to split
+         * @return the {@code tokens} of the given {@code sentence}
+         */
         public static Token[] parse(String sentence) {
             sentence = requireNonNull(sentence, "'sentence' is null").trim();
             if (sentence.isEmpty()) {
                 throw new IllegalArgumentException("'sentence' is empty");
             }
 
-            String[] tokens = TOKENIZER.tokenize(sentence);
-            String[] tags = TAGGER.tag(tokens);
-            List<Token> result = new ArrayList<>();
+            Span[] spans = NLPPipeline.tokenizePos(sentence);
+            String[] tokens = Span.spansToStrings(spans, sentence);
+            String[] tags = NLPPipeline.tag(tokens);
+            Token[] result = new Token[tokens.length];
+            int size = 0;
             for (int i = 0; i < tokens.length; i++) {
-                if (isWord(tokens[i])) {
-                    Token token = new Token(tokens[i], tags[i]);
-                    result.add(token);
+                if (isWord(sentence, spans[i].getStart(), spans[i].getEnd())) {
+                    result[size++] = new Token(tokens[i], tags[i]);
                 }
             }
-            return result.toArray(new Token[result.size()]);
+            return size == result.length ? result : Arrays.copyOf(result, size);
         }
 
-        private static boolean isWord(String symbol) {
-            symbol = requireNonNull(symbol, "'symbol' is null").trim();
-            if (symbol.isEmpty()) {
-                throw new IllegalArgumentException("'symbol' is empty");
+        /**
+         * Checks whether the given span of the given {@code sentence} contains at least a letter, a number,
+         * an apostrophe or a hyphen, that is whether it matches {@code ^(?=.*[\p{L}\p{N}'-]).+$}.
+         */
+        private static boolean isWord(String sentence, int start, int end) {
+            int i = start;
+            while (i < end) {
+                char c = sentence.charAt(i);
+                if (c < 128) {
+                    if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                            || c == '\'' || c == '-') {
+                        return true;
+                    }
+                    i += 1;
+                } else {
+                    int codePoint = sentence.codePointAt(i);
+                    if (Character.isLetter(codePoint) || isNumber(codePoint)) {
+                        return true;
+                    }
+                    i += Character.charCount(codePoint);
+                }
             }
+            return false;
+        }
 
-            return symbol.matches("^(?=.*[\\p{L}\\p{N}'-]).+$");
+        private static boolean isNumber(int codePoint) {
+            int type = Character.getType(codePoint);
+            return type == Character.DECIMAL_DIGIT_NUMBER
+                    || type == Character.LETTER_NUMBER
+                    || type == Character.OTHER_NUMBER;
         }
 
         public Label getLabel() {
-            return LABELS.computeIfAbsent(tag, k -> Label.label(tag));
+            return LABELS.computeIfAbsent(tag, Label::label);
         }
 
         public String getText() {
@@ -149,22 +356,24 @@ public interface GraphEncoder {
 
     /**
      * A {@code context} for a {@code word} with {@code matches} and {@code occurrences}.
+     * Contexts are ranked by decreasing {@code matches} and then by decreasing {@code occurrences}; ties are left
+     * to the (stable) sort of the candidates, so that the node found first wins and the encoding is deterministic.
      */
-    final class Context implements Comparable<Context> {
+    final class Context<T> implements Comparable<Context<T>> {
 
-        private final Node node;
+        private final T node;
 
         private final int matches;
 
         private final double occurrences;
 
-        public Context(Node node, int matches, double occurrences) {
+        public Context(T node, int matches, double occurrences) {
             this.node = requireNonNull(node, "'node' is null");
             this.matches = matches;
             this.occurrences = occurrences;
         }
 
-        public Node getNode() {
+        public T getNode() {
             return node;
         }
 
@@ -173,19 +382,12 @@ public interface GraphEncoder {
         }
 
         @Override
-        public int compareTo(Context other) {
+        public int compareTo(Context<T> other) {
             requireNonNull(other, "'other' is null");
 
             int result = Integer.compare(other.matches, this.matches);
             if (result == 0) {
                 result = Double.compare(other.occurrences, this.occurrences);
-                if (result == 0) {
-                    if (node.equals(other.node)) {
-                        result = 0;
-                    } else {
-                        result = (int) System.currentTimeMillis() % 2;
-                    }
-                }
             }
             return result;
         }
@@ -1,14 +1,32 @@
 package org.stefano.distributional.model.components;
 
 import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.schema.IndexDefinition;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * Definitions for {@code word graphs}.
+ * <p>
+ * Several {@code word graphs} can share the same database: each of them lives in its own partition,
+ * that is all its nodes carry the same {@code cluster} label (see {@link #cluster(long)}).
+ * A database that holds a single {@code word graph} uses the {@link #CLUSTER} partition.
+ * The {@code START} and {@code END} nodes of each partition also have the name of its label as {@code cluster}
+ * property, which is indexed (see {@link #index(GraphDatabaseService)}), hence they are found in constant time
+ * however many partitions the database holds. Likewise, {@code WORD} nodes have an indexed {@code key} property
+ * that combines the name of their partition with their {@code text} (see {@link #key(Label, String)}), so that
+ * the candidates for a word are looked up within its partition only.
  */
 public class GraphModel {
 
+    private static final Logger logger = LoggerFactory.getLogger(GraphModel.class);
+
     public static final Label SENTENCE = Label.label("SENTENCE");
     public static final Label START = Label.label("START");
     public static final Label WORD = Label.label("WORD");
@@ -16,11 +34,71 @@ public class GraphModel {
     public static final Label VERB = Label.label("VERB");
     public static final RelationshipType FOLLOWS = RelationshipType.withName("FOLLOWS");
     public static final RelationshipType CONTAINS = RelationshipType.withName("CONTAINS");
+    public static final Label CLUSTER = Label.label("CLUSTER");
+
+    /**
+     * The default number of changes per transaction of the writes in bulk (see {@link TransactionBatch}).
+     */
+    public static final int BATCH_SIZE = 10_000;
 
     private GraphModel() {
         throw new UnsupportedOperationException("'GraphModel' class should not be instantiated");
     }
 
+    /**
+     * Returns the {@code (sentence, pos)} occurrences of the given {@code WORD} node as a flat array
+     * {@code [sentence0, pos0, sentence1, pos1, ...]} sorted by sentence and position.
+     * The list recorded by the encoder in the {@code postings} property is returned if available,
+     * otherwise it is rebuilt from the incoming {@code CONTAINS} relationships.
+     * {@code START} and {@code END} nodes have no occurrences.
+     *
+     * @param node the {@code WORD} node
+     * @return the sorted occurrences of the given {@code node}
+     */
+    public static int[] postings(Node node) {
+        requireNonNull(node, "'node' is null");
+
+        Object property = node.getProperty("postings", null);
+        if (property instanceof int[]) {
+            return (int[]) property;
+        }
+        List<int[]> occurrences = new ArrayList<>();
+        for (Relationship contains : node.getRelationships(CONTAINS, Direction.INCOMING)) {
+            int sentence = (int) contains.getStartNode().getProperty("id", 0);
+            int pos = (int) contains.getProperty("pos", 0);
+            occurrences.add(new int[]{sentence, pos});
+        }
+        occurrences.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(a[1], b[1]));
+        int[] result = new int[occurrences.size() * 2];
+        for (int i = 0; i < occurrences.size(); i++) {
+            result[2 * i] = occurrences.get(i)[0];
+            result[2 * i + 1] = occurrences.get(i)[1];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the {@link Label} that identifies the partition of the cluster with the given {@code id}.
+     *
+     * @param id the identifier of the cluster
+     * @return the {@link Label} of the partition of the cluster
+     */
+    public static Label cluster(long id) {
+        return Label.label(CLUSTER.name() + "_" + id);
+    }
+
+    /**
+     * Returns the {@code key} of the {@code WORD} nodes with the given {@code text} in the given {@code partition}.
+     * Partition names never contain {@code ':'}, hence keys are unique across partitions.
+     *
+     * @param partition the {@link Label} of the partition of the {@code word graph}
+     * @param text      the lower case text of the word
+     * @return the {@code key} of the matching {@code WORD} nodes
+     */
+    public static String key(Label partition, String text) {
+        return partition.name() + ":" + text;
+    }
+
     /**
      * Returns the {@code START} node in the given {@code graph}.
      * If such node exists, its {@code frequency} is increased by 1 and eventually returned.
@@ -32,7 +110,23 @@ public class GraphModel {
     public static Node start(GraphDatabaseService graph) {
         requireNonNull(graph, "'graph' is null");
 
-        return terminal(graph, START);
+        return terminal(graph, CLUSTER, START);
+    }
+
+    /**
+     * Returns the {@code START} node of the given {@code partition} in the given {@code graph}.
+     * If such node exists, its {@code frequency} is increased by 1 and eventually returned.
+     * If it doesn't, the node is created and initialised to {@code frequency} == 1 and returned.
+     *
+     * @param graph     the target {@link GraphDatabaseService}
+     * @param partition the {@link Label} of the partition of the {@code word graph}
+     * @return the updated {@code START} node, or a newly created instance
+     */
+    public static Node start(GraphDatabaseService graph, Label partition) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(partition, "'partition' is null");
+
+        return terminal(graph, partition, START);
     }
 
     /**
@@ -46,20 +140,365 @@ public class GraphModel {
     public static Node end(GraphDatabaseService graph) {
         requireNonNull(graph, "'graph' is null");
 
-        return terminal(graph, END);
+        return terminal(graph, CLUSTER, END);
+    }
+
+    /**
+     * Returns the {@code END} node of the given {@code partition} in the given {@code graph}.
+     * If such node exists, its {@code frequency} is increased by 1 and eventually returned.
+     * If it doesn't, the node is created and initialised to {@code frequency} == 1 and returned.
+     *
+     * @param graph     the target {@link GraphDatabaseService}
+     * @param partition the {@link Label} of the partition of the {@code word graph}
+     * @return the updated {@code END} node, or a newly created instance
+     */
+    public static Node end(GraphDatabaseService graph, Label partition) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(partition, "'partition' is null");
+
+        return terminal(graph, partition, END);
+    }
+
+    /**
+     * Creates the schema indexes on the {@code key} of {@code WORD} nodes and on the {@code cluster} of
+     * {@code START} and {@code END} nodes in the given {@code graph}, if missing, and waits for them to be online.
+     * Schema changes can't be mixed with data changes, hence this method must be called outside any transaction,
+     * typically right after the database is started.
+     *
+     * @param graph the target {@link GraphDatabaseService}
+     */
+    public static void index(GraphDatabaseService graph) {
+        requireNonNull(graph, "'graph' is null");
+
+        try (Transaction tx = graph.beginTx()) {
+            index(graph, WORD, "key");
+            index(graph, START, "cluster");
+            index(graph, END, "cluster");
+            tx.success();
+        }
+        try (Transaction tx = graph.beginTx()) {
+            graph.schema().awaitIndexesOnline(1, TimeUnit.MINUTES);
+            tx.success();
+        }
+    }
+
+    private static void index(GraphDatabaseService graph, Label label, String property) {
+        boolean exists = false;
+        for (IndexDefinition index : graph.schema().getIndexes(label)) {
+            for (String key : index.getPropertyKeys()) {
+                exists |= property.equals(key);
+            }
+        }
+        if (!exists) {
+            graph.schema().indexFor(label).on(property).create();
+        }
+    }
+
+    /**
+     * Deletes all the nodes and relationships of the given {@code partition} in the given {@code graph}
+     * by transactions of at most {@value #BATCH_SIZE} nodes. The bound applies to nodes only: each transaction
+     * also deletes all the relationships of its nodes ({@code DETACH DELETE}), however many they are.
+     *
+     * @param graph     the target {@link GraphDatabaseService}
+     * @param partition the {@link Label} of the partition to delete
+     */
+    public static void drop(GraphDatabaseService graph, Label partition) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(partition, "'partition' is null");
+
+        String query = "MATCH (n:`" + partition.name() + "`) WITH n LIMIT " + BATCH_SIZE
+                + " DETACH DELETE n RETURN count(*) AS deleted";
+        long deleted;
+        do {
+            try (Transaction tx = graph.beginTx(); Result result = graph.execute(query)) {
+                deleted = (long) result.next().get("deleted");
+                tx.success();
+            }
+        } while (deleted == BATCH_SIZE);
+    }
+
+    /**
+     * Removes the {@code weight} of the given {@code FOLLOWS} relationships of the given {@code graph}
+     * by transactions of at most {@value #BATCH_SIZE} relationships (see {@link TransactionBatch}),
+     * so that a weigher that fails half-way doesn't leave a partially weighted {@code word graph} behind.
+     *
+     * @param graph         the target {@link GraphDatabaseService}
+     * @param relationships the {@code FOLLOWS} relationships whose {@code weight} has to be removed
+     */
+    public static void unweight(GraphDatabaseService graph, List<Relationship> relationships) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(relationships, "'relationships' is null");
+
+        try (TransactionBatch batch = new TransactionBatch(graph, BATCH_SIZE)) {
+            for (Relationship follows : relationships) {
+                follows.removeProperty("weight");
+                batch.add(1);
+            }
+            batch.success();
+        }
+    }
+
+    /**
+     * Copies the {@code word graph} in the given {@code partition} of the given {@code graph}
+     * into a new in-memory {@link WordGraph}, weights included.
+     * Notice that the {@code frequency} of the {@code START} and {@code END} nodes is not modified.
+     *
+     * @param graph     the source {@link GraphDatabaseService}
+     * @param partition the {@link Label} of the partition of the {@code word graph}
+     * @return the equivalent {@link WordGraph}
+     */
+    public static WordGraph load(GraphDatabaseService graph, Label partition) {
+        return load(graph, partition, new WordGraph());
+    }
+
+    /**
+     * Copies the {@code word graph} in the given {@code partition} of the given {@code graph}
+     * into the given empty in-memory {@code target}, weights included, such as an off-heap one
+     * (see {@link WordGraph#offHeap()}).
+     * Notice that the {@code frequency} of the {@code START} and {@code END} nodes is not modified.
+     *
+     * @param graph     the source {@link GraphDatabaseService}
+     * @param partition the {@link Label} of the partition of the {@code word graph}
+     * @param target    the empty {@link WordGraph} to fill
+     * @return the given {@code target}
+     */
+    public static WordGraph load(GraphDatabaseService graph, Label partition, WordGraph target) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(partition, "'partition' is null");
+        requireNonNull(target, "'target' is null");
+        if (target.getNodeCount() > 2 || target.getSentenceCount() > 0) {
+            throw new IllegalArgumentException("'target' is not empty");
+        }
+
+        WordGraph result = target;
+        try (Transaction tx = graph.beginTx()) {
+            Map<Long, Integer> indexes = new HashMap<>();
+            List<Node> sentences = new ArrayList<>();
+            ResourceIterator<Node> nodes = graph.findNodes(partition);
+            while (nodes.hasNext()) {
+                Node node = nodes.next();
+                double freq = (double) node.getProperty("freq", 1.0);
+                if (node.hasLabel(START)) {
+                    indexes.put(node.getId(), WordGraph.START);
+                    result.setFreq(WordGraph.START, freq);
+                } else if (node.hasLabel(END)) {
+                    indexes.put(node.getId(), WordGraph.END);
+                    result.setFreq(WordGraph.END, freq);
+                } else if (node.hasLabel(SENTENCE)) {
+                    sentences.add(node);
+                } else if (node.hasLabel(WORD)) {
+                    int index = result.addWord((String) node.getProperty("text"), (String) node.getProperty("word"),
+                            getTag(node, partition), (boolean) node.getProperty("stop", false), node.hasLabel(VERB));
+                    result.setFreq(index, freq);
+                    indexes.put(node.getId(), index);
+                }
+            }
+            sentences.sort(Comparator.comparingInt(node -> (int) node.getProperty("id", 0)));
+            for (Node sentence : sentences) {
+                int id = result.addSentence((int) sentence.getProperty("length", 0));
+                int[] words = new int[result.getSentenceLength(id)];
+                for (Relationship contains : sentence.getRelationships(CONTAINS, Direction.OUTGOING)) {
+                    words[(int) contains.getProperty("pos", 0)] = indexes.get(contains.getEndNode().getId());
+                }
+                for (int pos = 0; pos < words.length; pos++) {
+                    result.contain(id, pos, words[pos]);
+                }
+            }
+            for (Map.Entry<Long, Integer> entry : indexes.entrySet()) {
+                Node tail = graph.getNodeById(entry.getKey());
+                for (Relationship follows : tail.getRelationships(FOLLOWS, Direction.OUTGOING)) {
+                    int index = result.addFollows(entry.getValue(), indexes.get(follows.getEndNode().getId()));
+                    result.setFollowsFreq(index, (double) follows.getProperty("freq", 1.0));
+                    if (follows.hasProperty("weight")) {
+                        result.setWeight(index, (double) follows.getProperty("weight"));
+                    }
+                }
+            }
+            tx.success();
+        }
+        return result;
+    }
+
+    /**
+     * Copies the given in-memory {@code source} into the given empty {@code partition} of the given {@code graph},
+     * weights included, committing a transaction every {@code batchSize} nodes, relationships and properties
+     * (see {@link TransactionBatch}), so that the heap used by the transaction state doesn't grow with the graph.
+     * Each {@code WORD} node also gets its {@code postings} (see {@link #postings(Node)}).
+     * This is the inverse of {@link #load(GraphDatabaseService, Label)}, but for the order of nodes and relationships.
+     *
+     * @param graph     the target {@link GraphDatabaseService}
+     * @param partition the {@link Label} of the partition of the {@code word graph}, which must be empty
+     * @param source    the {@link WordGraph} to copy
+     * @param batchSize the number of changes per transaction
+     * @throws IllegalArgumentException if the {@code partition} is not empty
+     */
+    public static void store(GraphDatabaseService graph, Label partition, WordGraph source, int batchSize) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(partition, "'partition' is null");
+        requireNonNull(source, "'source' is null");
+
+        long elapsed = System.nanoTime();
+        try (Transaction tx = graph.beginTx()) {
+            if (graph.findNodes(partition).hasNext()) {
+                throw new IllegalArgumentException("'partition' is not empty: " + partition.name());
+            }
+            tx.success();
+        }
+        long[] ids = new long[source.getNodeCount()];
+        int commits;
+        try (TransactionBatch batch = new TransactionBatch(graph, batchSize)) {
+            for (int node = 0; node < source.getNodeCount(); node++) {
+                if (!source.isNode(node)) {
+                    continue;
+                }
+                Node result;
+                if (node == WordGraph.START || node == WordGraph.END) {
+                    result = graph.createNode(node == WordGraph.START ? START : END, partition);
+                    result.setProperty("cluster", partition.name());
+                    batch.add(3);
+                } else {
+                    result = graph.createNode(WORD, Label.label(source.getTag(node)), partition);
+                    if (source.isVerb(node)) {
+                        result.addLabel(VERB);
+                    }
+                    result.setProperty("text", source.getText(node));
+                    result.setProperty("key", key(partition, source.getText(node)));
+                    result.setProperty("word", source.getWord(node));
+                    result.setProperty("stop", source.isStop(node));
+                    result.setProperty("postings", postings(source, node));
+                    batch.add(7);
+                }
+                result.setProperty("freq", source.getFreq(node));
+                ids[node] = result.getId();
+            }
+            for (int sentence = 0; sentence < source.getSentenceCount(); sentence++) {
+                Node parent = graph.createNode(SENTENCE, partition);
+                parent.setProperty("id", sentence);
+                parent.setProperty("length", source.getSentenceLength(sentence));
+                for (int pos = 0; pos < source.getSentenceLength(sentence); pos++) {
+                    Node word = graph.getNodeById(ids[source.getSentenceWord(sentence, pos)]);
+                    parent.createRelationshipTo(word, CONTAINS).setProperty("pos", pos);
+                }
+                batch.add(3 + 2 * source.getSentenceLength(sentence));
+            }
+            for (int follows = 0; follows < source.getFollowsCount(); follows++) {
+                if (!source.isFollows(follows)) {
+                    continue;
+                }
+                Node tail = graph.getNodeById(ids[source.getTail(follows)]);
+                Node head = graph.getNodeById(ids[source.getHead(follows)]);
+                Relationship result = tail.createRelationshipTo(head, FOLLOWS);
+                result.setProperty("freq", source.getFollowsFreq(follows));
+                double weight = source.getWeight(follows, Double.NaN);
+                if (!Double.isNaN(weight)) {
+                    result.setProperty("weight", weight);
+                }
+                batch.add(3);
+            }
+            batch.success();
+            commits = batch.getCommits() + 1;
+        }
+        elapsed = System.nanoTime() - elapsed;
+        logger.debug("Word graph of {} node/s stored in {} transaction/s in {} ms.", source.getNodeCount(), commits,
+                String.format("%,.3f", elapsed / 1_000_000.0));
+    }
+
+    /**
+     * Copies the given in-memory {@code source} into the given {@code partition} of the database of the given
+     * {@code inserter}, weights included, as {@link #store(GraphDatabaseService, Label, WordGraph, int)} but
+     * without transactions. Batch insertion is only possible while the database is not started; it is not
+     * checked whether the {@code partition} is empty.
+     *
+     * @param inserter  the {@link BatchInserter} of the target database
+     * @param partition the {@link Label} of the partition of the {@code word graph}
+     * @param source    the {@link WordGraph} to copy
+     */
+    public static void store(BatchInserter inserter, Label partition, WordGraph source) {
+        requireNonNull(inserter, "'inserter' is null");
+        requireNonNull(partition, "'partition' is null");
+        requireNonNull(source, "'source' is null");
+
+        long elapsed = System.nanoTime();
+        long[] ids = new long[source.getNodeCount()];
+        for (int node = 0; node < source.getNodeCount(); node++) {
+            if (!source.isNode(node)) {
+                continue;
+            }
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("freq", source.getFreq(node));
+            if (node == WordGraph.START || node == WordGraph.END) {
+                properties.put("cluster", partition.name());
+                ids[node] = inserter.createNode(properties, node == WordGraph.START ? START : END, partition);
+            } else {
+                properties.put("text", source.getText(node));
+                properties.put("key", key(partition, source.getText(node)));
+                properties.put("word", source.getWord(node));
+                properties.put("stop", source.isStop(node));
+                properties.put("postings", postings(source, node));
+                Label tag = Label.label(source.getTag(node));
+                ids[node] = source.isVerb(node) ?
+                        inserter.createNode(properties, WORD, tag, partition, VERB) :
+                        inserter.createNode(properties, WORD, tag, partition);
+            }
+        }
+        for (int sentence = 0; sentence < source.getSentenceCount(); sentence++) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("id", sentence);
+            properties.put("length", source.getSentenceLength(sentence));
+            long parent = inserter.createNode(properties, SENTENCE, partition);
+            for (int pos = 0; pos < source.getSentenceLength(sentence); pos++) {
+                inserter.createRelationship(parent, ids[source.getSentenceWord(sentence, pos)], CONTAINS,
+                        Collections.singletonMap("pos", pos));
+            }
+        }
+        for (int follows = 0; follows < source.getFollowsCount(); follows++) {
+            if (!source.isFollows(follows)) {
+                continue;
+            }
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("freq", source.getFollowsFreq(follows));
+            double weight = source.getWeight(follows, Double.NaN);
+            if (!Double.isNaN(weight)) {
+                properties.put("weight", weight);
+            }
+            inserter.createRelationship(ids[source.getTail(follows)], ids[source.getHead(follows)], FOLLOWS,
+                    properties);
+        }
+        elapsed = System.nanoTime() - elapsed;
+        logger.debug("Word graph of {} node/s inserted in {} ms.", source.getNodeCount(),
+                String.format("%,.3f", elapsed / 1_000_000.0));
+    }
+
+    private static int[] postings(WordGraph source, int node) {
+        int[] result = new int[2 * source.getContainsCount(node)];
+        for (int i = 0; i < source.getContainsCount(node); i++) {
+            result[2 * i] = source.getContainsSentence(node, i);
+            result[2 * i + 1] = source.getContainsPos(node, i);
+        }
+        return result;
+    }
+
+    private static String getTag(Node node, Label partition) {
+        for (Label label : node.getLabels()) {
+            String name = label.name();
+            if (!name.equals(WORD.name()) && !name.equals(VERB.name()) && !name.equals(partition.name())) {
+                return label.name();
+            }
+        }
+        throw new IllegalArgumentException("'node' has no POS tag: " + node);
     }
 
-    private static Node terminal(GraphDatabaseService graph, Label label) {
+    private static Node terminal(GraphDatabaseService graph, Label partition, Label label) {
         requireNonNull(graph, "'graph' is null");
 
-        ResourceIterator<Node> nodes = graph.findNodes(label);
-        if (nodes.hasNext()) {
-            Node node = nodes.next();
+        Node node = graph.findNode(label, "cluster", partition.name());
+        if (node != null) {
             double freq = (double) node.getProperty("freq", 1.0);
             node.setProperty("freq", 1.0 + freq);
             return node;
         }
-        Node node = graph.createNode(label);
+        node = graph.createNode(label, partition);
+        node.setProperty("cluster", partition.name());
         node.setProperty("freq", 1.0);
         return node;
     }
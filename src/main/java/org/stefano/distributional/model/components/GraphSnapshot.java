@@ -0,0 +1,397 @@
+package org.stefano.distributional.model.components;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A compact, versioned binary snapshot of an encoded {@code word graph} (see {@link WordGraph} and
+ * {@link GraphModel}), so that a cluster can be encoded once and then weighted and compressed many times,
+ * for instance to compare weighers or to replay a cluster offline, without running the NLP pipeline again.
+ * <p>
+ * A snapshot covers the {@code START}, {@code END} and {@code WORD} nodes ({@code text}, {@code word}, POS tag,
+ * {@code freq}, {@code stop} and {@code VERB}), the {@code SENTENCE} nodes with their {@code CONTAINS} relationships
+ * (as the words at each {@code pos}) and the {@code FOLLOWS} relationships ({@code freq} and {@code weight}, if any),
+ * together with the length of the longest sentence, which bounds the paths of the compression.
+ * Removed nodes and relationships are left out, hence indexes are compacted.
+ * <p>
+ * The format is little-endian and columnar: a header with a magic number, the {@value #VERSION} version and the
+ * counts, a table of distinct strings, then one column per property. Snapshots are written with a single write
+ * and mapped in memory when read (see {@link #map(Path)}): the header is validated at once, while the columns
+ * are decoded by bulk copies into a new {@link WordGraph} only when {@link #toWordGraph()} is called, as many
+ * times as needed. Instances are immutable and thread-safe.
+ */
+public final class GraphSnapshot {
+
+    /**
+     * The version of the format written by this class.
+     */
+    public static final int VERSION = 1;
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphSnapshot.class);
+
+    private static final int MAGIC = 0x4D534347;
+    private static final int HEADER = 9 * Integer.BYTES;
+    private static final byte STOP = 1;
+    private static final byte VERB = 2;
+
+    private final ByteBuffer buffer;
+    private final int maxLength;
+    private final int nodes;
+    private final int follows;
+    private final int sentences;
+    private final int strings;
+    private final int words;
+    private final int characters;
+
+    private GraphSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.buffer.position(0);
+        if (this.buffer.remaining() < HEADER || this.buffer.getInt() != MAGIC) {
+            throw new IOException("Not a word graph snapshot");
+        }
+        int version = this.buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported word graph snapshot version: " + version);
+        }
+        this.maxLength = this.buffer.getInt();
+        this.nodes = this.buffer.getInt();
+        this.follows = this.buffer.getInt();
+        this.sentences = this.buffer.getInt();
+        this.strings = this.buffer.getInt();
+        this.words = this.buffer.getInt();
+        this.characters = this.buffer.getInt();
+        if (nodes < 2 || follows < 0 || sentences < 0 || strings < 0 || words < 0 || characters < 0
+                || this.buffer.capacity() != length(nodes, follows, sentences, strings, words, characters)) {
+            throw new IOException("Corrupted word graph snapshot");
+        }
+    }
+
+    /**
+     * Returns the snapshot of the given {@code graph}, whose longest sentence has the given {@code maxLength}.
+     *
+     * @param graph     the {@link WordGraph} to snapshot
+     * @param maxLength the length of the longest sentence, as returned by the {@link GraphEncoder}
+     * @return the snapshot of the given {@code graph}
+     */
+    public static GraphSnapshot of(WordGraph graph, int maxLength) {
+        requireNonNull(graph, "'graph' is null");
+
+        int[] indexes = new int[graph.getNodeCount()];
+        int nodes = 0;
+        Map<String, Integer> table = new LinkedHashMap<>();
+        int characters = 0;
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            indexes[node] = graph.isNode(node) ? nodes++ : -1;
+            if (indexes[node] > WordGraph.END) {
+                for (String string : new String[]{graph.getText(node), graph.getWord(node), graph.getTag(node)}) {
+                    if (!table.containsKey(string)) {
+                        table.put(string, table.size());
+                        characters += string.getBytes(StandardCharsets.UTF_8).length;
+                    }
+                }
+            }
+        }
+        int follows = 0;
+        for (int edge = 0; edge < graph.getFollowsCount(); edge++) {
+            follows += graph.isFollows(edge) ? 1 : 0;
+        }
+        int words = 0;
+        for (int sentence = 0; sentence < graph.getSentenceCount(); sentence++) {
+            words += graph.getSentenceLength(sentence);
+        }
+
+        int sentences = graph.getSentenceCount();
+        ByteBuffer buffer = ByteBuffer.allocate(size(nodes, follows, sentences, table.size(), words, characters))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(maxLength).putInt(nodes).putInt(follows).putInt(sentences)
+                .putInt(table.size()).putInt(words).putInt(characters);
+        byte[][] bytes = new byte[table.size()][];
+        int i = 0;
+        for (String string : table.keySet()) {
+            bytes[i] = string.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(bytes[i++].length);
+        }
+        for (byte[] string : bytes) {
+            buffer.put(string);
+        }
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            if (indexes[node] >= 0) {
+                buffer.putDouble(graph.getFreq(node));
+            }
+        }
+        for (int edge = 0; edge < graph.getFollowsCount(); edge++) {
+            if (graph.isFollows(edge)) {
+                buffer.putDouble(graph.getFollowsFreq(edge));
+            }
+        }
+        for (int edge = 0; edge < graph.getFollowsCount(); edge++) {
+            if (graph.isFollows(edge)) {
+                buffer.putDouble(graph.getWeight(edge, Double.NaN));
+            }
+        }
+        for (int column = 0; column < 3; column++) {
+            for (int node = 0; node < graph.getNodeCount(); node++) {
+                if (indexes[node] > WordGraph.END) {
+                    String string = column == 0 ? graph.getText(node) :
+                            column == 1 ? graph.getWord(node) : graph.getTag(node);
+                    buffer.putInt(table.get(string));
+                }
+            }
+        }
+        for (int edge = 0; edge < graph.getFollowsCount(); edge++) {
+            if (graph.isFollows(edge)) {
+                buffer.putInt(indexes[graph.getTail(edge)]);
+            }
+        }
+        for (int edge = 0; edge < graph.getFollowsCount(); edge++) {
+            if (graph.isFollows(edge)) {
+                buffer.putInt(indexes[graph.getHead(edge)]);
+            }
+        }
+        for (int sentence = 0; sentence < sentences; sentence++) {
+            buffer.putInt(graph.getSentenceLength(sentence));
+        }
+        for (int sentence = 0; sentence < sentences; sentence++) {
+            for (int pos = 0; pos < graph.getSentenceLength(sentence); pos++) {
+                buffer.putInt(indexes[graph.getSentenceWord(sentence, pos)]);
+            }
+        }
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            if (indexes[node] >= 0) {
+                buffer.put((byte) ((graph.isStop(node) ? STOP : 0) | (graph.isVerb(node) ? VERB : 0)));
+            }
+        }
+        buffer.flip();
+        try {
+            return new GraphSnapshot(buffer);
+        } catch (IOException e) {
+            throw new IllegalStateException("Word graph snapshot is inconsistent", e);
+        }
+    }
+
+    /**
+     * Maps the snapshot in the given {@code file} in memory and validates its header.
+     *
+     * @param file the {@link Path} of the snapshot
+     * @return the snapshot in the given {@code file}
+     * @throws IOException if the file can't be read or is not a valid snapshot
+     */
+    public static GraphSnapshot map(Path file) throws IOException {
+        requireNonNull(file, "'file' is null");
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new GraphSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size()));
+        }
+    }
+
+    /**
+     * Returns the snapshot in the given {@code bytes}, which are not copied.
+     *
+     * @param bytes the content of a snapshot (see {@link #toBytes()})
+     * @return the snapshot in the given {@code bytes}
+     * @throws IOException if the given {@code bytes} are not a valid snapshot
+     */
+    public static GraphSnapshot wrap(byte[] bytes) throws IOException {
+        requireNonNull(bytes, "'bytes' is null");
+
+        return new GraphSnapshot(ByteBuffer.wrap(bytes));
+    }
+
+    private static int size(int nodes, int follows, int sentences, int strings, int words, int characters) {
+        long result = length(nodes, follows, sentences, strings, words, characters);
+        if (result > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Word graph is too large for a snapshot: " + result + " bytes");
+        }
+        return (int) result;
+    }
+
+    private static long length(int nodes, int follows, int sentences, int strings, int words, int characters) {
+        return HEADER + (long) Integer.BYTES * strings + characters
+                + (long) Double.BYTES * (nodes + 2L * follows)
+                + (long) Integer.BYTES * (3L * (nodes - 2) + 2L * follows + sentences + words) + nodes;
+    }
+
+    /**
+     * Writes this snapshot into the given {@code file}, which is overwritten.
+     *
+     * @param file the {@link Path} of the snapshot
+     * @throws IOException if the file can't be written
+     */
+    public void write(Path file) throws IOException {
+        requireNonNull(file, "'file' is null");
+
+        ByteBuffer content = buffer.duplicate();
+        content.clear();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the content of this snapshot.
+     *
+     * @return the bytes of this snapshot
+     */
+    public byte[] toBytes() {
+        ByteBuffer content = buffer.duplicate();
+        content.clear();
+        byte[] result = new byte[content.remaining()];
+        content.get(result);
+        return result;
+    }
+
+    /**
+     * Decodes this snapshot into a new {@link WordGraph}, which is independent of this snapshot and of the
+     * other graphs decoded from it.
+     *
+     * @return a new {@link WordGraph} equivalent to the snapshot one
+     * @throws IllegalStateException if the content of the snapshot is corrupted
+     */
+    public WordGraph toWordGraph() {
+        return decode(new WordGraph());
+    }
+
+    /**
+     * Decodes this snapshot into a new off-heap {@link WordGraph} (see {@link WordGraph#offHeap()}), which is
+     * independent of this snapshot and of the other graphs decoded from it.
+     *
+     * @return a new off-heap {@link WordGraph} equivalent to the snapshot one
+     * @throws IllegalStateException if the content of the snapshot is corrupted
+     */
+    public WordGraph toOffHeapWordGraph() {
+        return decode(WordGraph.offHeap());
+    }
+
+    private WordGraph decode(WordGraph result) {
+        long elapsed = System.nanoTime();
+        ByteBuffer content = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        content.position(HEADER);
+        try {
+            int[] lengths = ints(content, strings);
+            String[] table = new String[strings];
+            byte[] bytes = new byte[characters];
+            content.get(bytes);
+            for (int i = 0, offset = 0; i < strings; offset += lengths[i++]) {
+                table[i] = new String(bytes, offset, lengths[i], StandardCharsets.UTF_8);
+            }
+            double[] freqs = doubles(content, nodes);
+            double[] followsFreqs = doubles(content, follows);
+            double[] weights = doubles(content, follows);
+            int[] texts = ints(content, nodes - 2);
+            int[] words = ints(content, nodes - 2);
+            int[] tags = ints(content, nodes - 2);
+            int[] tails = ints(content, follows);
+            int[] heads = ints(content, follows);
+            int[] sentences = ints(content, this.sentences);
+            int[] contains = ints(content, this.words);
+            byte[] flags = new byte[nodes];
+            content.get(flags);
+
+            for (int i = 0; i < nodes - 2; i++) {
+                int node = result.addWord(table[texts[i]], table[words[i]], table[tags[i]],
+                        (flags[i + 2] & STOP) != 0, (flags[i + 2] & VERB) != 0);
+                if (node != i + 2) {
+                    throw new IllegalStateException("Word graph is not empty");
+                }
+            }
+            for (int node = 0; node < nodes; node++) {
+                result.setFreq(node, freqs[node]);
+            }
+            for (int i = 0, offset = 0; i < sentences.length; offset += sentences[i++]) {
+                int sentence = result.addSentence(sentences[i]);
+                for (int pos = 0; pos < sentences[i]; pos++) {
+                    result.contain(sentence, pos, check(contains[offset + pos]));
+                }
+            }
+            for (int i = 0; i < follows; i++) {
+                int edge = result.addFollows(check(tails[i]), check(heads[i]));
+                result.setFollowsFreq(edge, followsFreqs[i]);
+                result.setWeight(edge, weights[i]);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IllegalStateException("Corrupted word graph snapshot", e);
+        }
+        elapsed = System.nanoTime() - elapsed;
+        logger.debug("Word graph of {} node/s decoded in {} ms.", nodes,
+                String.format("%,.3f", elapsed / 1_000_000.0));
+        return result;
+    }
+
+    private int check(int node) {
+        if (node < 0 || node >= nodes) {
+            throw new IndexOutOfBoundsException("Node out of range: " + node);
+        }
+        return node;
+    }
+
+    private static int[] ints(ByteBuffer buffer, int count) {
+        int[] result = new int[count];
+        buffer.asIntBuffer().get(result);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return result;
+    }
+
+    private static double[] doubles(ByteBuffer buffer, int count) {
+        double[] result = new double[count];
+        buffer.asDoubleBuffer().get(result);
+        buffer.position(buffer.position() + count * Double.BYTES);
+        return result;
+    }
+
+    /**
+     * Returns the length of the longest sentence of the snapshot, which bounds the paths of the compression.
+     *
+     * @return the length of the longest sentence
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Returns the number of nodes of the snapshot, {@code START} and {@code END} included.
+     *
+     * @return the number of nodes
+     */
+    public int getNodeCount() {
+        return nodes;
+    }
+
+    public int getFollowsCount() {
+        return follows;
+    }
+
+    public int getSentenceCount() {
+        return sentences;
+    }
+
+    /**
+     * Returns the size of this snapshot, in bytes.
+     *
+     * @return the size of this snapshot
+     */
+    public int size() {
+        return buffer.capacity();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GraphSnapshot(v%d, %d node/s, %d relationship/s, %d sentence/s, %,d bytes)",
+                VERSION, nodes, follows, sentences, size());
+    }
+}
@@ -0,0 +1,91 @@
+package org.stefano.distributional.model.components;
+
+/**
+ * The storage of a {@link WordGraph}: nodes, relationships and sentences with their properties and indexes.
+ * Arguments are checked by {@link WordGraph}, which documents the contract of each method.
+ * <p>
+ * Implementations create the {@code START} and {@code END} nodes with {@code frequency} {@code 0.0} and
+ * are not thread-safe.
+ */
+interface GraphStorage {
+
+    int addWord(String text, String word, String tag, boolean stop, boolean verb);
+
+    void removeWord(int node);
+
+    boolean isNode(int node);
+
+    int[] findWords(String tag, String text);
+
+    int findFollows(int tail, int head);
+
+    int addFollows(int tail, int head);
+
+    void removeFollows(int follows);
+
+    boolean isFollows(int follows);
+
+    int addSentence(int length);
+
+    void contain(int sentence, int pos, int node);
+
+    void removeSentence(int sentence);
+
+    int getNodeCount();
+
+    int getFollowsCount();
+
+    int getSentenceCount();
+
+    String getText(int node);
+
+    String getWord(int node);
+
+    String getTag(int node);
+
+    boolean isStop(int node);
+
+    boolean isVerb(int node);
+
+    double getFreq(int node);
+
+    void setFreq(int node, double freq);
+
+    int getOutgoingCount(int node);
+
+    int getOutgoing(int node, int i);
+
+    int getIncomingCount(int node);
+
+    int getIncoming(int node, int i);
+
+    int getContainsCount(int node);
+
+    int getContainsSentence(int node, int i);
+
+    int getContainsPos(int node, int i);
+
+    int getTail(int follows);
+
+    int getHead(int follows);
+
+    double getFollowsFreq(int follows);
+
+    void setFollowsFreq(int follows, double freq);
+
+    /**
+     * Returns the {@code weight} of the given {@code FOLLOWS} relationship, {@code NaN} if not weighted yet.
+     */
+    double getWeight(int follows);
+
+    void setWeight(int follows, double weight);
+
+    int getSentenceLength(int sentence);
+
+    int getSentenceWord(int sentence, int pos);
+
+    /**
+     * Releases the resources of this storage, if any; it can't be used any more.
+     */
+    void close();
+}
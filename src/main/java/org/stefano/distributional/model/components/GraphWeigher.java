@@ -1,6 +1,9 @@
 package org.stefano.distributional.model.components;
 
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+
+import java.util.Collection;
 
 /**
  * This interface provide a method to weight the {@code FOLLOWS} relationships in a {@code word graph}.
@@ -12,5 +15,34 @@ public interface GraphWeigher {
      *
      * @param graph the {@link GraphDatabaseService} whose {@code FOLLOWS} relationships have to be weighted
      */
-    void weight(GraphDatabaseService graph);
+    default void weight(GraphDatabaseService graph) {
+        weight(graph, GraphModel.CLUSTER);
+    }
+
+    /**
+     * This method weights the {@code FOLLOWS} relationships in the given {@code partition} of the given {@code graph}.
+     *
+     * @param graph     the {@link GraphDatabaseService} whose {@code FOLLOWS} relationships have to be weighted
+     * @param partition the {@link Label} of the partition of the {@code word graph}
+     */
+    void weight(GraphDatabaseService graph, Label partition);
+
+    /**
+     * This method weights the {@code FOLLOWS} relationships in the given in-memory {@code graph}.
+     *
+     * @param graph the {@link WordGraph} whose {@code FOLLOWS} relationships have to be weighted
+     */
+    void weight(WordGraph graph);
+
+    /**
+     * This method re-weights the {@code FOLLOWS} relationships in the given in-memory {@code graph} whose weight
+     * may be affected by a change of the given {@code nodes} (see {@link GraphEncoder#add(WordGraph, String,
+     * Collection)} and {@link GraphEncoder#evict(WordGraph, int)}), so that the cost of an update depends on the size
+     * of the change rather than on the size of the graph.
+     * Removed nodes are ignored.
+     *
+     * @param graph the {@link WordGraph} whose {@code FOLLOWS} relationships have to be weighted
+     * @param nodes the nodes whose {@code frequency}, relationships or sentences have changed
+     */
+    void weight(WordGraph graph, int[] nodes);
 }
@@ -0,0 +1,463 @@
+package org.stefano.distributional.model.components;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The default storage of a {@link WordGraph}, which keeps everything on the heap.
+ * <p>
+ * Properties are kept in primitive columns indexed by node or relationship and adjacency lists in one array
+ * per node; words are indexed by POS tag and text in a {@link HashMap},
+ * relationships by their end nodes in an open addressing hash map.
+ */
+final class HeapGraphStorage implements GraphStorage {
+
+    private static final int CAPACITY = 16;
+    private static final int[] EMPTY = new int[0];
+
+    private int nodes = 0;
+    private String[] texts = new String[CAPACITY];
+    private String[] words = new String[CAPACITY];
+    private String[] tags = new String[CAPACITY];
+    private boolean[] stops = new boolean[CAPACITY];
+    private boolean[] verbs = new boolean[CAPACITY];
+    private double[] freqs = new double[CAPACITY];
+    private int[][] outgoing = new int[CAPACITY][];
+    private int[] outgoingSizes = new int[CAPACITY];
+    private int[][] incoming = new int[CAPACITY][];
+    private int[] incomingSizes = new int[CAPACITY];
+    private int[][] contains = new int[CAPACITY][];
+    private int[] containsSizes = new int[CAPACITY];
+
+    private int edges = 0;
+    private int[] tails = new int[CAPACITY];
+    private int[] heads = new int[CAPACITY];
+    private double[] followsFreqs = new double[CAPACITY];
+    private double[] weights = new double[CAPACITY];
+
+    private int sentences = 0;
+    private int[][] sentenceWords = new int[CAPACITY][];
+
+    private final Map<String, int[]> wordIndex = new HashMap<>();
+    private final FollowsIndex followsIndex = new FollowsIndex();
+
+    private int[] freeNodes = new int[0];
+    private int freeNodesSize = 0;
+    private int[] freeEdges = new int[0];
+    private int freeEdgesSize = 0;
+
+    HeapGraphStorage() {
+        addNode(null, null, null, false, false, 0.0);
+        addNode(null, null, null, false, false, 0.0);
+    }
+
+    private static int[] append(int[] array, int size, int value) {
+        if (array == null) {
+            array = new int[4];
+        } else if (size == array.length) {
+            array = Arrays.copyOf(array, Integer.max(4, size * 2));
+        }
+        array[size] = value;
+        return array;
+    }
+
+    private static int remove(int[] array, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (array[i] == value) {
+                System.arraycopy(array, i + 1, array, i, size - i - 1);
+                return size - 1;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public int addWord(String text, String word, String tag, boolean stop, boolean verb) {
+        int node = addNode(text, word, tag, stop, verb, 1.0);
+        String key = key(tag, text);
+        int[] array = wordIndex.getOrDefault(key, EMPTY);
+        int i = array.length;
+        array = Arrays.copyOf(array, i + 1);
+        while (i > 0 && array[i - 1] > node) {
+            array[i] = array[i - 1];
+            i -= 1;
+        }
+        array[i] = node;
+        wordIndex.put(key, array);
+        return node;
+    }
+
+    private static String key(String tag, String text) {
+        return tag + '\u0000' + text;
+    }
+
+    private int addNode(String text, String word, String tag, boolean stop, boolean verb, double freq) {
+        if (freeNodesSize > 0) {
+            int node = freeNodes[--freeNodesSize];
+            setNode(node, text, word, tag, stop, verb, freq);
+            return node;
+        }
+        if (nodes == texts.length) {
+            int capacity = nodes * 2;
+            texts = Arrays.copyOf(texts, capacity);
+            words = Arrays.copyOf(words, capacity);
+            tags = Arrays.copyOf(tags, capacity);
+            stops = Arrays.copyOf(stops, capacity);
+            verbs = Arrays.copyOf(verbs, capacity);
+            freqs = Arrays.copyOf(freqs, capacity);
+            outgoing = Arrays.copyOf(outgoing, capacity);
+            outgoingSizes = Arrays.copyOf(outgoingSizes, capacity);
+            incoming = Arrays.copyOf(incoming, capacity);
+            incomingSizes = Arrays.copyOf(incomingSizes, capacity);
+            contains = Arrays.copyOf(contains, capacity);
+            containsSizes = Arrays.copyOf(containsSizes, capacity);
+        }
+        setNode(nodes, text, word, tag, stop, verb, freq);
+        return nodes++;
+    }
+
+    private void setNode(int node, String text, String word, String tag, boolean stop, boolean verb, double freq) {
+        texts[node] = text;
+        words[node] = word;
+        tags[node] = tag;
+        stops[node] = stop;
+        verbs[node] = verb;
+        freqs[node] = freq;
+    }
+
+    @Override
+    public void removeWord(int node) {
+        if (texts[node] == null) {
+            return;
+        }
+        if (outgoingSizes[node] > 0 || incomingSizes[node] > 0 || containsSizes[node] > 0) {
+            throw new IllegalStateException("'node' still has relationships: " + node);
+        }
+        String key = key(tags[node], texts[node]);
+        int[] array = wordIndex.get(key);
+        int size = remove(array, array.length, node);
+        if (size == 0) {
+            wordIndex.remove(key);
+        } else {
+            wordIndex.put(key, Arrays.copyOf(array, size));
+        }
+        setNode(node, null, null, null, false, false, 0.0);
+        freeNodes = append(freeNodes, freeNodesSize++, node);
+    }
+
+    @Override
+    public boolean isNode(int node) {
+        return node == WordGraph.START || node == WordGraph.END
+                || (node > WordGraph.END && node < nodes && texts[node] != null);
+    }
+
+    @Override
+    public int[] findWords(String tag, String text) {
+        return wordIndex.getOrDefault(key(tag, text), EMPTY).clone();
+    }
+
+    @Override
+    public int findFollows(int tail, int head) {
+        return followsIndex.get(tail, head);
+    }
+
+    @Override
+    public int addFollows(int tail, int head) {
+        int follows;
+        if (freeEdgesSize > 0) {
+            follows = freeEdges[--freeEdgesSize];
+        } else {
+            if (edges == tails.length) {
+                int capacity = edges * 2;
+                tails = Arrays.copyOf(tails, capacity);
+                heads = Arrays.copyOf(heads, capacity);
+                followsFreqs = Arrays.copyOf(followsFreqs, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+            follows = edges++;
+        }
+        tails[follows] = tail;
+        heads[follows] = head;
+        followsFreqs[follows] = 1.0;
+        weights[follows] = Double.NaN;
+        outgoing[tail] = append(outgoing[tail], outgoingSizes[tail]++, follows);
+        incoming[head] = append(incoming[head], incomingSizes[head]++, follows);
+        followsIndex.put(tail, head, follows);
+        return follows;
+    }
+
+    @Override
+    public void removeFollows(int follows) {
+        if (!isFollows(follows)) {
+            return;
+        }
+        int tail = tails[follows];
+        int head = heads[follows];
+        outgoingSizes[tail] = remove(outgoing[tail], outgoingSizes[tail], follows);
+        incomingSizes[head] = remove(incoming[head], incomingSizes[head], follows);
+        followsIndex.remove(tail, head);
+        tails[follows] = -1;
+        heads[follows] = -1;
+        followsFreqs[follows] = 0.0;
+        weights[follows] = Double.NaN;
+        freeEdges = append(freeEdges, freeEdgesSize++, follows);
+    }
+
+    @Override
+    public boolean isFollows(int follows) {
+        return follows >= 0 && follows < edges && tails[follows] >= 0;
+    }
+
+    @Override
+    public int addSentence(int length) {
+        if (sentences == sentenceWords.length) {
+            sentenceWords = Arrays.copyOf(sentenceWords, sentences * 2);
+        }
+        sentenceWords[sentences] = new int[length];
+        return sentences++;
+    }
+
+    @Override
+    public void contain(int sentence, int pos, int node) {
+        int[] array = sentenceWords[sentence];
+        array[pos] = node;
+        contains[node] = append(contains[node], containsSizes[node]++, sentence);
+        contains[node] = append(contains[node], containsSizes[node]++, pos);
+    }
+
+    @Override
+    public void removeSentence(int sentence) {
+        int[] array = sentenceWords[sentence];
+        for (int node : array) {
+            int[] pairs = contains[node];
+            int size = 0;
+            for (int i = 0; i < containsSizes[node]; i += 2) {
+                if (pairs[i] != sentence) {
+                    pairs[size++] = pairs[i];
+                    pairs[size++] = pairs[i + 1];
+                }
+            }
+            containsSizes[node] = size;
+        }
+        sentenceWords[sentence] = new int[0];
+    }
+
+    @Override
+    public int getNodeCount() {
+        return nodes;
+    }
+
+    @Override
+    public int getFollowsCount() {
+        return edges;
+    }
+
+    @Override
+    public int getSentenceCount() {
+        return sentences;
+    }
+
+    @Override
+    public String getText(int node) {
+        return texts[node];
+    }
+
+    @Override
+    public String getWord(int node) {
+        return words[node];
+    }
+
+    @Override
+    public String getTag(int node) {
+        return tags[node];
+    }
+
+    @Override
+    public boolean isStop(int node) {
+        return stops[node];
+    }
+
+    @Override
+    public boolean isVerb(int node) {
+        return verbs[node];
+    }
+
+    @Override
+    public double getFreq(int node) {
+        return freqs[node];
+    }
+
+    @Override
+    public void setFreq(int node, double freq) {
+        freqs[node] = freq;
+    }
+
+    @Override
+    public int getOutgoingCount(int node) {
+        return outgoingSizes[node];
+    }
+
+    @Override
+    public int getOutgoing(int node, int i) {
+        return outgoing[node][i];
+    }
+
+    @Override
+    public int getIncomingCount(int node) {
+        return incomingSizes[node];
+    }
+
+    @Override
+    public int getIncoming(int node, int i) {
+        return incoming[node][i];
+    }
+
+    @Override
+    public int getContainsCount(int node) {
+        return containsSizes[node] / 2;
+    }
+
+    @Override
+    public int getContainsSentence(int node, int i) {
+        return contains[node][2 * i];
+    }
+
+    @Override
+    public int getContainsPos(int node, int i) {
+        return contains[node][2 * i + 1];
+    }
+
+    @Override
+    public int getTail(int follows) {
+        return tails[follows];
+    }
+
+    @Override
+    public int getHead(int follows) {
+        return heads[follows];
+    }
+
+    @Override
+    public double getFollowsFreq(int follows) {
+        return followsFreqs[follows];
+    }
+
+    @Override
+    public void setFollowsFreq(int follows, double freq) {
+        followsFreqs[follows] = freq;
+    }
+
+    @Override
+    public double getWeight(int follows) {
+        return weights[follows];
+    }
+
+    @Override
+    public void setWeight(int follows, double weight) {
+        weights[follows] = weight;
+    }
+
+    @Override
+    public int getSentenceLength(int sentence) {
+        return sentenceWords[sentence].length;
+    }
+
+    @Override
+    public int getSentenceWord(int sentence, int pos) {
+        return sentenceWords[sentence][pos];
+    }
+
+    @Override
+    public void close() {
+        // Left to the GC
+    }
+
+    /**
+     * An open addressing hash map from {@code (tail, head)} pairs to {@code FOLLOWS} relationships,
+     * with linear probing and backward shift deletion.
+     */
+    private static final class FollowsIndex {
+        private long[] keys = new long[CAPACITY];
+        private int[] values = new int[CAPACITY];
+        private boolean[] used = new boolean[CAPACITY];
+        private int size = 0;
+
+        private static long key(int tail, int head) {
+            return ((long) tail << 32) | (head & 0xFFFFFFFFL);
+        }
+
+        private int slot(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & (keys.length - 1);
+        }
+
+        private int get(int tail, int head) {
+            long key = key(tail, head);
+            for (int i = slot(key); used[i]; i = (i + 1) & (keys.length - 1)) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return -1;
+        }
+
+        private void put(int tail, int head, int follows) {
+            if (2 * (size + 1) > keys.length) {
+                resize();
+            }
+            long key = key(tail, head);
+            int i = slot(key);
+            while (used[i]) {
+                if (keys[i] == key) {
+                    values[i] = follows;
+                    return;
+                }
+                i = (i + 1) & (keys.length - 1);
+            }
+            keys[i] = key;
+            values[i] = follows;
+            used[i] = true;
+            size += 1;
+        }
+
+        private void remove(int tail, int head) {
+            long key = key(tail, head);
+            int mask = keys.length - 1;
+            int i = slot(key);
+            while (used[i] && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (!used[i]) {
+                return;
+            }
+            used[i] = false;
+            size -= 1;
+            for (int j = (i + 1) & mask; used[j]; j = (j + 1) & mask) {
+                int home = slot(keys[j]);
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    used[i] = true;
+                    used[j] = false;
+                    i = j;
+                }
+            }
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    put((int) (oldKeys[i] >>> 32), (int) oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+    }
+}
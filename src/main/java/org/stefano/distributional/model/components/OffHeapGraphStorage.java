@@ -0,0 +1,792 @@
+package org.stefano.distributional.model.components;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The off-heap storage of a {@link WordGraph} (see {@link WordGraph#offHeap()}).
+ * <p>
+ * Properties are kept in columns backed by direct buffers, which grow by doubling as the heap arrays do,
+ * and texts, words and POS tags are replaced by the ids of a {@link Dictionary}, which is the only structure
+ * kept on the heap. Adjacency arrays, {@code CONTAINS} pairs and the words of each sentence are blocks
+ * of an off-heap {@link Arena}.
+ * Words are indexed by POS tag and text (the nodes with the same ones are chained in index order),
+ * and relationships by their end nodes, in off-heap open addressing hash maps.
+ * <p>
+ * Direct buffers are released as soon as they are replaced by larger ones and when the storage is closed,
+ * rather than when they are garbage collected, so that the direct memory of a process summarising many clusters
+ * doesn't depend on how often the GC runs.
+ */
+final class OffHeapGraphStorage implements GraphStorage {
+
+    private static final int CAPACITY = 16;
+    private static final byte STOP = 1;
+    private static final byte VERB = 2;
+    private static final ByteBuffer RELEASED = ByteBuffer.allocate(0);
+    private static final Releaser RELEASER = Releaser.find();
+
+    private final Dictionary dictionary = new Dictionary();
+    private final Arena arena = new Arena();
+
+    private int nodes = 0;
+    private final Column texts = new Column(Integer.BYTES);
+    private final Column words = new Column(Integer.BYTES);
+    private final Column tags = new Column(Integer.BYTES);
+    private final Column flags = new Column(Byte.BYTES);
+    private final Column freqs = new Column(Double.BYTES);
+    private final Column outgoing = new Column(Long.BYTES);
+    private final Column outgoingSizes = new Column(Integer.BYTES);
+    private final Column incoming = new Column(Long.BYTES);
+    private final Column incomingSizes = new Column(Integer.BYTES);
+    private final Column contains = new Column(Long.BYTES);
+    private final Column containsSizes = new Column(Integer.BYTES);
+    private final Column nextWords = new Column(Integer.BYTES);
+
+    private int edges = 0;
+    private final Column tails = new Column(Integer.BYTES);
+    private final Column heads = new Column(Integer.BYTES);
+    private final Column followsFreqs = new Column(Double.BYTES);
+    private final Column weights = new Column(Double.BYTES);
+
+    private int sentences = 0;
+    private final Column sentenceWords = new Column(Long.BYTES);
+    private final Column sentenceLengths = new Column(Integer.BYTES);
+
+    private final Index wordIndex = new Index();
+    private final Index followsIndex = new Index();
+
+    private final Column freeNodes = new Column(Integer.BYTES);
+    private int freeNodesSize = 0;
+    private final Column freeEdges = new Column(Integer.BYTES);
+    private int freeEdgesSize = 0;
+
+    OffHeapGraphStorage() {
+        addNode(-1, -1, -1, (byte) 0, 0.0);
+        addNode(-1, -1, -1, (byte) 0, 0.0);
+    }
+
+    private static long key(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Releases the memory of the given direct buffer at once, which must not be used any more.
+     */
+    private static void release(ByteBuffer buffer) {
+        if (buffer.isDirect() && RELEASER != null) {
+            try {
+                RELEASER.release(buffer);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Can't release a direct buffer", e);
+            }
+        }
+    }
+
+    private static void push(Column stack, int size, int value) {
+        stack.ensure(size + 1);
+        stack.setInt(size, value);
+    }
+
+    @Override
+    public int addWord(String text, String word, String tag, boolean stop, boolean verb) {
+        int textId = dictionary.id(text);
+        int tagId = dictionary.id(tag);
+        int node = addNode(textId, dictionary.id(word), tagId, (byte) ((stop ? STOP : 0) | (verb ? VERB : 0)), 1.0);
+        long key = key(tagId, textId);
+        int first = wordIndex.get(key, -1);
+        if (first < 0 || first > node) {
+            nextWords.setInt(node, first);
+            wordIndex.put(key, node);
+        } else {
+            int previous = first;
+            int next;
+            while ((next = nextWords.getInt(previous)) >= 0 && next < node) {
+                previous = next;
+            }
+            nextWords.setInt(node, next);
+            nextWords.setInt(previous, node);
+        }
+        return node;
+    }
+
+    private int addNode(int text, int word, int tag, byte flag, double freq) {
+        if (freeNodesSize > 0) {
+            int node = freeNodes.getInt(--freeNodesSize);
+            setNode(node, text, word, tag, flag, freq);
+            return node;
+        }
+        if (nodes == texts.capacity()) {
+            int capacity = nodes + 1;
+            for (Column column : new Column[]{texts, words, tags, flags, freqs, outgoing, outgoingSizes, incoming,
+                    incomingSizes, contains, containsSizes, nextWords}) {
+                column.ensure(capacity);
+            }
+        }
+        setNode(nodes, text, word, tag, flag, freq);
+        return nodes++;
+    }
+
+    private void setNode(int node, int text, int word, int tag, byte flag, double freq) {
+        texts.setInt(node, text);
+        words.setInt(node, word);
+        tags.setInt(node, tag);
+        flags.setByte(node, flag);
+        freqs.setDouble(node, freq);
+        nextWords.setInt(node, -1);
+    }
+
+    @Override
+    public void removeWord(int node) {
+        int text = texts.getInt(node);
+        if (text < 0) {
+            return;
+        }
+        if (outgoingSizes.getInt(node) > 0 || incomingSizes.getInt(node) > 0 || containsSizes.getInt(node) > 0) {
+            throw new IllegalStateException("'node' still has relationships: " + node);
+        }
+        long key = key(tags.getInt(node), text);
+        int first = wordIndex.get(key, -1);
+        if (first == node) {
+            int next = nextWords.getInt(node);
+            if (next < 0) {
+                wordIndex.remove(key);
+            } else {
+                wordIndex.put(key, next);
+            }
+        } else {
+            int previous = first;
+            while (nextWords.getInt(previous) != node) {
+                previous = nextWords.getInt(previous);
+            }
+            nextWords.setInt(previous, nextWords.getInt(node));
+        }
+        setNode(node, -1, -1, -1, (byte) 0, 0.0);
+        push(freeNodes, freeNodesSize++, node);
+    }
+
+    @Override
+    public boolean isNode(int node) {
+        return node == WordGraph.START || node == WordGraph.END
+                || (node > WordGraph.END && node < nodes && texts.getInt(node) >= 0);
+    }
+
+    @Override
+    public int[] findWords(String tag, String text) {
+        int tagId = dictionary.find(tag);
+        int textId = dictionary.find(text);
+        int first = tagId < 0 || textId < 0 ? -1 : wordIndex.get(key(tagId, textId), -1);
+        int count = 0;
+        for (int node = first; node >= 0; node = nextWords.getInt(node)) {
+            count += 1;
+        }
+        int[] result = new int[count];
+        for (int i = 0, node = first; node >= 0; node = nextWords.getInt(node)) {
+            result[i++] = node;
+        }
+        return result;
+    }
+
+    @Override
+    public int findFollows(int tail, int head) {
+        return followsIndex.get(key(tail, head), -1);
+    }
+
+    @Override
+    public int addFollows(int tail, int head) {
+        int follows;
+        if (freeEdgesSize > 0) {
+            follows = freeEdges.getInt(--freeEdgesSize);
+        } else {
+            if (edges == tails.capacity()) {
+                int capacity = edges + 1;
+                for (Column column : new Column[]{tails, heads, followsFreqs, weights}) {
+                    column.ensure(capacity);
+                }
+            }
+            follows = edges++;
+        }
+        tails.setInt(follows, tail);
+        heads.setInt(follows, head);
+        followsFreqs.setDouble(follows, 1.0);
+        weights.setDouble(follows, Double.NaN);
+        int size = outgoingSizes.getInt(tail);
+        outgoing.setLong(tail, arena.append(outgoing.getLong(tail), size, follows));
+        outgoingSizes.setInt(tail, size + 1);
+        size = incomingSizes.getInt(head);
+        incoming.setLong(head, arena.append(incoming.getLong(head), size, follows));
+        incomingSizes.setInt(head, size + 1);
+        followsIndex.put(key(tail, head), follows);
+        return follows;
+    }
+
+    @Override
+    public void removeFollows(int follows) {
+        if (!isFollows(follows)) {
+            return;
+        }
+        int tail = tails.getInt(follows);
+        int head = heads.getInt(follows);
+        outgoingSizes.setInt(tail, arena.remove(outgoing.getLong(tail), outgoingSizes.getInt(tail), follows));
+        incomingSizes.setInt(head, arena.remove(incoming.getLong(head), incomingSizes.getInt(head), follows));
+        followsIndex.remove(key(tail, head));
+        tails.setInt(follows, -1);
+        heads.setInt(follows, -1);
+        followsFreqs.setDouble(follows, 0.0);
+        weights.setDouble(follows, Double.NaN);
+        push(freeEdges, freeEdgesSize++, follows);
+    }
+
+    @Override
+    public boolean isFollows(int follows) {
+        return follows >= 0 && follows < edges && tails.getInt(follows) >= 0;
+    }
+
+    @Override
+    public int addSentence(int length) {
+        sentenceWords.ensure(sentences + 1);
+        sentenceLengths.ensure(sentences + 1);
+        sentenceWords.setLong(sentences, arena.allocate(length));
+        sentenceLengths.setInt(sentences, length);
+        return sentences++;
+    }
+
+    @Override
+    public void contain(int sentence, int pos, int node) {
+        if (pos < 0 || pos >= sentenceLengths.getInt(sentence)) {
+            throw new IndexOutOfBoundsException("'pos' is out of sentence #" + sentence + ": " + pos);
+        }
+        long block = sentenceWords.getLong(sentence);
+        arena.set(block, pos, node);
+        int size = containsSizes.getInt(node);
+        long pairs = arena.append(contains.getLong(node), size, sentence);
+        contains.setLong(node, arena.append(pairs, size + 1, pos));
+        containsSizes.setInt(node, size + 2);
+    }
+
+    @Override
+    public void removeSentence(int sentence) {
+        long block = sentenceWords.getLong(sentence);
+        int length = sentenceLengths.getInt(sentence);
+        for (int pos = 0; pos < length; pos++) {
+            int node = arena.get(block, pos);
+            long pairs = contains.getLong(node);
+            int size = 0;
+            for (int i = 0; i < containsSizes.getInt(node); i += 2) {
+                if (arena.get(pairs, i) != sentence) {
+                    arena.set(pairs, size++, arena.get(pairs, i));
+                    arena.set(pairs, size++, arena.get(pairs, i + 1));
+                }
+            }
+            containsSizes.setInt(node, size);
+        }
+        arena.release(block);
+        sentenceWords.setLong(sentence, 0L);
+        sentenceLengths.setInt(sentence, 0);
+    }
+
+    @Override
+    public int getNodeCount() {
+        return nodes;
+    }
+
+    @Override
+    public int getFollowsCount() {
+        return edges;
+    }
+
+    @Override
+    public int getSentenceCount() {
+        return sentences;
+    }
+
+    @Override
+    public String getText(int node) {
+        return dictionary.get(texts.getInt(node));
+    }
+
+    @Override
+    public String getWord(int node) {
+        return dictionary.get(words.getInt(node));
+    }
+
+    @Override
+    public String getTag(int node) {
+        return dictionary.get(tags.getInt(node));
+    }
+
+    @Override
+    public boolean isStop(int node) {
+        return (flags.getByte(node) & STOP) != 0;
+    }
+
+    @Override
+    public boolean isVerb(int node) {
+        return (flags.getByte(node) & VERB) != 0;
+    }
+
+    @Override
+    public double getFreq(int node) {
+        return freqs.getDouble(node);
+    }
+
+    @Override
+    public void setFreq(int node, double freq) {
+        freqs.setDouble(node, freq);
+    }
+
+    @Override
+    public int getOutgoingCount(int node) {
+        return outgoingSizes.getInt(node);
+    }
+
+    @Override
+    public int getOutgoing(int node, int i) {
+        return arena.get(outgoing.getLong(node), i);
+    }
+
+    @Override
+    public int getIncomingCount(int node) {
+        return incomingSizes.getInt(node);
+    }
+
+    @Override
+    public int getIncoming(int node, int i) {
+        return arena.get(incoming.getLong(node), i);
+    }
+
+    @Override
+    public int getContainsCount(int node) {
+        return containsSizes.getInt(node) / 2;
+    }
+
+    @Override
+    public int getContainsSentence(int node, int i) {
+        return arena.get(contains.getLong(node), 2 * i);
+    }
+
+    @Override
+    public int getContainsPos(int node, int i) {
+        return arena.get(contains.getLong(node), 2 * i + 1);
+    }
+
+    @Override
+    public int getTail(int follows) {
+        return tails.getInt(follows);
+    }
+
+    @Override
+    public int getHead(int follows) {
+        return heads.getInt(follows);
+    }
+
+    @Override
+    public double getFollowsFreq(int follows) {
+        return followsFreqs.getDouble(follows);
+    }
+
+    @Override
+    public void setFollowsFreq(int follows, double freq) {
+        followsFreqs.setDouble(follows, freq);
+    }
+
+    @Override
+    public double getWeight(int follows) {
+        return weights.getDouble(follows);
+    }
+
+    @Override
+    public void setWeight(int follows, double weight) {
+        weights.setDouble(follows, weight);
+    }
+
+    @Override
+    public int getSentenceLength(int sentence) {
+        return sentenceLengths.getInt(sentence);
+    }
+
+    @Override
+    public int getSentenceWord(int sentence, int pos) {
+        return arena.get(sentenceWords.getLong(sentence), pos);
+    }
+
+    @Override
+    public void close() {
+        for (Column column : new Column[]{texts, words, tags, flags, freqs, outgoing, outgoingSizes, incoming,
+                incomingSizes, contains, containsSizes, nextWords, tails, heads, followsFreqs, weights,
+                sentenceWords, sentenceLengths, freeNodes, freeEdges}) {
+            column.free();
+        }
+        arena.free();
+        wordIndex.free();
+        followsIndex.free();
+    }
+
+    /**
+     * A column of fixed width values backed by a direct buffer in native byte order, which is zeroed
+     * when allocated and replaced by a copy twice as large when full.
+     */
+    private static final class Column {
+        private final int width;
+        private ByteBuffer buffer;
+
+        private Column(int width) {
+            this(width, CAPACITY);
+        }
+
+        private Column(int width, int capacity) {
+            this.width = width;
+            this.buffer = allocate(width, capacity);
+        }
+
+        private static ByteBuffer allocate(int width, long capacity) {
+            if (capacity * width > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Off-heap column too large: " + capacity + " value/s");
+            }
+            return ByteBuffer.allocateDirect((int) capacity * width).order(ByteOrder.nativeOrder());
+        }
+
+        private int capacity() {
+            return buffer.capacity() / width;
+        }
+
+        private void ensure(int size) {
+            int capacity = capacity();
+            if (size > capacity) {
+                long next = Long.max(size, Long.min(2L * capacity, Integer.MAX_VALUE / width));
+                ByteBuffer result = allocate(width, next);
+                buffer.clear();
+                result.put(buffer);
+                release(buffer);
+                buffer = result;
+            }
+        }
+
+        private void free() {
+            release(buffer);
+            buffer = RELEASED;
+        }
+
+        private void copy(int from, int to, int length) {
+            ByteBuffer source = buffer.duplicate();
+            source.limit((from + length) * width).position(from * width);
+            ByteBuffer target = buffer.duplicate();
+            target.position(to * width);
+            target.put(source);
+        }
+
+        private byte getByte(int i) {
+            return buffer.get(i);
+        }
+
+        private void setByte(int i, byte value) {
+            buffer.put(i, value);
+        }
+
+        private int getInt(int i) {
+            return buffer.getInt(i * Integer.BYTES);
+        }
+
+        private void setInt(int i, int value) {
+            buffer.putInt(i * Integer.BYTES, value);
+        }
+
+        private long getLong(int i) {
+            return buffer.getLong(i * Long.BYTES);
+        }
+
+        private void setLong(int i, long value) {
+            buffer.putLong(i * Long.BYTES, value);
+        }
+
+        private double getDouble(int i) {
+            return buffer.getDouble(i * Double.BYTES);
+        }
+
+        private void setDouble(int i, double value) {
+            buffer.putDouble(i * Double.BYTES, value);
+        }
+    }
+
+    /**
+     * An off-heap allocator of int arrays. Blocks have power of two capacities (at least 4 values) and freed
+     * blocks are linked in a list per capacity and recycled by the next allocations, so that a graph fed
+     * by a sliding window of sentences doesn't grow indefinitely.
+     * <p>
+     * A block is referred to by its offset in the arena and the base 2 logarithm of its capacity packed
+     * in a {@code long}, where {@code 0} stands for no block at all.
+     */
+    private static final class Arena {
+        private static final int MIN_BITS = 2;
+        private static final int BITS_MASK = 0x1F;
+
+        private final Column values = new Column(Integer.BYTES, CAPACITY * CAPACITY);
+        private final int[] free = new int[Integer.SIZE];
+        private int top = 0;
+
+        private Arena() {
+            Arrays.fill(free, -1);
+        }
+
+        private static int offset(long block) {
+            return (int) (block >>> 5);
+        }
+
+        private static int bits(long block) {
+            return (int) (block & BITS_MASK);
+        }
+
+        /**
+         * Returns a new, zeroed block that can hold the given number of values, {@code 0} if none.
+         */
+        private long allocate(int size) {
+            if (size < 0) {
+                throw new IllegalArgumentException("'size' is negative: " + size);
+            }
+            if (size == 0) {
+                return 0L;
+            }
+            long block = allocateBits(Integer.max(MIN_BITS, Integer.SIZE - Integer.numberOfLeadingZeros(size - 1)));
+            for (int i = 0; i < size; i++) {
+                values.setInt(offset(block) + i, 0);
+            }
+            return block;
+        }
+
+        private long allocateBits(int bits) {
+            int offset = free[bits];
+            if (offset >= 0) {
+                free[bits] = values.getInt(offset);
+            } else {
+                long end = (long) top + (1 << bits);
+                if (end > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("Off-heap arena too large: " + end + " value/s");
+                }
+                values.ensure((int) end);
+                offset = top;
+                top = (int) end;
+            }
+            return ((long) offset << 5) | bits;
+        }
+
+        private void release(long block) {
+            if (block != 0L) {
+                values.setInt(offset(block), free[bits(block)]);
+                free[bits(block)] = offset(block);
+            }
+        }
+
+        private void free() {
+            values.free();
+        }
+
+        private int get(long block, int i) {
+            return values.getInt(offset(block) + i);
+        }
+
+        private void set(long block, int i, int value) {
+            values.setInt(offset(block) + i, value);
+        }
+
+        /**
+         * Appends the given {@code value} to the given {@code block} of {@code size} values and returns the block,
+         * which is replaced by one twice as large when full.
+         */
+        private long append(long block, int size, int value) {
+            if (block == 0L) {
+                block = allocateBits(MIN_BITS);
+            } else if (size == 1 << bits(block)) {
+                long result = allocateBits(bits(block) + 1);
+                values.copy(offset(block), offset(result), size);
+                release(block);
+                block = result;
+            }
+            set(block, size, value);
+            return block;
+        }
+
+        /**
+         * Removes the first occurrence of the given {@code value} from the given {@code block} of {@code size}
+         * values and returns the new size.
+         */
+        private int remove(long block, int size, int value) {
+            for (int i = 0; i < size; i++) {
+                if (get(block, i) == value) {
+                    for (int j = i + 1; j < size; j++) {
+                        set(block, j - 1, get(block, j));
+                    }
+                    return size - 1;
+                }
+            }
+            return size;
+        }
+    }
+
+    /**
+     * An off-heap open addressing hash map from {@code long} keys to {@code int} values, with linear probing
+     * and backward shift deletion. Keys are stored increased by one, so that {@code 0} marks the free slots.
+     */
+    private static final class Index {
+        private Column keys = new Column(Long.BYTES);
+        private Column values = new Column(Integer.BYTES);
+        private int mask = CAPACITY - 1;
+        private int size = 0;
+
+        private int slot(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+
+        private int get(long key, int fallback) {
+            for (int i = slot(key); ; i = (i + 1) & mask) {
+                long stored = keys.getLong(i);
+                if (stored == 0L) {
+                    return fallback;
+                }
+                if (stored == key + 1) {
+                    return values.getInt(i);
+                }
+            }
+        }
+
+        private void put(long key, int value) {
+            if (2 * (size + 1) > mask + 1) {
+                resize();
+            }
+            int i = slot(key);
+            for (long stored = keys.getLong(i); stored != 0L; stored = keys.getLong(i)) {
+                if (stored == key + 1) {
+                    values.setInt(i, value);
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys.setLong(i, key + 1);
+            values.setInt(i, value);
+            size += 1;
+        }
+
+        private void remove(long key) {
+            int i = slot(key);
+            long stored = keys.getLong(i);
+            while (stored != 0L && stored != key + 1) {
+                i = (i + 1) & mask;
+                stored = keys.getLong(i);
+            }
+            if (stored == 0L) {
+                return;
+            }
+            keys.setLong(i, 0L);
+            size -= 1;
+            for (int j = (i + 1) & mask; (stored = keys.getLong(j)) != 0L; j = (j + 1) & mask) {
+                int home = slot(stored - 1);
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    keys.setLong(i, stored);
+                    values.setInt(i, values.getInt(j));
+                    keys.setLong(j, 0L);
+                    i = j;
+                }
+            }
+        }
+
+        private void resize() {
+            Column oldKeys = keys;
+            Column oldValues = values;
+            int capacity = mask + 1;
+            keys = new Column(Long.BYTES, 2 * capacity);
+            values = new Column(Integer.BYTES, 2 * capacity);
+            mask = 2 * capacity - 1;
+            size = 0;
+            for (int i = 0; i < capacity; i++) {
+                long stored = oldKeys.getLong(i);
+                if (stored != 0L) {
+                    put(stored - 1, oldValues.getInt(i));
+                }
+            }
+            oldKeys.free();
+            oldValues.free();
+        }
+
+        private void free() {
+            keys.free();
+            values.free();
+        }
+    }
+
+    /**
+     * Releases direct buffers through {@code sun.misc.Unsafe.invokeCleaner} on Java 9 and later, or through
+     * their {@code sun.misc.Cleaner} on Java 8. If neither is available, buffers are left to the GC.
+     */
+    @FunctionalInterface
+    private interface Releaser {
+
+        void release(ByteBuffer buffer) throws ReflectiveOperationException;
+
+        static Releaser find() {
+            try {
+                Class<?> type = Class.forName("sun.misc.Unsafe");
+                Method invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+                Field field = type.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                Object unsafe = field.get(null);
+                return buffer -> invokeCleaner.invoke(unsafe, buffer);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // Java 8
+            }
+            try {
+                Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+                return buffer -> {
+                    Object result = cleaner.invoke(buffer);
+                    if (result != null) {
+                        clean.invoke(result);
+                    }
+                };
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * The strings of a graph, by id in order of addition. It only grows, though its size depends
+     * on the vocabulary of the sentences rather than on their number.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private String[] strings = new String[CAPACITY];
+        private int size = 0;
+
+        /**
+         * Returns the id of the given {@code string}, which is added if missing, or {@code -1} if {@code null}.
+         */
+        private int id(String string) {
+            if (string == null) {
+                return -1;
+            }
+            Integer id = ids.get(string);
+            if (id == null) {
+                if (size == strings.length) {
+                    strings = Arrays.copyOf(strings, size * 2);
+                }
+                strings[size] = string;
+                id = size++;
+                ids.put(string, id);
+            }
+            return id;
+        }
+
+        private int find(String string) {
+            Integer id = ids.get(string);
+            return id == null ? -1 : id;
+        }
+
+        private String get(int id) {
+            return id < 0 ? null : strings[id];
+        }
+    }
+}
@@ -2,7 +2,10 @@ package org.stefano.distributional.model.components;
 
 import org.neo4j.graphdb.*;
 
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static java.util.Objects.requireNonNull;
 
@@ -32,6 +35,26 @@ public interface PathCompressor {
         return false;
     }
 
+    /**
+     * Checks whether the given {@code path} of the given in-memory {@code graph} contains at least a {@code verb}.
+     *
+     * @param graph the {@link WordGraph} the given {@code path} belongs to
+     * @param path  the nodes of the path to be checked
+     * @param size  the number of nodes in the path
+     * @return {@code true} if the given {@code path} contains a {@code verb}, {@code false} otherwise
+     */
+    static boolean hasVerb(WordGraph graph, int[] path, int size) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(path, "'path' is null");
+
+        for (int i = 0; i < size; i++) {
+            if (graph.isVerb(path[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Decodes the given {@code path} into a string and returns it.
      *
@@ -41,12 +64,45 @@ public interface PathCompressor {
     static Optional<String> decode(Path path) {
         requireNonNull(path, "'path' is null");
 
-        String sentence = "";
+        StringBuilder sentence = new StringBuilder();
         for (Node node : path.nodes()) {
-            sentence = (sentence + " " + node.getProperty("word", "")).trim();
+            String word = ((String) node.getProperty("word", "")).trim();
+            if (!word.isEmpty()) {
+                if (sentence.length() > 0) {
+                    sentence.append(' ');
+                }
+                sentence.append(word);
+            }
         }
-        if (!sentence.isEmpty()) {
-            return Optional.of(sentence + ".");
+        if (sentence.length() > 0) {
+            return Optional.of(sentence.append('.').toString());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Decodes the given {@code path} of the given in-memory {@code graph} into a string and returns it.
+     *
+     * @param graph the {@link WordGraph} the given {@code path} belongs to
+     * @param path  the nodes of the path to be decoded
+     * @return the (possibly empty) string from the given {@code path}
+     */
+    static Optional<String> decode(WordGraph graph, int[] path) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(path, "'path' is null");
+
+        StringBuilder sentence = new StringBuilder();
+        for (int node : path) {
+            String word = graph.getWord(node);
+            if (word != null && !word.isEmpty()) {
+                if (sentence.length() > 0) {
+                    sentence.append(' ');
+                }
+                sentence.append(word);
+            }
+        }
+        if (sentence.length() > 0) {
+            return Optional.of(sentence.append('.').toString());
         }
         return Optional.empty();
     }
@@ -66,10 +122,174 @@ public interface PathCompressor {
      * @param maxDepth the upper bound limit on the paths' length
      * @return the string that best summarises the graph, if any
      */
-    Optional<String> compress(GraphDatabaseService graph, int maxDepth);
+    default Optional<String> compress(GraphDatabaseService graph, int maxDepth) {
+        return compress(graph, GraphModel.CLUSTER, maxDepth);
+    }
+
+    /**
+     * This method finds in the given {@code partition} of the given {@code graph} the minimal cost path
+     * from {@code start} to {@code end} with the same constraints and ranking
+     * of {@link #compress(GraphDatabaseService, int)}, and compresses it to generate the summary to return.
+     *
+     * @param graph     the {@link GraphDatabaseService} with the {@code word graph} to be summarised
+     * @param partition the {@link Label} of the partition of the {@code word graph}
+     * @param maxDepth  the upper bound limit on the paths' length
+     * @return the string that best summarises the graph, if any
+     */
+    Optional<String> compress(GraphDatabaseService graph, Label partition, int maxDepth);
+
+    /**
+     * This method finds in the given in-memory {@code graph} the minimal cost path from {@code START} to {@code END}
+     * with the same constraints and ranking of {@link #compress(GraphDatabaseService, int)},
+     * and compresses it to generate the summary to return.
+     *
+     * @param graph    the {@link WordGraph} with the {@code word graph} to be summarised
+     * @param maxDepth the upper bound limit on the paths' length
+     * @return the string that best summarises the graph, if any
+     */
+    Optional<String> compress(WordGraph graph, int maxDepth);
+
+    /**
+     * This method finds in the given {@code graph} the {@code k} minimal cost paths from {@code start} to {@code end}
+     * with the same constraints and ranking of {@link #compress(GraphDatabaseService, int)}.
+     *
+     * @param graph    the {@link GraphDatabaseService} with the {@code word graph} to be summarised
+     * @param maxDepth the upper bound limit on the paths' length
+     * @param k        the maximum number of paths to return
+     * @return the (at most) {@code k} best {@link Compression}s, by increasing cost
+     */
+    default List<Compression> compressTopK(GraphDatabaseService graph, int maxDepth, int k) {
+        return compressTopK(graph, GraphModel.CLUSTER, maxDepth, k);
+    }
+
+    /**
+     * This method finds in the given {@code partition} of the given {@code graph} the {@code k} minimal cost paths
+     * from {@code start} to {@code end} with the same constraints and ranking
+     * of {@link #compress(GraphDatabaseService, int)}.
+     * Only {@code O(k)} candidates are kept in memory, whatever the number of paths.
+     *
+     * @param graph     the {@link GraphDatabaseService} with the {@code word graph} to be summarised
+     * @param partition the {@link Label} of the partition of the {@code word graph}
+     * @param maxDepth  the upper bound limit on the paths' length
+     * @param k         the maximum number of paths to return
+     * @return the (at most) {@code k} best {@link Compression}s, by increasing cost
+     */
+    default List<Compression> compressTopK(GraphDatabaseService graph, Label partition, int maxDepth, int k) {
+        return compressTopK(graph, partition, maxDepth, k, SearchBudget.none());
+    }
+
+    /**
+     * This method finds in the given {@code partition} of the given {@code graph} the {@code k} minimal cost paths
+     * as {@link #compressTopK(GraphDatabaseService, Label, int, int)}, within the given {@code budget}:
+     * if the budget is over before the search completes, the best paths found so far are returned
+     * as {@code approximate} {@link Compression}s.
+     *
+     * @param graph     the {@link GraphDatabaseService} with the {@code word graph} to be summarised
+     * @param partition the {@link Label} of the partition of the {@code word graph}
+     * @param maxDepth  the upper bound limit on the paths' length
+     * @param k         the maximum number of paths to return
+     * @param budget    the {@link SearchBudget} of the search
+     * @return the (at most) {@code k} best {@link Compression}s, by increasing cost
+     */
+    List<Compression> compressTopK(GraphDatabaseService graph, Label partition, int maxDepth, int k,
+                                   SearchBudget budget);
+
+    /**
+     * This method finds in the given in-memory {@code graph} the {@code k} minimal cost paths from {@code START}
+     * to {@code END} with the same constraints and ranking of {@link #compress(GraphDatabaseService, int)}.
+     * Only {@code O(k)} candidates are kept in memory, whatever the number of paths, and their summaries
+     * are only decoded when requested.
+     *
+     * @param graph    the {@link WordGraph} with the {@code word graph} to be summarised
+     * @param maxDepth the upper bound limit on the paths' length
+     * @param k        the maximum number of paths to return
+     * @return the (at most) {@code k} best {@link Compression}s, by increasing cost
+     */
+    default List<Compression> compressTopK(WordGraph graph, int maxDepth, int k) {
+        return compressTopK(graph, maxDepth, k, SearchBudget.none());
+    }
+
+    /**
+     * This method finds in the given in-memory {@code graph} the {@code k} minimal cost paths
+     * as {@link #compressTopK(WordGraph, int, int)}, within the given {@code budget}:
+     * if the budget is over before the search completes, the best paths found so far are returned
+     * as {@code approximate} {@link Compression}s.
+     *
+     * @param graph    the {@link WordGraph} with the {@code word graph} to be summarised
+     * @param maxDepth the upper bound limit on the paths' length
+     * @param k        the maximum number of paths to return
+     * @param budget   the {@link SearchBudget} of the search
+     * @return the (at most) {@code k} best {@link Compression}s, by increasing cost
+     */
+    List<Compression> compressTopK(WordGraph graph, int maxDepth, int k, SearchBudget budget);
+
+    /**
+     * A candidate summary associated with the {@code cost} and the {@code length} of its path.
+     * The summary is decoded when first requested.
+     * Candidates are {@code approximate} if their search stopped before completion (see {@link SearchBudget}),
+     * in which case better candidates may exist.
+     */
+    final class Compression implements Comparable<Compression> {
+        private final double cost;
+        private final int length;
+        private final boolean approximate;
+        private Supplier<Optional<String>> decoder;
+        private Optional<String> summary;
+
+        public Compression(double cost, int length, Supplier<Optional<String>> decoder) {
+            this(cost, length, decoder, false);
+        }
+
+        public Compression(double cost, int length, Supplier<Optional<String>> decoder, boolean approximate) {
+            this.cost = cost;
+            this.length = length;
+            this.approximate = approximate;
+            this.decoder = requireNonNull(decoder, "'decoder' is null");
+        }
+
+        public double getCost() {
+            return cost;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public boolean isApproximate() {
+            return approximate;
+        }
+
+        public synchronized Optional<String> getSummary() {
+            if (summary == null) {
+                summary = decoder.get();
+                decoder = null;
+            }
+            return summary;
+        }
+
+        @Override
+        public int compareTo(Compression other) {
+            requireNonNull(other, "'other' is null");
+
+            int result = Double.compare(cost, other.cost);
+            if (result == 0) {
+                result = Integer.compare(length, other.length);
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (cost: %s, length: %d%s)", getSummary().orElse(""), cost, length,
+                    approximate ? ", approximate" : "");
+        }
+    }
 
     /**
      * A {@link Path} associated with its {@code cost}.
+     * Paths are ranked by increasing cost and length; ties are broken by comparing the words of their nodes
+     * and then the ids of their nodes, so that the ranking is deterministic.
+     * Since node properties are read, paths must be compared within a transaction.
      */
     final class CostPath implements Comparable<CostPath> {
         private final Path path;
@@ -97,11 +317,39 @@ public interface PathCompressor {
                 if (!path.equals(other.path)) {
                     result = Integer.compare(path.length(), other.path.length());
                     if (result == 0) {
-                        result = (int) System.nanoTime() % 2;
+                        result = compareWords(path, other.path);
+                    }
+                    if (result == 0) {
+                        result = compareIds(path, other.path);
                     }
                 }
             }
             return result;
         }
+
+        private static int compareWords(Path path, Path other) {
+            Iterator<Node> nodes = path.nodes().iterator();
+            Iterator<Node> others = other.nodes().iterator();
+            while (nodes.hasNext() && others.hasNext()) {
+                int result = ((String) nodes.next().getProperty("word", ""))
+                        .compareTo((String) others.next().getProperty("word", ""));
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return Boolean.compare(nodes.hasNext(), others.hasNext());
+        }
+
+        private static int compareIds(Path path, Path other) {
+            Iterator<Node> nodes = path.nodes().iterator();
+            Iterator<Node> others = other.nodes().iterator();
+            while (nodes.hasNext() && others.hasNext()) {
+                int result = Long.compare(nodes.next().getId(), others.next().getId());
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return Boolean.compare(nodes.hasNext(), others.hasNext());
+        }
     }
 }
@@ -0,0 +1,130 @@
+package org.stefano.distributional.model.components;
+
+import java.time.Duration;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A limit on the work of a {@link PathCompressor}: a deadline, a maximum number of explored paths (as counted
+ * by each compressor and recorded by {@code Metrics#recordPaths(long)}) and a cancellation flag.
+ * <p>
+ * Searches check their budget periodically and, once it is over, stop and return the best valid paths found
+ * so far as {@code approximate} {@link PathCompressor.Compression}s. A budget is also over when the thread
+ * of the search is interrupted, so that cancelling a {@link java.util.concurrent.Future} of an
+ * {@link java.util.concurrent.ExecutorService} with interruption stops its search as well. Cancelling a
+ * {@link java.util.concurrent.CompletableFuture} never interrupts its task, hence asynchronous summaries
+ * are stopped by cancelling their budget instead
+ * (see {@code Summarizer#submit(List, Collection, SearchBudget)}).
+ * <p>
+ * Deadlines are set when a budget is created, hence a budget is meant for a single call; it can be cancelled
+ * from any thread by means of {@link #cancel()}.
+ */
+public final class SearchBudget {
+
+    private static final SearchBudget NONE = new SearchBudget(false, 0L, Long.MAX_VALUE);
+
+    private final boolean timed;
+    private final long deadline;
+    private final long maxPaths;
+    private volatile boolean cancelled = false;
+    private volatile boolean exhausted = false;
+
+    private SearchBudget(boolean timed, long deadline, long maxPaths) {
+        this.timed = timed;
+        this.deadline = deadline;
+        this.maxPaths = maxPaths;
+    }
+
+    /**
+     * Returns a new budget without deadline nor limit on the paths, which can still be cancelled.
+     *
+     * @return a new unlimited budget
+     */
+    public static SearchBudget unlimited() {
+        return new SearchBudget(false, 0L, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the shared budget of the searches that are given no budget at all, which nobody can cancel
+     * nor check (see {@link PathCompressor#compressTopK(WordGraph, int, int)}), hence it is never exhausted,
+     * though the thread of the search can still be interrupted.
+     *
+     * @return the shared unlimited budget
+     */
+    static SearchBudget none() {
+        return NONE;
+    }
+
+    /**
+     * Returns a new budget that expires after the given {@code timeout}, starting from now.
+     *
+     * @param timeout the time available to the search
+     * @return a new budget with the given deadline and the same limit on the paths of this budget
+     */
+    public SearchBudget withTimeout(Duration timeout) {
+        requireNonNull(timeout, "'timeout' is null");
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("'timeout' is negative: " + timeout);
+        }
+
+        return new SearchBudget(true, System.nanoTime() + timeout.toNanos(), maxPaths);
+    }
+
+    /**
+     * Returns a new budget that allows the search to explore at most the given number of paths.
+     *
+     * @param maxPaths the maximum number of paths to explore
+     * @return a new budget with the given limit on the paths and the same deadline of this budget
+     */
+    public SearchBudget withMaxPaths(long maxPaths) {
+        if (maxPaths < 1) {
+            throw new IllegalArgumentException("'maxPaths' is not positive: " + maxPaths);
+        }
+
+        return new SearchBudget(timed, deadline, maxPaths);
+    }
+
+    /**
+     * Requests the searches using this budget to stop as soon as possible.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long getMaxPaths() {
+        return maxPaths;
+    }
+
+    /**
+     * Checks whether a search that explored the given number of {@code paths} must stop, which is the case
+     * if this budget has been cancelled, its deadline has passed, the given number of {@code paths} has reached
+     * its limit or the current thread has been interrupted.
+     *
+     * @param paths the number of paths explored so far
+     * @return {@code true} if the search must stop, {@code false} otherwise
+     */
+    public boolean isOver(long paths) {
+        if (cancelled || paths >= maxPaths || (timed && System.nanoTime() - deadline >= 0L)
+                || Thread.currentThread().isInterrupted()) {
+            if (this != NONE) {
+                exhausted = true;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a search stopped early because this budget was over, in which case its results
+     * are approximate.
+     *
+     * @return {@code true} if a search stopped early, {@code false} otherwise
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+}
@@ -0,0 +1,212 @@
+package org.stefano.distributional.model.components;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An immutable set of (lower case) common words with constant time lookup.
+ * <p>
+ * Words are kept in a compact open addressing table together with their hash codes, so that a lookup costs a hash
+ * computation (cached by {@link String}) and, on average, less than two probes.
+ * Lists are plain text files with one word per line, where blank lines and lines starting with {@code #} are ignored:
+ * they can be loaded from the classpath by language (see {@link #forLanguage(String)}) or from disk
+ * (see {@link #load(Path)}).
+ * <p>
+ * Instances are thread-safe and meant to be shared by all the clusters and threads.
+ * Since a lexicon is a {@link Set}, it can be given wherever a {@link Collection} of stop words is expected.
+ */
+public final class StopWordLexicon extends AbstractSet<String> {
+
+    private static final Map<String, StopWordLexicon> LANGUAGES = new ConcurrentHashMap<>();
+
+    private final String[] words;
+    private final int[] hashes;
+    private final int size;
+    private volatile String digest;
+
+    private StopWordLexicon(Collection<String> words) {
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String word : words) {
+            String text = requireNonNull(word, "'word' is null").trim().toLowerCase();
+            if (!text.isEmpty()) {
+                distinct.add(text);
+            }
+        }
+        int capacity = Integer.highestOneBit(Integer.max(4, distinct.size() * 2 - 1)) << 1;
+        this.words = new String[capacity];
+        this.hashes = new int[capacity];
+        this.size = distinct.size();
+        for (String text : distinct) {
+            int hash = hash(text);
+            int i = hash & (capacity - 1);
+            while (this.words[i] != null) {
+                i = (i + 1) & (capacity - 1);
+            }
+            this.words[i] = text;
+            this.hashes[i] = hash;
+        }
+    }
+
+    private static int hash(String text) {
+        int hash = text.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns a lexicon with the given {@code words}, or the given instance if it is already a lexicon.
+     * Words are trimmed and converted to lower case.
+     *
+     * @param words the {@link Collection<String>} of common words
+     * @return a lexicon with the given {@code words}
+     */
+    public static StopWordLexicon of(Collection<String> words) {
+        requireNonNull(words, "'words' is null");
+
+        return words instanceof StopWordLexicon ? (StopWordLexicon) words : new StopWordLexicon(words);
+    }
+
+    /**
+     * Returns the lexicon of the given {@code language}, loaded once from the {@code /stopwords/<language>.txt}
+     * resource and then shared.
+     *
+     * @param language the ISO 639-1 code of the language, such as {@code en}
+     * @return the lexicon of the given {@code language}
+     * @throws IllegalArgumentException if no list is available for the given {@code language}
+     */
+    public static StopWordLexicon forLanguage(String language) {
+        requireNonNull(language, "'language' is null");
+
+        return LANGUAGES.computeIfAbsent(language.trim().toLowerCase(), code -> {
+            String resource = "/stopwords/" + code + ".txt";
+            InputStream stream = StopWordLexicon.class.getResourceAsStream(resource);
+            if (stream == null) {
+                throw new IllegalArgumentException("No stop-word list for language: " + code);
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+                return read(reader);
+            } catch (IOException e) {
+                throw new IllegalStateException("Stop-word list can't be loaded: " + resource, e);
+            }
+        });
+    }
+
+    /**
+     * Returns a new lexicon with the words listed in the given {@code file}.
+     *
+     * @param file the {@link Path} of the list of words (UTF-8)
+     * @return a new lexicon with the words in the given {@code file}
+     * @throws IOException if the file can't be read
+     */
+    public static StopWordLexicon load(Path file) throws IOException {
+        requireNonNull(file, "'file' is null");
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    private static StopWordLexicon read(BufferedReader reader) throws IOException {
+        List<String> words = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                words.add(line);
+            }
+        }
+        return new StopWordLexicon(words);
+    }
+
+    /**
+     * Returns a hexadecimal SHA-256 digest of the words of this lexicon, which is the same for all the lexicons
+     * with the same words (whatever their order), to be used in cache keys.
+     * The digest is computed once, when first requested.
+     *
+     * @return the digest of the words of this lexicon
+     */
+    public String digest() {
+        String result = digest;
+        if (result == null) {
+            List<String> sorted = new ArrayList<>(this);
+            Collections.sort(sorted);
+            MessageDigest sha256;
+            try {
+                sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+            for (String word : sorted) {
+                sha256.update(word.getBytes(StandardCharsets.UTF_8));
+                sha256.update((byte) '\n');
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : sha256.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            result = hex.toString();
+            digest = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        if (!(object instanceof String)) {
+            return false;
+        }
+        String text = (String) object;
+        int hash = hash(text);
+        int mask = words.length - 1;
+        for (int i = hash & mask; words[i] != null; i = (i + 1) & mask) {
+            if (hashes[i] == hash && words[i].equals(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int next = advance(0);
+
+            private int advance(int i) {
+                while (i < words.length && words[i] == null) {
+                    i += 1;
+                }
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < words.length;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String result = words[next];
+                next = advance(next + 1);
+                return result;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
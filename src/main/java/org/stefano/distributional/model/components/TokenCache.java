@@ -0,0 +1,217 @@
+package org.stefano.distributional.model.components;
+
+import org.stefano.distributional.metrics.CacheMXBean;
+import org.stefano.distributional.metrics.Metrics;
+import org.stefano.distributional.model.components.GraphEncoder.Token;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A bounded cache of the {@link Token}s of the sentences already parsed, so that a sentence repeated across
+ * (overlapping) clusters is tokenised and POS tagged only once.
+ * <p>
+ * Sentences are keyed by their trimmed text and spread over independently locked segments, each of which evicts
+ * its least recently used sentences first: lookups from different threads rarely contend, and tokenisation and
+ * tagging happen outside any lock (hence two threads missing the same sentence at the same time may both parse it).
+ * Since {@link Token}s are immutable, the cached ones are shared by all the callers, while arrays are copied.
+ * <p>
+ * The {@link #global()} cache is used by the encoders (see {@link GraphEncoder#parse(java.util.List)}), holds
+ * at most {@value #DEFAULT_SIZE} sentences by default (see {@link #setMaximumSize(int)}) and is exposed via JMX
+ * as {@code org.stefano.distributional:type=Cache,name="tokens"}. Instances are thread-safe.
+ */
+public final class TokenCache implements CacheMXBean {
+
+    /**
+     * The default maximum number of sentences of the {@link #global()} cache.
+     */
+    public static final int DEFAULT_SIZE = 10_000;
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile int maximumSize;
+
+    /**
+     * Creates a new, empty cache of at most {@code maximumSize} sentences, which is not exposed via JMX.
+     *
+     * @param maximumSize the maximum number of sentences, or {@code 0} to disable the cache
+     */
+    public TokenCache(int maximumSize) {
+        setMaximumSize(maximumSize);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(i);
+        }
+    }
+
+    /**
+     * Returns the cache shared by the whole JVM, which is exposed via JMX when first used.
+     *
+     * @return the global cache
+     */
+    public static TokenCache global() {
+        return Global.INSTANCE;
+    }
+
+    /**
+     * Returns the {@link Token}s of the given {@code sentence}, which is parsed by {@link Token#parse(String)}
+     * only if not cached yet.
+     *
+     * @param sentence the sentence to split
+     * @return the {@code tokens} of the given {@code sentence}
+     */
+    public Token[] parse(String sentence) {
+        String key = requireNonNull(sentence, "'sentence' is null").trim();
+        if (maximumSize == 0) {
+            return Token.parse(key);
+        }
+
+        Segment segment = segments[(key.hashCode() & 0x7fffffff) % SEGMENTS];
+        Token[] tokens;
+        synchronized (segment) {
+            tokens = segment.get(key);
+        }
+        if (tokens != null) {
+            hits.increment();
+            return tokens.clone();
+        }
+        misses.increment();
+        tokens = Token.parse(key);
+        synchronized (segment) {
+            if (segment.capacity() > 0) {
+                segment.put(key, tokens);
+            }
+        }
+        return tokens.clone();
+    }
+
+    /**
+     * Returns the maximum number of sentences of this cache.
+     *
+     * @return the maximum number of sentences, or {@code 0} if the cache is disabled
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Changes the maximum number of sentences of this cache; if smaller than the current one, the least recently
+     * used sentences in excess are evicted at once.
+     *
+     * @param maximumSize the maximum number of sentences, or {@code 0} to disable (and clear) the cache
+     */
+    public void setMaximumSize(int maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("'maximumSize' is negative: " + maximumSize);
+        }
+
+        this.maximumSize = maximumSize;
+        if (segments[0] != null) {
+            for (Segment segment : segments) {
+                synchronized (segment) {
+                    segment.trim();
+                }
+            }
+        }
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return lookups > 0 ? (double) hits / lookups : 0.0;
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public long getSize() {
+        long result = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                result += segment.size();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * A segment of the cache, ordered from the least to the most recently used sentence.
+     * The maximum size is split evenly among the segments, the first ones taking one sentence more each
+     * when it isn't a multiple of their number, so that all together they never hold more.
+     */
+    private final class Segment extends LinkedHashMap<String, Token[]> {
+        private final int index;
+
+        private Segment(int index) {
+            super(16, 0.75f, true);
+            this.index = index;
+        }
+
+        private int capacity() {
+            int size = maximumSize;
+            return size / SEGMENTS + (index < size % SEGMENTS ? 1 : 0);
+        }
+
+        /**
+         * Evicts the least recently used sentences until the segment fits its share of the maximum size.
+         */
+        private void trim() {
+            Iterator<String> keys = keySet().iterator();
+            while (size() > capacity() && keys.hasNext()) {
+                keys.next();
+                keys.remove();
+                evictions.increment();
+            }
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Token[]> eldest) {
+            if (size() > capacity()) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The lazily initialised {@link #global()} cache.
+     */
+    private static final class Global {
+        private static final TokenCache INSTANCE = new TokenCache(DEFAULT_SIZE);
+
+        static {
+            Metrics.expose("tokens", INSTANCE);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.stefano.distributional.model.components;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A sequence of Neo4j transactions of bounded size, to write large {@code word graphs} without keeping all their
+ * changes in the state of a single transaction, which lives on the heap until it is committed.
+ * <p>
+ * Writers report the number of changes they make by {@link #add(int)}, and the current transaction is committed,
+ * and a new one is started, as soon as it holds at least {@code size} changes. Like a {@link Transaction}, a batch
+ * must be marked by {@link #success()} before being closed, otherwise its last transaction is rolled back; notice
+ * that the transactions committed before are not, hence a failed batch may leave a partial graph behind.
+ * Instances are bound to the thread that creates them, like the transactions they wrap.
+ */
+public final class TransactionBatch implements AutoCloseable {
+
+    private final GraphDatabaseService graph;
+    private final int size;
+    private Transaction tx;
+    private int changes = 0;
+    private int commits = 0;
+    private boolean success = false;
+
+    /**
+     * Begins a new batch of transactions of the given {@code size} in the given {@code graph}.
+     *
+     * @param graph the target {@link GraphDatabaseService}
+     * @param size  the number of changes after which a transaction is committed
+     */
+    public TransactionBatch(GraphDatabaseService graph, int size) {
+        this.graph = requireNonNull(graph, "'graph' is null");
+        if (size < 1) {
+            throw new IllegalArgumentException("'size' is not positive: " + size);
+        }
+        this.size = size;
+        this.tx = graph.beginTx();
+    }
+
+    /**
+     * Records the given number of {@code changes} in the current transaction, and commits it if full.
+     *
+     * @param changes the number of changes made since the last call
+     */
+    public void add(int changes) {
+        this.changes += changes;
+        if (this.changes >= size) {
+            tx.success();
+            tx.close();
+            commits += 1;
+            this.changes = 0;
+            tx = graph.beginTx();
+        }
+    }
+
+    /**
+     * Marks the batch as successful: its last transaction is committed on {@link #close()}.
+     */
+    public void success() {
+        success = true;
+    }
+
+    /**
+     * Returns the number of transactions committed so far, the last one excluded.
+     *
+     * @return the number of transactions committed so far
+     */
+    public int getCommits() {
+        return commits;
+    }
+
+    @Override
+    public void close() {
+        if (success) {
+            tx.success();
+        } else {
+            tx.failure();
+        }
+        tx.close();
+    }
+}
@@ -0,0 +1,211 @@
+package org.stefano.distributional.model.components;
+
+import java.util.*;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The {@code context} of a {@code WORD} node: the texts of the nodes within {@link #DISTANCE} {@code FOLLOWS}
+ * relationships before (left) and after (right) it, each with the frequency sum used to disambiguate words.
+ * <p>
+ * The frequency sum of a text is the one of the recursive traversal the encoder used to perform for each candidate
+ * node: every walk of at most {@link #DISTANCE} relationships through {@code WORD} nodes that ends on a node with
+ * the text adds the {@code frequency} of that node, every shorter walk from which the text can still be reached
+ * adds {@code 1.0}, and so does the first occurrence of the text. The former only depends on the current
+ * {@code frequency} of the nodes, hence a context keeps the number of walks to each node together with the
+ * number of the latter and multiplies them when looked up: {@code frequencies} may change freely, while each side
+ * is traversed once and then kept until a {@code FOLLOWS} relationship around the node is added or removed
+ * (see {@link #invalidate(Neighbours, long, long, Map)}).
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class WordContext {
+
+    /**
+     * The maximum distance between a word and the words in its context.
+     */
+    public static final int DISTANCE = 3;
+
+    private final Neighbours graph;
+    private final long node;
+    private Map<String, Term> left;
+    private Map<String, Term> right;
+
+    /**
+     * Creates the context of the given {@code node} of the given {@code graph}, which is traversed lazily.
+     *
+     * @param graph the {@link Neighbours} of the nodes of the {@code word graph}
+     * @param node  the {@code WORD} node
+     */
+    public WordContext(Neighbours graph, long node) {
+        this.graph = requireNonNull(graph, "'graph' is null");
+        this.node = node;
+    }
+
+    /**
+     * Invalidates the contexts that a {@code FOLLOWS} relationship between the given {@code tail} and {@code head}
+     * affects when added or removed: the right side of the {@code tail} and of the nodes up to
+     * {@code DISTANCE - 1} relationships before it, and the left side of the {@code head} and of the nodes up to
+     * {@code DISTANCE - 1} relationships after it.
+     *
+     * @param graph    the {@link Neighbours} of the nodes of the {@code word graph}
+     * @param tail     the start node of the relationship
+     * @param head     the end node of the relationship
+     * @param contexts the contexts computed so far, by node
+     */
+    public static void invalidate(Neighbours graph, long tail, long head, Map<Long, WordContext> contexts) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(contexts, "'contexts' is null");
+
+        if (!contexts.isEmpty()) {
+            invalidate(graph, tail, false, DISTANCE - 1, contexts);
+            invalidate(graph, head, true, DISTANCE - 1, contexts);
+        }
+    }
+
+    private static void invalidate(Neighbours graph, long node, boolean left, int distance,
+                                   Map<Long, WordContext> contexts) {
+        if (!isWord(graph, node)) {
+            return;
+        }
+        WordContext context = contexts.get(node);
+        if (context != null) {
+            if (left) {
+                context.left = null;
+            } else {
+                context.right = null;
+            }
+        }
+        if (distance > 0) {
+            for (long other : graph.getNeighbours(node, !left)) {
+                invalidate(graph, other, left, distance - 1, contexts);
+            }
+        }
+    }
+
+    private static boolean isWord(Neighbours graph, long node) {
+        String text = graph.getText(node);
+        return text != null && !text.isEmpty();
+    }
+
+    /**
+     * Returns the frequency sum of the given {@code text} within {@link #DISTANCE} relationships before the word.
+     *
+     * @param text the lower case text to look up
+     * @return the frequency sum of the text, {@code 0.0} if it doesn't occur
+     */
+    public double getLeft(String text) {
+        if (left == null) {
+            left = new HashMap<>();
+            walk(node, true, DISTANCE, left);
+        }
+        return get(left, text);
+    }
+
+    /**
+     * Returns the frequency sum of the given {@code text} within {@link #DISTANCE} relationships after the word.
+     *
+     * @param text the lower case text to look up
+     * @return the frequency sum of the text, {@code 0.0} if it doesn't occur
+     */
+    public double getRight(String text) {
+        if (right == null) {
+            right = new HashMap<>();
+            walk(node, false, DISTANCE, right);
+        }
+        return get(right, text);
+    }
+
+    private double get(Map<String, Term> terms, String text) {
+        Term term = terms.get(requireNonNull(text, "'text' is null"));
+        if (term == null) {
+            return 0.0;
+        }
+        double result = 1.0 + term.walks;
+        for (int i = 0; i < term.size; i++) {
+            result += term.counts[i] * graph.getFreq(term.nodes[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Enumerates the walks of at most {@code distance} relationships from the given {@code node} on the given side,
+     * and returns the texts they reach.
+     */
+    private Set<String> walk(long node, boolean left, int distance, Map<String, Term> terms) {
+        Set<String> result = new HashSet<>();
+        for (long other : graph.getNeighbours(node, left)) {
+            if (!isWord(graph, other)) {
+                continue;
+            }
+            String text = graph.getText(other);
+            terms.computeIfAbsent(text, k -> new Term()).add(other);
+            result.add(text);
+            if (distance > 1) {
+                for (String reached : walk(other, left, distance - 1, terms)) {
+                    terms.get(reached).walks += 1;
+                    result.add(reached);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The nodes of a {@code word graph} around a {@code WORD} node, with their texts and {@code frequencies}.
+     */
+    public interface Neighbours {
+
+        /**
+         * Returns the nodes linked to the given {@code node} by its incoming (left) or outgoing (right)
+         * {@code FOLLOWS} relationships, once per relationship.
+         *
+         * @param node the node
+         * @param left whether to follow the incoming relationships rather than the outgoing ones
+         * @return the nodes linked to the given {@code node}
+         */
+        long[] getNeighbours(long node, boolean left);
+
+        /**
+         * Returns the text of the given {@code node}, {@code null} or empty for {@code START} and {@code END}.
+         *
+         * @param node the node
+         * @return the text of the given {@code node}
+         */
+        String getText(long node);
+
+        /**
+         * Returns the current {@code frequency} of the given {@code node}.
+         *
+         * @param node the node
+         * @return the {@code frequency} of the given {@code node}
+         */
+        double getFreq(long node);
+    }
+
+    /**
+     * The walks that reach a text: the number of walks that end on each node with the text,
+     * and the number of shorter walks from which the text can be reached.
+     */
+    private static final class Term {
+        private long[] nodes = new long[2];
+        private int[] counts = new int[2];
+        private int size = 0;
+        private int walks = 0;
+
+        private void add(long node) {
+            for (int i = 0; i < size; i++) {
+                if (nodes[i] == node) {
+                    counts[i] += 1;
+                    return;
+                }
+            }
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            nodes[size] = node;
+            counts[size++] = 1;
+        }
+    }
+}
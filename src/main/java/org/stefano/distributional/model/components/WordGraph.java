@@ -0,0 +1,416 @@
+package org.stefano.distributional.model.components;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A compact, in-memory {@code word graph} that mirrors the model defined in {@link GraphModel}
+ * without any disk I/O or transaction.
+ * <p>
+ * Nodes are int-indexed: {@link #START} and {@link #END} always exist, {@code WORD} nodes follow in creation order.
+ * {@code FOLLOWS} relationships are int-indexed as well and kept in compact adjacency arrays,
+ * while {@code SENTENCE} nodes are stored as the arrays of the {@code WORD} nodes they {@code CONTAINS}.
+ * Frequencies and weights are kept in primitive {@code double[]} columns.
+ * Words are indexed by POS tag and text and relationships by their end nodes,
+ * so that both lookups take constant time on average.
+ * The {@link WordContext}s of the words are computed when first requested and kept until a {@code FOLLOWS}
+ * relationship around them is added or removed.
+ * <p>
+ * By default, the graph is kept on the heap. A graph created by {@link #offHeap()} keeps its columns, adjacency
+ * arrays and indexes in direct buffers instead, with texts, words and POS tags replaced by
+ * the ids of a dictionary: the heap then holds just the dictionary, whose size depends on the vocabulary rather
+ * than on the size of the cluster (and the {@link WordContext}s computed so far), hence very large clusters
+ * neither fill the heap nor lengthen GC pauses.
+ * Both graphs behave the same, though the off-heap one is slightly slower to build, and should be closed
+ * as soon as they are no longer needed (see {@link #close()}).
+ * <p>
+ * Sentences can be removed as well: {@code WORD} nodes and {@code FOLLOWS} relationships that are no longer used
+ * can then be removed and their indexes are recycled by the next additions, so that a graph fed by a sliding window
+ * of sentences doesn't grow indefinitely.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class WordGraph implements AutoCloseable {
+
+    /**
+     * The index of the {@code START} node.
+     */
+    public static final int START = 0;
+
+    /**
+     * The index of the {@code END} node.
+     */
+    public static final int END = 1;
+
+    private final GraphStorage storage;
+    private final Map<Long, WordContext> contexts = new HashMap<>();
+    private final WordContext.Neighbours neighbours = new WordContext.Neighbours() {
+        @Override
+        public long[] getNeighbours(long node, boolean left) {
+            int index = (int) node;
+            int size = left ? storage.getIncomingCount(index) : storage.getOutgoingCount(index);
+            long[] result = new long[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = left ?
+                        storage.getTail(storage.getIncoming(index, i)) :
+                        storage.getHead(storage.getOutgoing(index, i));
+            }
+            return result;
+        }
+
+        @Override
+        public String getText(long node) {
+            return storage.getText((int) node);
+        }
+
+        @Override
+        public double getFreq(long node) {
+            return storage.getFreq((int) node);
+        }
+    };
+
+    /**
+     * Creates an empty {@code word graph} with its {@code START} and {@code END} nodes, kept on the heap.
+     * Both terminals have {@code frequency} {@code 0.0} until they are first requested.
+     */
+    public WordGraph() {
+        this(new HeapGraphStorage());
+    }
+
+    private WordGraph(GraphStorage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Creates an empty {@code word graph} with its {@code START} and {@code END} nodes, kept off-heap.
+     * Both terminals have {@code frequency} {@code 0.0} until they are first requested.
+     * <p>
+     * Direct buffers are released when they are replaced by larger ones and when the graph is closed
+     * (or when it is garbage collected, if never closed), and they are limited by
+     * {@code -XX:MaxDirectMemorySize} (by default, as much as the maximum heap size).
+     *
+     * @return a new, empty off-heap {@code word graph}
+     */
+    public static WordGraph offHeap() {
+        return new WordGraph(new OffHeapGraphStorage());
+    }
+
+    /**
+     * Checks whether this graph is kept off-heap (see {@link #offHeap()}).
+     *
+     * @return {@code true} if this graph is kept off-heap, {@code false} otherwise
+     */
+    public boolean isOffHeap() {
+        return storage instanceof OffHeapGraphStorage;
+    }
+
+    /**
+     * Returns the {@code START} node.
+     * Its {@code frequency} is increased by 1 and eventually returned.
+     *
+     * @return the updated {@code START} node
+     */
+    public int start() {
+        storage.setFreq(START, storage.getFreq(START) + 1.0);
+        return START;
+    }
+
+    /**
+     * Returns the {@code END} node.
+     * Its {@code frequency} is increased by 1 and eventually returned.
+     *
+     * @return the updated {@code END} node
+     */
+    public int end() {
+        storage.setFreq(END, storage.getFreq(END) + 1.0);
+        return END;
+    }
+
+    /**
+     * Creates a {@code WORD} node with {@code frequency} {@code 1.0} and returns it.
+     *
+     * @param text the lower case text of the word
+     * @param word the original text of the word
+     * @param tag  the POS tag of the word
+     * @param stop a flag which tells if the node refers to a common word or not
+     * @param verb a flag which tells if the node refers to a verb or not
+     * @return the newly created node
+     */
+    public int addWord(String text, String word, String tag, boolean stop, boolean verb) {
+        requireNonNull(text, "'text' is null");
+        requireNonNull(word, "'word' is null");
+        requireNonNull(tag, "'tag' is null");
+
+        return storage.addWord(text, word, tag, stop, verb);
+    }
+
+    /**
+     * Removes the given {@code WORD} node, which must not have any relationship left.
+     * Its index may be reused by the next node to be created.
+     *
+     * @param node the {@code WORD} node to remove
+     */
+    public void removeWord(int node) {
+        if (node <= END || node >= storage.getNodeCount()) {
+            throw new IllegalArgumentException("'node' is not a word: " + node);
+        }
+        storage.removeWord(node);
+        contexts.remove((long) node);
+    }
+
+    /**
+     * Checks whether the given index refers to a node of the graph which has not been removed.
+     *
+     * @param node the index of the node
+     * @return {@code true} if the node exists, {@code false} otherwise
+     */
+    public boolean isNode(int node) {
+        return storage.isNode(node);
+    }
+
+    /**
+     * Returns all the {@code WORD} nodes with the given POS {@code tag} and (lower case) {@code text},
+     * in index order.
+     *
+     * @param tag  the POS tag of the words to find
+     * @param text the lower case text of the words to find
+     * @return the (possibly empty) array of matching nodes
+     */
+    public int[] findWords(String tag, String text) {
+        requireNonNull(tag, "'tag' is null");
+        requireNonNull(text, "'text' is null");
+
+        return storage.findWords(tag, text);
+    }
+
+    /**
+     * Returns the index of the {@code FOLLOWS} relationship between the given {@code tail} and {@code head},
+     * or {@code -1} if no such relationship exists.
+     *
+     * @param tail the start node of the relationship
+     * @param head the end node of the relationship
+     * @return the index of the relationship, or {@code -1} if it doesn't exist
+     */
+    public int findFollows(int tail, int head) {
+        return storage.findFollows(tail, head);
+    }
+
+    /**
+     * Creates a {@code FOLLOWS} relationship between the given {@code tail} and {@code head}
+     * with {@code frequency} {@code 1.0} and no {@code weight}, and returns it.
+     *
+     * @param tail the start node of the relationship
+     * @param head the end node of the relationship
+     * @return the newly created relationship
+     */
+    public int addFollows(int tail, int head) {
+        int result = storage.addFollows(tail, head);
+        WordContext.invalidate(neighbours, tail, head, contexts);
+        return result;
+    }
+
+    /**
+     * Removes the given {@code FOLLOWS} relationship.
+     * Its index may be reused by the next relationship to be created.
+     *
+     * @param follows the relationship to remove
+     */
+    public void removeFollows(int follows) {
+        if (storage.isFollows(follows)) {
+            WordContext.invalidate(neighbours, storage.getTail(follows), storage.getHead(follows), contexts);
+            storage.removeFollows(follows);
+        }
+    }
+
+    /**
+     * Checks whether the given index refers to a {@code FOLLOWS} relationship which has not been removed.
+     *
+     * @param follows the index of the relationship
+     * @return {@code true} if the relationship exists, {@code false} otherwise
+     */
+    public boolean isFollows(int follows) {
+        return storage.isFollows(follows);
+    }
+
+    /**
+     * Creates a {@code SENTENCE} node of the given {@code length} and returns its {@code id}.
+     * The words of the sentence must then be set by means of {@link #contain(int, int, int)}.
+     *
+     * @param length the number of words in the sentence
+     * @return the {@code id} of the newly created sentence
+     */
+    public int addSentence(int length) {
+        return storage.addSentence(length);
+    }
+
+    /**
+     * Creates a {@code CONTAINS} relationship between the given {@code sentence} and {@code node} at {@code pos}.
+     *
+     * @param sentence the {@code id} of the sentence
+     * @param pos      the position of the word in the sentence
+     * @param node     the {@code WORD} node
+     */
+    public void contain(int sentence, int pos, int node) {
+        storage.contain(sentence, pos, node);
+    }
+
+    /**
+     * Removes the given {@code SENTENCE} node together with its {@code CONTAINS} relationships.
+     * Its {@code id} is never reused, and it is left with length {@code 0}.
+     * Frequencies and {@code FOLLOWS} relationships are not affected.
+     *
+     * @param sentence the {@code id} of the sentence
+     */
+    public void removeSentence(int sentence) {
+        storage.removeSentence(sentence);
+    }
+
+    /**
+     * Returns the number of node indexes in use, including the ones of removed nodes (see {@link #isNode(int)}).
+     *
+     * @return the upper bound of the node indexes
+     */
+    public int getNodeCount() {
+        return storage.getNodeCount();
+    }
+
+    /**
+     * Returns the number of relationship indexes in use, including the ones of removed relationships
+     * (see {@link #isFollows(int)}).
+     *
+     * @return the upper bound of the relationship indexes
+     */
+    public int getFollowsCount() {
+        return storage.getFollowsCount();
+    }
+
+    public int getSentenceCount() {
+        return storage.getSentenceCount();
+    }
+
+    public String getText(int node) {
+        return storage.getText(node);
+    }
+
+    public String getWord(int node) {
+        return storage.getWord(node);
+    }
+
+    public String getTag(int node) {
+        return storage.getTag(node);
+    }
+
+    public boolean isStop(int node) {
+        return storage.isStop(node);
+    }
+
+    public boolean isVerb(int node) {
+        return storage.isVerb(node);
+    }
+
+    public double getFreq(int node) {
+        return storage.getFreq(node);
+    }
+
+    public void setFreq(int node, double freq) {
+        storage.setFreq(node, freq);
+    }
+
+    /**
+     * Returns the {@link WordContext} of the given {@code WORD} node.
+     *
+     * @param node the {@code WORD} node
+     * @return the context of the given {@code node}
+     */
+    public WordContext getContext(int node) {
+        return contexts.computeIfAbsent((long) node, k -> new WordContext(neighbours, k));
+    }
+
+    public int getOutgoingCount(int node) {
+        return storage.getOutgoingCount(node);
+    }
+
+    public int getOutgoing(int node, int i) {
+        return storage.getOutgoing(node, i);
+    }
+
+    public int getIncomingCount(int node) {
+        return storage.getIncomingCount(node);
+    }
+
+    public int getIncoming(int node, int i) {
+        return storage.getIncoming(node, i);
+    }
+
+    /**
+     * Returns the number of {@code CONTAINS} relationships that reach the given {@code node}.
+     *
+     * @param node the {@code WORD} node
+     * @return the number of sentences positions where the given {@code node} occurs
+     */
+    public int getContainsCount(int node) {
+        return storage.getContainsCount(node);
+    }
+
+    public int getContainsSentence(int node, int i) {
+        return storage.getContainsSentence(node, i);
+    }
+
+    public int getContainsPos(int node, int i) {
+        return storage.getContainsPos(node, i);
+    }
+
+    public int getTail(int follows) {
+        return storage.getTail(follows);
+    }
+
+    public int getHead(int follows) {
+        return storage.getHead(follows);
+    }
+
+    public double getFollowsFreq(int follows) {
+        return storage.getFollowsFreq(follows);
+    }
+
+    public void setFollowsFreq(int follows, double freq) {
+        storage.setFollowsFreq(follows, freq);
+    }
+
+    /**
+     * Returns the {@code weight} of the given {@code FOLLOWS} relationship, or the given {@code fallback}
+     * if the relationship has not been weighted yet.
+     *
+     * @param follows  the relationship
+     * @param fallback the value to return if the relationship has no weight
+     * @return the {@code weight} of the relationship, or {@code fallback}
+     */
+    public double getWeight(int follows, double fallback) {
+        double weight = storage.getWeight(follows);
+        return Double.isNaN(weight) ? fallback : weight;
+    }
+
+    public void setWeight(int follows, double weight) {
+        storage.setWeight(follows, weight);
+    }
+
+    public int getSentenceLength(int sentence) {
+        return storage.getSentenceLength(sentence);
+    }
+
+    public int getSentenceWord(int sentence, int pos) {
+        return storage.getSentenceWord(sentence, pos);
+    }
+
+    /**
+     * Releases the direct buffers of this graph at once, if kept off-heap (see {@link #offHeap()}),
+     * and the {@link WordContext}s computed so far. The graph can't be used any more, though closing it
+     * again has no effect.
+     */
+    @Override
+    public void close() {
+        contexts.clear();
+        storage.close();
+    }
+}
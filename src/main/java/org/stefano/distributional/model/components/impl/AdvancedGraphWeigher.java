@@ -3,58 +3,207 @@ package org.stefano.distributional.model.components.impl;
 import org.neo4j.graphdb.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.stefano.distributional.metrics.Metrics;
+import org.stefano.distributional.metrics.Stage;
+import org.stefano.distributional.model.components.GraphModel;
 import org.stefano.distributional.model.components.GraphWeigher;
+import org.stefano.distributional.model.components.TransactionBatch;
+import org.stefano.distributional.model.components.WordGraph;
+
+import java.util.*;
+import java.util.stream.IntStream;
 
 import static java.util.Objects.requireNonNull;
-import static org.stefano.distributional.model.components.GraphModel.CONTAINS;
 import static org.stefano.distributional.model.components.GraphModel.FOLLOWS;
 
 /**
  * This class provides an advanced method to weight the {@code FOLLOWS} relationships in a {@code word graph}.
  * This method generate weights that are inversely proportional to the frequency of paths scaled down by their length.
+ * <p>
+ * The distance between two words is computed by merging their sorted {@code (sentence, pos)} postings,
+ * and large sets of relationships are weighted in parallel. Weights are written into Neo4j databases by
+ * transactions of at most {@value GraphModel#BATCH_SIZE} relationships, hence weighing a partition is not atomic:
+ * other transactions may see it partially weighted meanwhile. If writing fails, the weights written so far
+ * are removed (see {@link GraphModel#unweight(GraphDatabaseService, List)}) before the failure is rethrown.
  */
 public final class AdvancedGraphWeigher implements GraphWeigher {
 
     private static final Logger logger = LoggerFactory.getLogger(AdvancedGraphWeigher.class);
 
+    private static final int PARALLEL_THRESHOLD = 1024;
+
     @Override
-    public void weight(GraphDatabaseService graph) {
+    public void weight(GraphDatabaseService graph, Label partition) {
         requireNonNull(graph, "'graph' is null");
+        requireNonNull(partition, "'partition' is null");
 
-        int total = 0;
+        long elapsed = System.nanoTime();
+        logger.debug("Computing weights between words...");
+        List<Relationship> relationships = new ArrayList<>();
+        double[] weights;
         try (Transaction tx = graph.beginTx()) {
-            long elapsed = System.nanoTime();
-            logger.debug("Computing weights between words...");
-            for (Relationship follows : graph.getAllRelationships()) {
-                if (follows.isType(FOLLOWS)) {
-                    Node tail = follows.getStartNode();
-                    Node head = follows.getEndNode();
-                    double freqTail = (double) tail.getProperty("freq", 1.0);
-                    double freqHead = (double) head.getProperty("freq", 1.0);
-                    double denom = 0.0;
-                    for (Relationship containsTail : tail.getRelationships(CONTAINS, Direction.INCOMING)) {
-                        int posTail = (int) containsTail.getProperty("pos", 0);
-                        Node sentence = containsTail.getStartNode();
-                        for (Relationship containsHead : sentence.getRelationships(CONTAINS, Direction.OUTGOING)) {
-                            if (containsHead.getEndNode().equals(head)) {
-                                int posHead = (int) containsHead.getProperty("pos", 0);
-                                denom += 1.0 / (posHead - posTail);
-                            }
-                        }
-                    }
-                    double weight = (freqTail + freqHead) / denom;
-                    weight = (weight) / (freqTail * freqHead);
-                    follows.setProperty("weight", weight);
+            ResourceIterator<Node> nodes = graph.findNodes(partition);
+            while (nodes.hasNext()) {
+                for (Relationship follows : nodes.next().getRelationships(FOLLOWS, Direction.OUTGOING)) {
+                    relationships.add(follows);
+                }
+            }
+            int total = relationships.size();
+            Map<Node, int[]> postings = new HashMap<>();
+            double[] freqTails = new double[total];
+            double[] freqHeads = new double[total];
+            int[][] tails = new int[total][];
+            int[][] heads = new int[total][];
+            for (int i = 0; i < total; i++) {
+                Relationship follows = relationships.get(i);
+                Node tail = follows.getStartNode();
+                Node head = follows.getEndNode();
+                freqTails[i] = (double) tail.getProperty("freq", 1.0);
+                freqHeads[i] = (double) head.getProperty("freq", 1.0);
+                tails[i] = postings.computeIfAbsent(tail, GraphModel::postings);
+                heads[i] = postings.computeIfAbsent(head, GraphModel::postings);
+            }
+            weights = new double[total];
+            range(total).forEach(i -> weights[i] = weight(freqTails[i], freqHeads[i], proximity(tails[i], heads[i])));
+            tx.success();
+        }
+        int written = 0;
+        try (TransactionBatch batch = new TransactionBatch(graph, GraphModel.BATCH_SIZE)) {
+            for (; written < weights.length; written++) {
+                relationships.get(written).setProperty("weight", weights[written]);
+                batch.add(1);
+            }
+            batch.success();
+        } catch (RuntimeException e) {
+            try {
+                GraphModel.unweight(graph, relationships.subList(0, written));
+            } catch (RuntimeException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        elapsed = System.nanoTime() - elapsed;
+        Metrics.global().record(Stage.WEIGHTING, elapsed);
+        logger.info("{} relationship/s analysed in {} ms.",
+                weights.length, String.format("%,.3f", elapsed / 1_000_000.0));
+    }
+
+    @Override
+    public void weight(WordGraph graph) {
+        requireNonNull(graph, "'graph' is null");
+
+        long elapsed = System.nanoTime();
+        logger.debug("Computing weights between words...");
+        int count = graph.getFollowsCount();
+        double[] weights = new double[count];
+        range(count).forEach(follows -> weights[follows] = graph.isFollows(follows) ?
+                weight(graph, follows) : Double.NaN);
+        int total = 0;
+        for (int follows = 0; follows < count; follows++) {
+            if (graph.isFollows(follows)) {
+                graph.setWeight(follows, weights[follows]);
+                total += 1;
+            }
+        }
+        elapsed = System.nanoTime() - elapsed;
+        Metrics.global().record(Stage.WEIGHTING, elapsed);
+        logger.info("{} relationship/s analysed in {} ms.",
+                total, String.format("%,.3f", elapsed / 1_000_000.0));
+    }
+
+    @Override
+    public void weight(WordGraph graph, int[] nodes) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(nodes, "'nodes' is null");
+
+        long elapsed = System.nanoTime();
+        logger.debug("Computing weights between words...");
+        int[] sorted = nodes.clone();
+        Arrays.sort(sorted);
+        int total = 0;
+        for (int node : sorted) {
+            if (graph.isNode(node)) {
+                for (int i = 0; i < graph.getOutgoingCount(node); i++) {
+                    int follows = graph.getOutgoing(node, i);
+                    graph.setWeight(follows, weight(graph, follows));
                     total += 1;
-                    if (total % 50 == 0) {
-                        logger.debug("{} relationships analysed so far...", total);
+                }
+                for (int i = 0; i < graph.getIncomingCount(node); i++) {
+                    int follows = graph.getIncoming(node, i);
+                    if (Arrays.binarySearch(sorted, graph.getTail(follows)) < 0) {
+                        graph.setWeight(follows, weight(graph, follows));
+                        total += 1;
+                    }
+                }
+            }
+        }
+        elapsed = System.nanoTime() - elapsed;
+        Metrics.global().record(Stage.WEIGHTING, elapsed);
+        logger.info("{} relationship/s analysed in {} ms.",
+                total, String.format("%,.3f", elapsed / 1_000_000.0));
+    }
+
+    private static IntStream range(int size) {
+        IntStream result = IntStream.range(0, size);
+        return size < PARALLEL_THRESHOLD ? result : result.parallel();
+    }
+
+    private static double weight(double freqTail, double freqHead, double denom) {
+        double weight = (freqTail + freqHead) / denom;
+        return (weight) / (freqTail * freqHead);
+    }
+
+    private static double weight(WordGraph graph, int follows) {
+        int tail = graph.getTail(follows);
+        int head = graph.getHead(follows);
+        double denom = 0.0;
+        int sizeTail = graph.getContainsCount(tail);
+        int sizeHead = graph.getContainsCount(head);
+        int i = 0;
+        int j = 0;
+        while (i < sizeTail && j < sizeHead) {
+            int sentence = graph.getContainsSentence(tail, i);
+            int other = graph.getContainsSentence(head, j);
+            if (sentence < other) {
+                i += 1;
+            } else if (sentence > other) {
+                j += 1;
+            } else {
+                int first = j;
+                for (; i < sizeTail && graph.getContainsSentence(tail, i) == sentence; i++) {
+                    int posTail = graph.getContainsPos(tail, i);
+                    for (j = first; j < sizeHead && graph.getContainsSentence(head, j) == sentence; j++) {
+                        denom += 1.0 / (graph.getContainsPos(head, j) - posTail);
+                    }
+                }
+            }
+        }
+        return weight(graph.getFreq(tail), graph.getFreq(head), denom);
+    }
+
+    /**
+     * Returns the sum of the inverse distances between the occurrences of a tail and a head in the same sentences,
+     * merging their sorted {@code (sentence, pos)} postings (see {@link GraphModel#postings(Node)}).
+     */
+    private static double proximity(int[] tail, int[] head) {
+        double result = 0.0;
+        int i = 0;
+        int j = 0;
+        while (i < tail.length && j < head.length) {
+            int sentence = tail[i];
+            if (sentence < head[j]) {
+                i += 2;
+            } else if (sentence > head[j]) {
+                j += 2;
+            } else {
+                int first = j;
+                for (; i < tail.length && tail[i] == sentence; i += 2) {
+                    for (j = first; j < head.length && head[j] == sentence; j += 2) {
+                        result += 1.0 / (head[j + 1] - tail[i + 1]);
                     }
                 }
             }
-            elapsed = System.nanoTime() - elapsed;
-            logger.info("{} relationship/s analysed in {} ms.",
-                    total, String.format("%,.3f", elapsed / 1_000_000_000.0));
-            tx.success();
         }
+        return result;
     }
 }
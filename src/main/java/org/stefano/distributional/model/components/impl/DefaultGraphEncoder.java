@@ -1,12 +1,16 @@
 package org.stefano.distributional.model.components.impl;
 
-import opennlp.tools.sentdetect.SentenceDetector;
 import org.neo4j.graphdb.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.stefano.distributional.metrics.Metrics;
+import org.stefano.distributional.metrics.Stage;
 import org.stefano.distributional.model.components.GraphEncoder;
 import org.stefano.distributional.model.components.GraphModel;
-import org.stefano.distributional.utils.OpenNLP;
+import org.stefano.distributional.model.components.TokenCache;
+import org.stefano.distributional.model.components.WordContext;
+import org.stefano.distributional.model.components.WordGraph;
+import org.stefano.distributional.utils.NLPPipeline;
 
 import java.util.*;
 
@@ -15,111 +19,260 @@ import static org.stefano.distributional.model.components.GraphModel.*;
 
 /**
  * This class provides the default method to encode some {@code sentences} into a {@code word graph}.
+ * <p>
+ * A word is merged into the existing node with the same text and POS tag whose {@link WordContext} shares
+ * the most words with the context of the word in its sentence, and then the highest frequency sum.
+ * Contexts are cached while encoding and only recomputed around the new {@code FOLLOWS} relationships,
+ * so that choosing a node is mostly a lookup rather than a traversal of the {@code word graph}.
+ * Nodes and relationships are found by means of hash-based lookups as well (see {@link GraphLookup}
+ * and {@link WordGraph}), hence encoding a token takes constant time on average.
+ * Sentences are tokenised and tagged through the {@link TokenCache#global()} cache, so that sentences repeated
+ * across clusters are parsed only once.
+ * <p>
+ * By default, a cluster is encoded into a Neo4j database within a single transaction, whose state grows with
+ * the cluster. In bulk mode (see {@link #DefaultGraphEncoder(int)}), a cluster is encoded into an in-memory
+ * {@link WordGraph} first and then written into its empty partition by transactions of bounded size
+ * (see {@link GraphModel#store(GraphDatabaseService, Label, WordGraph, int)}), which is several times faster
+ * for large clusters; partitions that are not empty are still encoded within a single transaction.
+ * Notice that the bulk encoding is not atomic, and that the two modes may break exact ties between nodes
+ * differently.
  */
 public final class DefaultGraphEncoder implements GraphEncoder {
 
     private static final Logger logger = LoggerFactory.getLogger(DefaultGraphEncoder.class);
 
-    private static final SentenceDetector DETECTOR = OpenNLP.getSentenceDetector();
+    private final int batchSize;
+
+    /**
+     * Creates a new encoder that encodes each cluster into a Neo4j database within a single transaction.
+     */
+    public DefaultGraphEncoder() {
+        this.batchSize = 0;
+    }
+
+    /**
+     * Creates a new encoder that encodes each cluster into a Neo4j database in bulk, committing a transaction
+     * every {@code batchSize} changes (see {@link GraphModel#BATCH_SIZE} for a default).
+     *
+     * @param batchSize the number of changes per transaction
+     */
+    public DefaultGraphEncoder(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("'batchSize' is not positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
 
     @Override
-    public int encode(GraphDatabaseService graph, List<String> sentences, Collection<String> stopWords) {
+    public int encode(GraphDatabaseService graph, Label partition, List<String> sentences,
+                      Collection<String> stopWords) {
         requireNonNull(graph, "'graph' is null");
+        requireNonNull(partition, "'partition' is null");
         requireNonNull(sentences, "'sentences' is null");
         requireNonNull(stopWords, "'stopWords' is null");
 
+        if (batchSize > 0 && isEmpty(graph, partition)) {
+            return bulk(graph, partition, sentences, stopWords);
+        }
         int maxLength = 0;
         try (Transaction tx = graph.beginTx()) {
             long elapsed = System.nanoTime();
             logger.debug("Starting encoding...");
-            int id = 0;
+            Map<Node, Postings> postings = new HashMap<>();
+            GraphLookup lookup = new GraphLookup(graph, partition);
+            int id = nextSentence(graph, partition);
             for (String content : sentences) {
-                for (String sentence : DETECTOR.sentDetect(content)) {
-                    Token[] tokens = Token.parse(sentence);
+                for (String sentence : NLPPipeline.detect(content)) {
+                    Token[] tokens = TokenCache.global().parse(sentence);
                     logger.debug("Encoding sentence #{} ({} word/s; punctuation is ignored)...", id, tokens.length);
-                    Node parent = graph.createNode(SENTENCE);
-                    parent.setProperty("id", id++);
+                    Node parent = graph.createNode(SENTENCE, partition);
+                    int parentId = id++;
+                    parent.setProperty("id", parentId);
                     parent.setProperty("length", tokens.length);
                     int pos;
-                    Node previous = GraphModel.start(graph);
+                    Node previous = lookup.start();
                     for (pos = 0; pos < tokens.length; pos++) {
                         Node current = tokens[pos].isStopWord(stopWords) ?
-                                getStopWord(graph, tokens, pos) :
-                                getWord(graph, tokens, pos);
+                                getStopWord(lookup, tokens, pos) :
+                                getWord(lookup, tokens, pos);
                         parent.createRelationshipTo(current, CONTAINS).setProperty("pos", pos);
-                        GraphEncoder.link(previous, current);
+                        postings.computeIfAbsent(current, k -> new Postings()).add(parentId, pos);
+                        lookup.link(previous, current);
                         previous = current;
                     }
-                    GraphEncoder.link(previous, GraphModel.end(graph));
+                    lookup.link(previous, lookup.end());
                     maxLength = Integer.max(pos, maxLength);
                 }
             }
+            for (Map.Entry<Node, Postings> entry : postings.entrySet()) {
+                entry.getValue().save(entry.getKey());
+            }
             elapsed = System.nanoTime() - elapsed;
+            Metrics.global().record(Stage.ENCODING, elapsed);
+            Metrics.global().recordGraph(lookup.getNodeCount(), lookup.getFollowsCount());
             logger.info("Word graph generated in {} ms.",
-                    String.format("%,.3f", elapsed / 1_000_000_000.0));
+                    String.format("%,.3f", elapsed / 1_000_000.0));
             tx.success();
         }
         return maxLength;
     }
 
-    private Node getStopWord(GraphDatabaseService graph, Token[] tokens, int pos) {
-        Label label = tokens[pos].getLabel();
-        String text = tokens[pos].getText();
-        ResourceIterator<Node> nodes = graph.findNodes(label, "text", text);
-        if (nodes.hasNext()) {
-            List<Context> contexts = new ArrayList<>();
-            while (nodes.hasNext()) {
-                Node node = nodes.next();
-                Context context = getContext(graph, tokens, pos, node);
-                if (!context.isEmpty()) {
-                    contexts.add(context);
-                }
-            }
-            if (!contexts.isEmpty()) {
-                Collections.sort(contexts);
-                Node node = contexts.get(0).getNode();
-                node.setProperty("freq", (double) node.getProperty("freq", 1.0) + 1.0);
-                return node;
+    private static boolean isEmpty(GraphDatabaseService graph, Label partition) {
+        try (Transaction tx = graph.beginTx()) {
+            boolean result = !graph.findNodes(partition).hasNext();
+            tx.success();
+            return result;
+        }
+    }
+
+    /**
+     * Returns the {@code id} of the next {@code SENTENCE} node of the given {@code partition}, so that sentences
+     * encoded into a partition that is not empty don't share their {@code id} (nor their {@code postings})
+     * with the sentences already there.
+     */
+    private static int nextSentence(GraphDatabaseService graph, Label partition) {
+        int result = 0;
+        ResourceIterator<Node> nodes = graph.findNodes(partition);
+        while (nodes.hasNext()) {
+            Node node = nodes.next();
+            if (node.hasLabel(SENTENCE)) {
+                result = Integer.max((int) node.getProperty("id", 0) + 1, result);
             }
-            return GraphEncoder.word(graph, tokens[pos], true);
         }
-        return GraphEncoder.word(graph, tokens[pos], true);
+        return result;
+    }
+
+    private int bulk(GraphDatabaseService graph, Label partition, List<String> sentences,
+                     Collection<String> stopWords) {
+        long elapsed = System.nanoTime();
+        logger.debug("Starting encoding in bulk...");
+        WordGraph result = new WordGraph();
+        int maxLength = 0;
+        for (Token[] tokens : GraphEncoder.parse(sentences)) {
+            int parent = encode(result, tokens, stopWords);
+            maxLength = Integer.max(result.getSentenceLength(parent), maxLength);
+        }
+        GraphModel.store(graph, partition, result, batchSize);
+        elapsed = System.nanoTime() - elapsed;
+        Metrics.global().record(Stage.ENCODING, elapsed);
+        Metrics.global().recordGraph(result.getNodeCount(), result.getFollowsCount());
+        logger.info("Word graph generated in bulk in {} ms.",
+                String.format("%,.3f", elapsed / 1_000_000.0));
+        return maxLength;
     }
 
-    private Node getWord(GraphDatabaseService graph, Token[] tokens, int pos) {
-        Label label = tokens[pos].getLabel();
-        String text = tokens[pos].getText();
-        ResourceIterator<Node> nodes = graph.findNodes(label, "text", text);
-        if (nodes.hasNext()) {
-            List<Context> contexts = new ArrayList<>();
-            while (nodes.hasNext()) {
-                Node node = nodes.next();
-                Context context = getContext(graph, tokens, pos, node);
+    @Override
+    public int encode(WordGraph graph, List<String> sentences, Collection<String> stopWords) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(sentences, "'sentences' is null");
+        requireNonNull(stopWords, "'stopWords' is null");
+
+        return encode(graph, GraphEncoder.parse(sentences), stopWords, System.nanoTime());
+    }
+
+    @Override
+    public int encode(WordGraph graph, Token[][] sentences, Collection<String> stopWords) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(sentences, "'sentences' is null");
+        requireNonNull(stopWords, "'stopWords' is null");
+
+        return encode(graph, sentences, stopWords, System.nanoTime());
+    }
+
+    private int encode(WordGraph graph, Token[][] sentences, Collection<String> stopWords, long elapsed) {
+        int maxLength = 0;
+        logger.debug("Starting encoding...");
+        int nodes = graph.getNodeCount();
+        int follows = graph.getFollowsCount();
+        for (Token[] tokens : sentences) {
+            int parent = encode(graph, tokens, stopWords);
+            maxLength = Integer.max(graph.getSentenceLength(parent), maxLength);
+        }
+        elapsed = System.nanoTime() - elapsed;
+        Metrics.global().record(Stage.ENCODING, elapsed);
+        Metrics.global().recordGraph(graph.getNodeCount() - nodes, graph.getFollowsCount() - follows);
+        logger.info("Word graph generated in {} ms.",
+                String.format("%,.3f", elapsed / 1_000_000.0));
+        return maxLength;
+    }
+
+    @Override
+    public int[] add(WordGraph graph, String content, Collection<String> stopWords) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(content, "'content' is null");
+        requireNonNull(stopWords, "'stopWords' is null");
+
+        long elapsed = System.nanoTime();
+        String[] sentences = NLPPipeline.detect(content);
+        int[] result = new int[sentences.length];
+        for (int i = 0; i < sentences.length; i++) {
+            result[i] = encode(graph, TokenCache.global().parse(sentences[i]), stopWords);
+        }
+        Metrics.global().record(Stage.ENCODING, System.nanoTime() - elapsed);
+        return result;
+    }
+
+    private int encode(WordGraph graph, Token[] tokens, Collection<String> stopWords) {
+        int parent = graph.addSentence(tokens.length);
+        logger.debug("Encoding sentence #{} ({} word/s; punctuation is ignored)...", parent, tokens.length);
+        int previous = graph.start();
+        for (int pos = 0; pos < tokens.length; pos++) {
+            int current = tokens[pos].isStopWord(stopWords) ?
+                    getStopWord(graph, tokens, pos) :
+                    getWord(graph, tokens, pos);
+            graph.contain(parent, pos, current);
+            GraphEncoder.link(graph, previous, current);
+            previous = current;
+        }
+        GraphEncoder.link(graph, previous, graph.end());
+        return parent;
+    }
+
+    private Node getStopWord(GraphLookup lookup, Token[] tokens, int pos) {
+        List<Context<Node>> contexts = new ArrayList<>();
+        for (Node node : lookup.findWords(tokens[pos])) {
+            Context<Node> context = getContext(tokens, pos, node, lookup.getContext(node));
+            if (!context.isEmpty()) {
                 contexts.add(context);
             }
+        }
+        if (!contexts.isEmpty()) {
             Collections.sort(contexts);
             Node node = contexts.get(0).getNode();
             node.setProperty("freq", (double) node.getProperty("freq", 1.0) + 1.0);
             return node;
         }
-        return GraphEncoder.word(graph, tokens[pos], false);
+        return lookup.addWord(tokens[pos], true);
+    }
+
+    private Node getWord(GraphLookup lookup, Token[] tokens, int pos) {
+        List<Node> nodes = lookup.findWords(tokens[pos]);
+        if (!nodes.isEmpty()) {
+            List<Context<Node>> contexts = new ArrayList<>();
+            for (Node node : nodes) {
+                contexts.add(getContext(tokens, pos, node, lookup.getContext(node)));
+            }
+            Collections.sort(contexts);
+            Node node = contexts.get(0).getNode();
+            node.setProperty("freq", (double) node.getProperty("freq", 1.0) + 1.0);
+            return node;
+        }
+        return lookup.addWord(tokens[pos], false);
     }
 
-    private Context getContext(GraphDatabaseService graph, Token[] tokens, int pos, Node node) {
+    private <T> Context<T> getContext(Token[] tokens, int pos, T node, WordContext context) {
         int count = 0;
         double freq = 0.0;
         for (Direction direction : new Direction[]{Direction.INCOMING, Direction.OUTGOING}) {
-            Collection<String> texts = getTextsFromToken(tokens, pos, direction, 3);
-            if (!texts.isEmpty()) {
-                Map<String, Double> freqTexts = getTextsFromNode(node, direction, 3);
-                texts.retainAll(freqTexts.keySet());
-                count += texts.size();
-                for (String t : texts) {
-                    freq += freqTexts.getOrDefault(t, 1.0);
+            for (String text : getTextsFromToken(tokens, pos, direction, WordContext.DISTANCE)) {
+                double sum = direction == Direction.INCOMING ? context.getLeft(text) : context.getRight(text);
+                if (sum > 0.0) {
+                    count += 1;
+                    freq += sum;
                 }
             }
         }
-        return new Context(node, count, freq);
+        return new Context<>(node, count, freq);
     }
 
     private Collection<String> getTextsFromToken(Token[] tokens, int pos, Direction direction, int distance) {
@@ -138,28 +291,62 @@ public final class DefaultGraphEncoder implements GraphEncoder {
         return result;
     }
 
-    private Map<String, Double> getTextsFromNode(Node node, Direction direction, int distance) {
-        if (distance < 0) {
-            return Collections.emptyMap();
-        }
-        Map<String, Double> result = new HashMap<>();
-        for (Relationship relationship : node.getRelationships(FOLLOWS, direction)) {
-            Node other = relationship.getOtherNode(node);
-            String text = (String) other.getProperty("text", "");
-            double freq = (double) other.getProperty("freq", 1.0);
-            if (!text.isEmpty()) {
-                result.put(text, result.getOrDefault(text, 1.0) + freq);
-                if (distance > 1) {
-                    Map<String, Double> map = getTextsFromNode(other, direction, distance - 1);
-                    for (String mapText : map.keySet()) {
-                        double mapFreq = map.get(mapText);
-                        result.put(mapText, result.getOrDefault(mapText, 1.0) + mapFreq);
-                    }
-                }
+    private int getStopWord(WordGraph graph, Token[] tokens, int pos) {
+        int[] nodes = graph.findWords(tokens[pos].getTag(), tokens[pos].getText());
+        List<Context<Integer>> contexts = new ArrayList<>();
+        for (int node : nodes) {
+            Context<Integer> context = getContext(tokens, pos, node, graph.getContext(node));
+            if (!context.isEmpty()) {
+                contexts.add(context);
             }
         }
-        return result;
+        if (!contexts.isEmpty()) {
+            Collections.sort(contexts);
+            int node = contexts.get(0).getNode();
+            graph.setFreq(node, graph.getFreq(node) + 1.0);
+            return node;
+        }
+        return GraphEncoder.word(graph, tokens[pos], true);
+    }
+
+    private int getWord(WordGraph graph, Token[] tokens, int pos) {
+        int[] nodes = graph.findWords(tokens[pos].getTag(), tokens[pos].getText());
+        if (nodes.length > 0) {
+            List<Context<Integer>> contexts = new ArrayList<>();
+            for (int node : nodes) {
+                contexts.add(getContext(tokens, pos, node, graph.getContext(node)));
+            }
+            Collections.sort(contexts);
+            int node = contexts.get(0).getNode();
+            graph.setFreq(node, graph.getFreq(node) + 1.0);
+            return node;
+        }
+        return GraphEncoder.word(graph, tokens[pos], false);
     }
 
+    /**
+     * The {@code (sentence, pos)} occurrences of a {@code WORD} node collected during an encoding,
+     * in the order they are found, that is sorted by sentence and position.
+     * As sentences are numbered after the ones already in the partition, they are appended to the
+     * {@code postings} of the node and the result is still sorted.
+     */
+    private static final class Postings {
+        private int[] values = new int[4];
+        private int size = 0;
 
+        private void add(int sentence, int pos) {
+            if (size + 2 > values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = sentence;
+            values[size++] = pos;
+        }
+
+        private void save(Node node) {
+            int[] previous = (int[]) node.getProperty("postings", new int[0]);
+            int[] result = Arrays.copyOf(previous, previous.length + size);
+            System.arraycopy(values, 0, result, previous.length, size);
+            node.setProperty("postings", result);
+        }
+    }
 }
@@ -3,51 +3,226 @@ package org.stefano.distributional.model.components.impl;
 import org.neo4j.graphalgo.GraphAlgoFactory;
 import org.neo4j.graphalgo.PathFinder;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.traversal.BranchState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.stefano.distributional.metrics.Metrics;
+import org.stefano.distributional.metrics.Stage;
 import org.stefano.distributional.model.components.GraphModel;
 import org.stefano.distributional.model.components.PathCompressor;
+import org.stefano.distributional.model.components.SearchBudget;
+import org.stefano.distributional.model.components.WordGraph;
 
-import java.util.Optional;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.*;
+
+import static java.util.Objects.requireNonNull;
 
 /**
  * This class provides the default method to generate a compressive summary from a {@code word graph}.
+ * <p>
+ * All the paths from {@code START} to {@code END} are enumerated, hence the search may take very long on large
+ * clusters unless it is given a {@link SearchBudget}. The budget is checked while paths are expanded, not only
+ * when they are complete, so that it also stops the search among paths that never reach {@code END}.
  */
 public final class DefaultPathCompressor implements PathCompressor {
 
     private static final Logger logger = LoggerFactory.getLogger(DefaultPathCompressor.class);
 
     @Override
-    public Optional<String> compress(GraphDatabaseService graph, int maxDepth) {
+    public Optional<String> compress(GraphDatabaseService graph, Label partition, int maxDepth) {
+        List<Compression> compressions = compressTopK(graph, partition, maxDepth, 1);
+        if (compressions.isEmpty()) {
+            return Optional.empty();
+        }
+        return compressions.get(0).getSummary();
+    }
+
+    @Override
+    public List<Compression> compressTopK(GraphDatabaseService graph, Label partition, int maxDepth, int k,
+                                          SearchBudget budget) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(partition, "'partition' is null");
+        requireNonNull(budget, "'budget' is null");
+        if (k < 1) {
+            throw new IllegalArgumentException("'k' is not positive: " + k);
+        }
+
         try (Transaction tx = graph.beginTx()) {
             long elapsed = System.nanoTime();
             logger.debug("Computing all the paths between START and END nodes and their costs...");
             int total = 0;
-            Set<CostPath> paths = new TreeSet<>();
-            PathFinder<Path> finder = GraphAlgoFactory.allPaths(EXPANDER, maxDepth);
-            for (Path path : finder.findAllPaths(GraphModel.start(graph), GraphModel.end(graph))) {
+            int valid = 0;
+            boolean approximate = false;
+            PriorityQueue<CostPath> paths = new PriorityQueue<>(Integer.min(k, 16), Collections.reverseOrder());
+            Progress progress = new Progress();
+            PathFinder<Path> finder = GraphAlgoFactory.allPaths(new BudgetedExpander(EXPANDER, budget, progress),
+                    maxDepth);
+            for (Path path : finder.findAllPaths(GraphModel.start(graph, partition), GraphModel.end(graph, partition))) {
+                if (progress.stopped || budget.isOver(total)) {
+                    approximate = true;
+                    break;
+                }
                 if (path.length() >= PathCompressor.MIN_DEPTH && PathCompressor.hasVerb(path)) {
                     double cost = 0.0;
                     for (Relationship follows : path.relationships()) {
                         cost += (double) follows.getProperty("weight", 1.0);
                     }
                     paths.add(new CostPath(path, cost));
+                    if (paths.size() > k) {
+                        paths.poll();
+                    }
+                    valid += 1;
                 }
                 total += 1;
+                progress.paths = total;
             }
-            logger.info("{} valid path/s found (out of {} possible) in {} ms.",
-                    paths.size(), total, String.format("%,.3f", elapsed / 1_000_000_000.0));
-            if (paths.isEmpty()) {
-                return Optional.empty();
+            approximate |= progress.stopped;
+            elapsed = System.nanoTime() - elapsed;
+            Metrics.global().record(Stage.SEARCH, elapsed);
+            Metrics.global().recordPaths(total);
+            logger.info("{} valid path/s found (out of {} {}) in {} ms.", valid, total,
+                    approximate ? "explored before the budget was over" : "possible",
+                    String.format("%,.3f", elapsed / 1_000_000.0));
+            List<CostPath> best = new ArrayList<>(paths);
+            Collections.sort(best);
+            logger.debug("Generating the compressive summaries");
+            List<Compression> result = new ArrayList<>(best.size());
+            for (CostPath path : best) {
+                Optional<String> summary = PathCompressor.decode(path.getPath());
+                result.add(new Compression(path.getCost(), path.getPath().length(), () -> summary, approximate));
             }
-            logger.debug("Generating the compressive summary");
-            return PathCompressor.decode(paths.iterator().next().getPath());
+            return result;
         }
     }
 
+    @Override
+    public Optional<String> compress(WordGraph graph, int maxDepth) {
+        List<Compression> compressions = compressTopK(graph, maxDepth, 1);
+        if (compressions.isEmpty()) {
+            return Optional.empty();
+        }
+        logger.debug("Generating the compressive summary");
+        return compressions.get(0).getSummary();
+    }
+
+    @Override
+    public List<Compression> compressTopK(WordGraph graph, int maxDepth, int k, SearchBudget budget) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(budget, "'budget' is null");
+
+        long elapsed = System.nanoTime();
+        logger.debug("Computing all the paths between START and END nodes and their costs...");
+        Search search = new Search(graph, maxDepth, k, budget);
+        search.visit(WordGraph.START, 0, 0.0);
+        elapsed = System.nanoTime() - elapsed;
+        Metrics.global().record(Stage.SEARCH, elapsed);
+        Metrics.global().recordPaths(search.total);
+        logger.info("{} valid path/s found (out of {} {}) in {} ms.", search.valid, search.total,
+                search.stopped ? "explored before the budget was over" : "possible",
+                String.format("%,.3f", elapsed / 1_000_000.0));
+        return search.best.toCompressions(graph, search.stopped);
+    }
+
+    /**
+     * The progress of a Neo4j search, shared by the expanders of both its sides: the number of paths found so far
+     * and whether either side stopped because the budget was over.
+     */
+    private static final class Progress {
+        private long paths = 0;
+        private boolean stopped = false;
+    }
+
+    /**
+     * A {@link PathExpander} that checks the budget of the search on every expansion and, once it is over,
+     * stops expanding any path, so that the traversal ends as soon as possible.
+     * Its reverse shares the same {@link Progress}, hence a search that stops on either side is approximate.
+     */
+    private static final class BudgetedExpander implements PathExpander<Object> {
+        private final PathExpander<Object> expander;
+        private final SearchBudget budget;
+        private final Progress progress;
+
+        private BudgetedExpander(PathExpander<Object> expander, SearchBudget budget, Progress progress) {
+            this.expander = expander;
+            this.budget = budget;
+            this.progress = progress;
+        }
+
+        @Override
+        public Iterable<Relationship> expand(Path path, BranchState<Object> state) {
+            if (progress.stopped || budget.isOver(progress.paths)) {
+                progress.stopped = true;
+                return Collections.emptyList();
+            }
+            return expander.expand(path, state);
+        }
+
+        @Override
+        public PathExpander<Object> reverse() {
+            return new BudgetedExpander(expander.reverse(), budget, progress);
+        }
+    }
+
+    /**
+     * A depth-first enumeration of all the paths from {@code START} to {@code END} in a {@link WordGraph}
+     * that only keeps the minimal cost ones.
+     * As for {@link GraphAlgoFactory#allPaths}, paths may visit a node more than once but not a relationship.
+     * The budget is checked whenever a path is complete and every {@value #CHECK_INTERVAL} visited nodes.
+     */
+    private static final class Search {
+        private static final int CHECK_INTERVAL = 1_024;
+
+        private final WordGraph graph;
+        private final int maxDepth;
+        private final int[] path;
+        private final boolean[] used;
+        private final PathHeap best;
+        private final SearchBudget budget;
+        private int valid = 0;
+        private int total = 0;
+        private int steps = 0;
+        private boolean stopped = false;
+
+        private Search(WordGraph graph, int maxDepth, int k, SearchBudget budget) {
+            this.graph = graph;
+            this.maxDepth = maxDepth;
+            this.path = new int[Integer.max(0, maxDepth) + 1];
+            this.used = new boolean[graph.getFollowsCount()];
+            this.best = new PathHeap(k);
+            this.budget = budget;
+        }
+
+        private void visit(int node, int depth, double cost) {
+            if (stopped || (++steps % CHECK_INTERVAL == 0 && budget.isOver(total))) {
+                stopped = true;
+                return;
+            }
+            path[depth] = node;
+            if (node == WordGraph.END) {
+                if (depth >= PathCompressor.MIN_DEPTH && PathCompressor.hasVerb(graph, path, depth + 1)) {
+                    best.offer(cost, path, depth + 1);
+                    valid += 1;
+                }
+                total += 1;
+                stopped = budget.isOver(total);
+                return;
+            }
+            if (depth == maxDepth) {
+                return;
+            }
+            for (int i = 0; i < graph.getOutgoingCount(node); i++) {
+                int follows = graph.getOutgoing(node, i);
+                if (!used[follows]) {
+                    used[follows] = true;
+                    visit(graph.getHead(follows), depth + 1, cost + graph.getWeight(follows, 1.0));
+                    used[follows] = false;
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,206 @@
+package org.stefano.distributional.model.components.impl;
+
+import org.neo4j.graphdb.*;
+import org.stefano.distributional.model.components.GraphEncoder;
+import org.stefano.distributional.model.components.GraphEncoder.Token;
+import org.stefano.distributional.model.components.GraphModel;
+import org.stefano.distributional.model.components.WordContext;
+
+import java.util.*;
+
+import static java.util.Objects.requireNonNull;
+import static org.stefano.distributional.model.components.GraphModel.*;
+
+/**
+ * The lookup tables of the nodes and relationships of a partition of a Neo4j {@code word graph}
+ * during a single encoding transaction.
+ * <p>
+ * Each table is loaded from the database at most once per key (the words by means of the schema index created by
+ * {@link GraphModel#index(GraphDatabaseService)}, if any) and then kept up to date by the encoder, so that encoding
+ * a token takes constant time on average instead of scanning labels and relationships:
+ * <ul>
+ * <li>the {@code START} and {@code END} nodes;</li>
+ * <li>the {@code WORD} nodes by POS tag and text;</li>
+ * <li>the {@code FOLLOWS} relationships by tail and head;</li>
+ * <li>the {@link WordContext} of each {@code WORD} node.</li>
+ * </ul>
+ * Instances are bound to the transaction of the encoder and are not thread-safe.
+ */
+final class GraphLookup {
+
+    private final GraphDatabaseService graph;
+    private final Label partition;
+    private final Map<String, List<Node>> words = new HashMap<>();
+    private final Map<Node, Map<Node, Relationship>> follows = new HashMap<>();
+    private final Map<Long, WordContext> contexts = new HashMap<>();
+    private final WordContext.Neighbours neighbours = new WordContext.Neighbours() {
+        @Override
+        public long[] getNeighbours(long node, boolean left) {
+            Node current = graph.getNodeById(node);
+            long[] result = new long[4];
+            int size = 0;
+            for (Relationship relationship : current.getRelationships(FOLLOWS,
+                    left ? Direction.INCOMING : Direction.OUTGOING)) {
+                if (size == result.length) {
+                    result = Arrays.copyOf(result, size * 2);
+                }
+                result[size++] = relationship.getOtherNode(current).getId();
+            }
+            return size == result.length ? result : Arrays.copyOf(result, size);
+        }
+
+        @Override
+        public String getText(long node) {
+            return (String) graph.getNodeById(node).getProperty("text", "");
+        }
+
+        @Override
+        public double getFreq(long node) {
+            return (double) graph.getNodeById(node).getProperty("freq", 1.0);
+        }
+    };
+    private Node start;
+    private Node end;
+    private int nodeCount = 0;
+    private int followsCount = 0;
+
+    GraphLookup(GraphDatabaseService graph, Label partition) {
+        this.graph = requireNonNull(graph, "'graph' is null");
+        this.partition = requireNonNull(partition, "'partition' is null");
+    }
+
+    private static Node increment(Node node) {
+        node.setProperty("freq", (double) node.getProperty("freq", 1.0) + 1.0);
+        return node;
+    }
+
+    private static String key(String tag, String text) {
+        return tag + '\u0000' + text;
+    }
+
+    /**
+     * Returns the {@code START} node of the partition, as {@link GraphModel#start(GraphDatabaseService, Label)}.
+     *
+     * @return the updated {@code START} node, or a newly created instance
+     */
+    Node start() {
+        if (start == null) {
+            start = GraphModel.start(graph, partition);
+            nodeCount += 1;
+        } else {
+            increment(start);
+        }
+        return start;
+    }
+
+    /**
+     * Returns the {@code END} node of the partition, as {@link GraphModel#end(GraphDatabaseService, Label)}.
+     *
+     * @return the updated {@code END} node, or a newly created instance
+     */
+    Node end() {
+        if (end == null) {
+            end = GraphModel.end(graph, partition);
+            nodeCount += 1;
+        } else {
+            increment(end);
+        }
+        return end;
+    }
+
+    /**
+     * Returns the {@code WORD} nodes of the partition with the POS tag and text of the given {@code token}.
+     *
+     * @param token the {@link Token} to look up
+     * @return the (possibly empty) list of matching nodes
+     */
+    List<Node> findWords(Token token) {
+        return words.computeIfAbsent(key(token.getTag(), token.getText()), k -> {
+            List<Node> result = new ArrayList<>();
+            Label label = token.getLabel();
+            ResourceIterator<Node> nodes = graph.findNodes(WORD, "key", GraphModel.key(partition, token.getText()));
+            while (nodes.hasNext()) {
+                Node node = nodes.next();
+                if (node.hasLabel(label)) {
+                    result.add(node);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Creates a {@code WORD} node in the partition for the given {@code token}, as
+     * {@link GraphEncoder#word(GraphDatabaseService, Label, Token, boolean)}, and registers it.
+     *
+     * @param token    the {@link Token} to convert into a node
+     * @param stopWord a flag which tells if the node refers to a common word or not
+     * @return the resulting {@link Node}
+     */
+    Node addWord(Token token, boolean stopWord) {
+        Node node = GraphEncoder.word(graph, partition, token, stopWord);
+        findWords(token).add(node);
+        follows.put(node, new HashMap<>());
+        nodeCount += 1;
+        return node;
+    }
+
+    /**
+     * Returns the {@link WordContext} of the given {@code WORD} node, which is computed from its {@code FOLLOWS}
+     * relationships when first requested and kept until {@link #link(Node, Node)} adds a relationship around it.
+     *
+     * @param node the {@code WORD} node
+     * @return the context of the given {@code node}
+     */
+    WordContext getContext(Node node) {
+        return contexts.computeIfAbsent(node.getId(), id -> new WordContext(neighbours, id));
+    }
+
+    /**
+     * Links the given {@code tail} and {@code head} nodes, as {@link GraphEncoder#link(Node, Node)}.
+     *
+     * @param tail the start {@link Node} of the link to handle
+     * @param head the end {@link Node} of the link to handle
+     * @return the relationship between {@code tail} and {@code head} with updated {@code frequency}
+     * if exists, a newly created relationship with {@code frequency} {@code 1.0} otherwise
+     */
+    Relationship link(Node tail, Node head) {
+        Map<Node, Relationship> outgoing = follows.computeIfAbsent(tail, k -> {
+            Map<Node, Relationship> result = new HashMap<>();
+            for (Relationship relationship : tail.getRelationships(FOLLOWS, Direction.OUTGOING)) {
+                result.put(relationship.getEndNode(), relationship);
+            }
+            return result;
+        });
+        Relationship relationship = outgoing.get(head);
+        if (relationship != null) {
+            relationship.setProperty("freq", 1.0 + (double) relationship.getProperty("freq", 1.0));
+            return relationship;
+        }
+        relationship = tail.createRelationshipTo(head, FOLLOWS);
+        relationship.setProperty("freq", 1.0);
+        outgoing.put(head, relationship);
+        WordContext.invalidate(neighbours, tail.getId(), head.getId(), contexts);
+        followsCount += 1;
+        return relationship;
+    }
+
+    /**
+     * Returns the number of nodes looked up or created so far by {@link #start()}, {@link #end()}
+     * and {@link #addWord(Token, boolean)}.
+     *
+     * @return the number of nodes of the partition touched by the encoder
+     */
+    int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the number of {@code FOLLOWS} relationships created so far by {@link #link(Node, Node)}.
+     *
+     * @return the number of {@code FOLLOWS} relationships created
+     */
+    int getFollowsCount() {
+        return followsCount;
+    }
+}
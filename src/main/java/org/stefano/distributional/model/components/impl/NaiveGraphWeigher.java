@@ -1,11 +1,17 @@
 package org.stefano.distributional.model.components.impl;
 
-import org.neo4j.graphdb.GraphDatabaseService;
-import org.neo4j.graphdb.Relationship;
-import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.stefano.distributional.metrics.Metrics;
+import org.stefano.distributional.metrics.Stage;
+import org.stefano.distributional.model.components.GraphModel;
 import org.stefano.distributional.model.components.GraphWeigher;
+import org.stefano.distributional.model.components.TransactionBatch;
+import org.stefano.distributional.model.components.WordGraph;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import static java.util.Objects.requireNonNull;
 import static org.stefano.distributional.model.components.GraphModel.FOLLOWS;
@@ -13,33 +19,97 @@ import static org.stefano.distributional.model.components.GraphModel.FOLLOWS;
 /**
  * This class provides a naive method to weight the {@code FOLLOWS} relationships in a {@code word graph}.
  * This method generate weights that are inversely proportional to their frequency.
+ * Weights are written into Neo4j databases by transactions of at most {@value GraphModel#BATCH_SIZE} relationships,
+ * hence weighing a partition is not atomic: other transactions may see it partially weighted meanwhile.
+ * If writing fails, the weights written so far are removed
+ * (see {@link GraphModel#unweight(GraphDatabaseService, List)}) before the failure is rethrown.
  */
 public final class NaiveGraphWeigher implements GraphWeigher {
 
     private static final Logger logger = LoggerFactory.getLogger(NaiveGraphWeigher.class);
 
     @Override
-    public void weight(GraphDatabaseService graph) {
+    public void weight(GraphDatabaseService graph, Label partition) {
         requireNonNull(graph, "'graph' is null");
+        requireNonNull(partition, "'partition' is null");
 
-        int total = 0;
+        long elapsed = System.nanoTime();
+        logger.debug("Computing weights between words...");
+        List<Relationship> relationships = new ArrayList<>();
         try (Transaction tx = graph.beginTx()) {
-            long elapsed = System.nanoTime();
-            logger.debug("Computing weights between words...");
-            for (Relationship follows : graph.getAllRelationships()) {
-                if (follows.isType(FOLLOWS)) {
-                    double weight = 1.0 / (double) follows.getProperty("freq", 1.0);
-                    follows.setProperty("weight", weight);
-                    total += 1;
-                    if (total % 50 == 0) {
-                        logger.debug("{} relationships analysed so far...", total);
-                    }
+            ResourceIterator<Node> nodes = graph.findNodes(partition);
+            while (nodes.hasNext()) {
+                for (Relationship follows : nodes.next().getRelationships(FOLLOWS, Direction.OUTGOING)) {
+                    relationships.add(follows);
                 }
             }
-            elapsed = System.nanoTime() - elapsed;
-            logger.info("{} relationship/s analysed in {} ms.",
-                    total, String.format("%,.3f", elapsed / 1_000_000_000.0));
             tx.success();
         }
+        int total = 0;
+        try (TransactionBatch batch = new TransactionBatch(graph, GraphModel.BATCH_SIZE)) {
+            for (Relationship follows : relationships) {
+                double weight = 1.0 / (double) follows.getProperty("freq", 1.0);
+                follows.setProperty("weight", weight);
+                batch.add(1);
+                total += 1;
+                if (total % 50 == 0) {
+                    logger.debug("{} relationships analysed so far...", total);
+                }
+            }
+            batch.success();
+        } catch (RuntimeException e) {
+            try {
+                GraphModel.unweight(graph, relationships.subList(0, total));
+            } catch (RuntimeException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        elapsed = System.nanoTime() - elapsed;
+        Metrics.global().record(Stage.WEIGHTING, elapsed);
+        logger.info("{} relationship/s analysed in {} ms.",
+                total, String.format("%,.3f", elapsed / 1_000_000.0));
+    }
+
+    @Override
+    public void weight(WordGraph graph) {
+        requireNonNull(graph, "'graph' is null");
+
+        long elapsed = System.nanoTime();
+        logger.debug("Computing weights between words...");
+        int total = 0;
+        for (int follows = 0; follows < graph.getFollowsCount(); follows++) {
+            if (graph.isFollows(follows)) {
+                graph.setWeight(follows, 1.0 / graph.getFollowsFreq(follows));
+                total += 1;
+            }
+        }
+        elapsed = System.nanoTime() - elapsed;
+        Metrics.global().record(Stage.WEIGHTING, elapsed);
+        logger.info("{} relationship/s analysed in {} ms.",
+                total, String.format("%,.3f", elapsed / 1_000_000.0));
+    }
+
+    @Override
+    public void weight(WordGraph graph, int[] nodes) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(nodes, "'nodes' is null");
+
+        long elapsed = System.nanoTime();
+        logger.debug("Computing weights between words...");
+        int total = 0;
+        for (int node : nodes) {
+            if (graph.isNode(node)) {
+                for (int i = 0; i < graph.getOutgoingCount(node); i++) {
+                    int follows = graph.getOutgoing(node, i);
+                    graph.setWeight(follows, 1.0 / graph.getFollowsFreq(follows));
+                    total += 1;
+                }
+            }
+        }
+        elapsed = System.nanoTime() - elapsed;
+        Metrics.global().record(Stage.WEIGHTING, elapsed);
+        logger.info("{} relationship/s analysed in {} ms.",
+                total, String.format("%,.3f", elapsed / 1_000_000.0));
     }
 }
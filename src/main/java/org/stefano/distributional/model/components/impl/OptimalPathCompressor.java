@@ -0,0 +1,171 @@
+package org.stefano.distributional.model.components.impl;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stefano.distributional.metrics.Metrics;
+import org.stefano.distributional.metrics.Stage;
+import org.stefano.distributional.model.components.GraphModel;
+import org.stefano.distributional.model.components.PathCompressor;
+import org.stefano.distributional.model.components.SearchBudget;
+import org.stefano.distributional.model.components.WordGraph;
+
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * This class provides a method to generate a compressive summary from a {@code word graph} that finds the minimal
+ * cost path without enumerating all the paths from {@code START} to {@code END}.
+ * <p>
+ * The minimum length, the presence of a verb and the maximum depth are part of the search state:
+ * a dynamic programming pass over the states {@code (node, depth, seenVerb)} bounds the cost of the best valid
+ * completion of each partial path (see {@link PathBounds}), and a depth-first branch and bound search only
+ * extends the partial paths whose bound can still beat the best path found so far.
+ * Paths are ranked as in {@link DefaultPathCompressor}: by increasing cost first, then by increasing length.
+ * Given a {@link SearchBudget}, the search stops when the budget is over and returns the best paths found so far,
+ * which tend to be good since the most promising partial paths are extended first.
+ */
+public final class OptimalPathCompressor implements PathCompressor {
+
+    private static final Logger logger = LoggerFactory.getLogger(OptimalPathCompressor.class);
+
+    private static final double TOLERANCE = 1e-9;
+
+    @Override
+    public Optional<String> compress(GraphDatabaseService graph, Label partition, int maxDepth) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(partition, "'partition' is null");
+
+        return compress(GraphModel.load(graph, partition), maxDepth);
+    }
+
+    @Override
+    public List<Compression> compressTopK(GraphDatabaseService graph, Label partition, int maxDepth, int k,
+                                          SearchBudget budget) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(partition, "'partition' is null");
+
+        return compressTopK(GraphModel.load(graph, partition), maxDepth, k, budget);
+    }
+
+    @Override
+    public Optional<String> compress(WordGraph graph, int maxDepth) {
+        List<Compression> compressions = compressTopK(graph, maxDepth, 1);
+        if (compressions.isEmpty()) {
+            return Optional.empty();
+        }
+        logger.debug("Generating the compressive summary");
+        return compressions.get(0).getSummary();
+    }
+
+    @Override
+    public List<Compression> compressTopK(WordGraph graph, int maxDepth, int k, SearchBudget budget) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(budget, "'budget' is null");
+
+        long elapsed = System.nanoTime();
+        logger.debug("Computing the {} minimal cost path/s between START and END nodes...", k);
+        Search search = new Search(graph, maxDepth, k, budget);
+        if (search.bounds.isFeasible(WordGraph.START, 0, false)) {
+            search.visit(WordGraph.START, 0, false, 0.0);
+        }
+        elapsed = System.nanoTime() - elapsed;
+        Metrics.global().record(Stage.SEARCH, elapsed);
+        Metrics.global().recordPaths(search.explored);
+        logger.info("{} partial path/s explored{} in {} ms.", search.explored,
+                search.stopped ? " before the budget was over" : "", String.format("%,.3f", elapsed / 1_000_000.0));
+        return search.best.toCompressions(graph, search.stopped);
+    }
+
+    /**
+     * A depth-first branch and bound search for the {@code k} minimal cost valid paths in a {@link WordGraph}.
+     * Partial paths are pruned as soon as {@code k} paths have been found and none of their completions
+     * can beat the worst of them.
+     * As for {@link DefaultPathCompressor}, paths may visit a node more than once but not a relationship.
+     * The budget is checked every {@value #CHECK_INTERVAL} partial paths and when its limit on the paths is reached.
+     */
+    private static final class Search {
+        private static final int CHECK_INTERVAL = 1_024;
+
+        private final WordGraph graph;
+        private final PathBounds bounds;
+        private final int[] path;
+        private final boolean[] used;
+        private final PathHeap best;
+        private final SearchBudget budget;
+        private long explored = 0;
+        private boolean stopped = false;
+
+        private Search(WordGraph graph, int maxDepth, int k, SearchBudget budget) {
+            this.graph = graph;
+            this.bounds = new PathBounds(graph, maxDepth);
+            this.path = new int[Integer.max(0, maxDepth) + 1];
+            this.used = new boolean[graph.getFollowsCount()];
+            this.best = new PathHeap(k);
+            this.budget = budget;
+        }
+
+        private void visit(int node, int depth, boolean verb, double cost) {
+            if (stopped || ((explored % CHECK_INTERVAL == 0 || explored >= budget.getMaxPaths())
+                    && budget.isOver(explored))) {
+                stopped = true;
+                return;
+            }
+            explored += 1;
+            path[depth] = node;
+            if (node == WordGraph.END) {
+                best.offer(cost, path, depth + 1);
+                return;
+            }
+            int size = graph.getOutgoingCount(node);
+            int[] edges = new int[size];
+            double[] keys = new double[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                int follows = graph.getOutgoing(node, i);
+                int head = graph.getHead(follows);
+                boolean next = verb || graph.isVerb(head);
+                if (!used[follows] && bounds.isFeasible(head, depth + 1, next)) {
+                    double key = cost + graph.getWeight(follows, 1.0) + bounds.getCost(head, depth + 1, next);
+                    int j = count++;
+                    while (j > 0 && keys[j - 1] > key) {
+                        edges[j] = edges[j - 1];
+                        keys[j] = keys[j - 1];
+                        j -= 1;
+                    }
+                    edges[j] = follows;
+                    keys[j] = key;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                int follows = edges[i];
+                int head = graph.getHead(follows);
+                boolean next = verb || graph.isVerb(head);
+                if (!isPruned(keys[i], depth + 1 + bounds.getLength(head, depth + 1, next))) {
+                    used[follows] = true;
+                    visit(head, depth + 1, next, cost + graph.getWeight(follows, 1.0));
+                    used[follows] = false;
+                }
+            }
+        }
+
+        private boolean isPruned(double cost, int length) {
+            if (!best.isFull()) {
+                return false;
+            }
+            double worstCost = best.getWorstCost();
+            if (Double.isInfinite(cost) || Double.isInfinite(worstCost)) {
+                int result = Double.compare(cost, worstCost);
+                return result > 0 || (result == 0 && length + 1 >= best.getWorstSize());
+            }
+            double tolerance = TOLERANCE * Double.max(1.0, Math.abs(worstCost));
+            if (cost > worstCost + tolerance) {
+                return true;
+            }
+            return Math.abs(cost - worstCost) <= tolerance && length + 1 >= best.getWorstSize();
+        }
+    }
+}
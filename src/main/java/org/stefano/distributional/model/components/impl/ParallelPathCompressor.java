@@ -0,0 +1,338 @@
+package org.stefano.distributional.model.components.impl;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stefano.distributional.metrics.Metrics;
+import org.stefano.distributional.metrics.Stage;
+import org.stefano.distributional.model.components.GraphModel;
+import org.stefano.distributional.model.components.PathCompressor;
+import org.stefano.distributional.model.components.SearchBudget;
+import org.stefano.distributional.model.components.WordGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * This class provides a method to generate a compressive summary from a {@code word graph} that runs the branch
+ * and bound search of {@link OptimalPathCompressor} on all the workers of a {@link ForkJoinPool}.
+ * <p>
+ * The search frontier is split into partial paths from {@code START}, which are expanded in the order the serial
+ * search would visit them until there are enough of them to keep all the workers busy, and each partial path
+ * is completed by its own fork-join task. Tasks share the best paths found so far, hence each task prunes
+ * the partial paths that can't beat the ones found by any task. Exact ties are won by the path that the serial
+ * search would find first, hence the result is the same as the one of {@link OptimalPathCompressor}.
+ * <p>
+ * Given a {@link SearchBudget}, all the tasks stop when the budget is over (or the calling thread is interrupted)
+ * and the best paths found so far are returned; each task checks the budget every {@value Search#CHECK_INTERVAL}
+ * partial paths, hence the limit on the paths may be exceeded by as many partial paths per worker.
+ */
+public final class ParallelPathCompressor implements PathCompressor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelPathCompressor.class);
+
+    private static final double TOLERANCE = 1e-9;
+
+    private static final int TASKS_PER_WORKER = 8;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a new compressor that runs its searches on the common {@link ForkJoinPool}.
+     */
+    public ParallelPathCompressor() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new compressor that runs its searches on the given {@code pool}.
+     *
+     * @param pool the {@link ForkJoinPool} of the searches
+     */
+    public ParallelPathCompressor(ForkJoinPool pool) {
+        this.pool = requireNonNull(pool, "'pool' is null");
+    }
+
+    @Override
+    public Optional<String> compress(GraphDatabaseService graph, Label partition, int maxDepth) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(partition, "'partition' is null");
+
+        return compress(GraphModel.load(graph, partition), maxDepth);
+    }
+
+    @Override
+    public List<Compression> compressTopK(GraphDatabaseService graph, Label partition, int maxDepth, int k,
+                                          SearchBudget budget) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(partition, "'partition' is null");
+
+        return compressTopK(GraphModel.load(graph, partition), maxDepth, k, budget);
+    }
+
+    @Override
+    public Optional<String> compress(WordGraph graph, int maxDepth) {
+        List<Compression> compressions = compressTopK(graph, maxDepth, 1);
+        if (compressions.isEmpty()) {
+            return Optional.empty();
+        }
+        logger.debug("Generating the compressive summary");
+        return compressions.get(0).getSummary();
+    }
+
+    @Override
+    public List<Compression> compressTopK(WordGraph graph, int maxDepth, int k, SearchBudget budget) {
+        requireNonNull(graph, "'graph' is null");
+        requireNonNull(budget, "'budget' is null");
+
+        long elapsed = System.nanoTime();
+        logger.debug("Computing the {} minimal cost path/s between START and END nodes on {} worker/s...",
+                k, pool.getParallelism());
+        Search search = new Search(graph, maxDepth, k, budget);
+        List<Task> tasks = search.split(pool.getParallelism() * TASKS_PER_WORKER);
+        if (!tasks.isEmpty()) {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        }
+        elapsed = System.nanoTime() - elapsed;
+        Metrics.global().record(Stage.SEARCH, elapsed);
+        Metrics.global().recordPaths(search.explored.get());
+        logger.info("{} partial path/s explored by {} task/s{} in {} ms.", search.explored.get(), tasks.size(),
+                search.stopped ? " before the budget was over" : "", String.format("%,.3f", elapsed / 1_000_000.0));
+        synchronized (search.best) {
+            return search.best.toCompressions(graph, search.stopped);
+        }
+    }
+
+    /**
+     * The state shared by the tasks of a search: the {@code k} minimal cost valid paths found so far,
+     * the bound they give to the partial paths and the number of partial paths explored.
+     * <p>
+     * Paths are offered with their order of discovery in the serial search: the index of the task that found them
+     * in the upper bits and the order of discovery within the task in the lower ones.
+     */
+    private static final class Search {
+        private static final int CHECK_INTERVAL = 1_024;
+        private static final int ORDER_BITS = 40;
+
+        private final WordGraph graph;
+        private final PathBounds bounds;
+        private final int maxDepth;
+        private final PathHeap best;
+        private final SearchBudget budget;
+        private final Thread caller = Thread.currentThread();
+        private final AtomicLong explored = new AtomicLong();
+        private volatile Bound bound = null;
+        private volatile boolean stopped = false;
+
+        private Search(WordGraph graph, int maxDepth, int k, SearchBudget budget) {
+            this.graph = graph;
+            this.bounds = new PathBounds(graph, maxDepth);
+            this.maxDepth = Integer.max(0, maxDepth);
+            this.best = new PathHeap(k);
+            this.budget = budget;
+        }
+
+        /**
+         * Expands the partial paths from {@code START}, breadth first but keeping them in the order the serial
+         * search would visit them, until there are at least {@code target} of them or none can be expanded.
+         */
+        private List<Task> split(int target) {
+            if (!bounds.isFeasible(WordGraph.START, 0, false)) {
+                return Collections.emptyList();
+            }
+            List<Task> result = Collections.singletonList(new Task(this, WordGraph.START, 0, false, 0.0,
+                    new int[maxDepth + 1], new boolean[graph.getFollowsCount()]));
+            boolean expanded = true;
+            while (expanded && result.size() < target) {
+                List<Task> frontier = new ArrayList<>();
+                expanded = false;
+                for (Task task : result) {
+                    if (task.node == WordGraph.END) {
+                        frontier.add(task);
+                    } else {
+                        frontier.addAll(task.split());
+                        explored.incrementAndGet();
+                        expanded = true;
+                    }
+                }
+                result = frontier;
+            }
+            for (int i = 0; i < result.size(); i++) {
+                result.get(i).order = (long) i << ORDER_BITS;
+            }
+            return result;
+        }
+
+        private boolean isOver(long steps) {
+            return budget.isOver(explored.addAndGet(steps)) || caller.isInterrupted();
+        }
+
+        private void offer(double cost, int[] path, int size, long order) {
+            synchronized (best) {
+                best.offer(cost, path, size, order);
+                if (best.isFull()) {
+                    bound = new Bound(best.getWorstCost(), best.getWorstSize(), best.getWorstOrder());
+                }
+            }
+        }
+
+        /**
+         * Checks whether the completions of a partial path, which are found from the given {@code order} on,
+         * can't beat the worst of the best paths found so far by any task.
+         */
+        private boolean isPruned(double cost, int length, long order) {
+            Bound bound = this.bound;
+            if (bound == null) {
+                return false;
+            }
+            int result;
+            if (Double.isInfinite(cost) || Double.isInfinite(bound.cost)) {
+                result = Double.compare(cost, bound.cost);
+            } else {
+                double tolerance = TOLERANCE * Double.max(1.0, Math.abs(bound.cost));
+                result = cost > bound.cost + tolerance ? 1 : Math.abs(cost - bound.cost) <= tolerance ? 0 : -1;
+            }
+            if (result == 0) {
+                result = Integer.compare(length + 1, bound.size);
+            }
+            if (result == 0) {
+                result = Long.compare(order, bound.order);
+            }
+            return result > 0;
+        }
+    }
+
+    /**
+     * The worst of the {@code k} best paths found so far, once {@code k} paths have been found.
+     */
+    private static final class Bound {
+        private final double cost;
+        private final int size;
+        private final long order;
+
+        private Bound(double cost, int size, long order) {
+            this.cost = cost;
+            this.size = size;
+            this.order = order;
+        }
+    }
+
+    /**
+     * A fork-join task that completes a partial path with a depth-first branch and bound search,
+     * as {@link OptimalPathCompressor} does.
+     */
+    private static final class Task extends RecursiveAction {
+        private final Search search;
+        private final WordGraph graph;
+        private final int node;
+        private final int depth;
+        private final boolean verb;
+        private final double cost;
+        private final int[] path;
+        private final boolean[] used;
+        private long order = 0L;
+        private long steps = 0L;
+
+        private Task(Search search, int node, int depth, boolean verb, double cost, int[] path, boolean[] used) {
+            this.search = search;
+            this.graph = search.graph;
+            this.node = node;
+            this.depth = depth;
+            this.verb = verb;
+            this.cost = cost;
+            this.path = path;
+            this.used = used;
+        }
+
+        /**
+         * Returns the tasks that complete the feasible extensions of this partial path, in the order
+         * the serial search would visit them.
+         */
+        private List<Task> split() {
+            path[depth] = node;
+            int[] edges = new int[graph.getOutgoingCount(node)];
+            double[] keys = new double[edges.length];
+            int count = sort(node, depth, verb, cost, edges, keys);
+            List<Task> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int follows = edges[i];
+                int head = graph.getHead(follows);
+                boolean[] next = Arrays.copyOf(used, used.length);
+                next[follows] = true;
+                result.add(new Task(search, head, depth + 1, verb || graph.isVerb(head),
+                        cost + graph.getWeight(follows, 1.0), Arrays.copyOf(path, path.length), next));
+            }
+            return result;
+        }
+
+        @Override
+        protected void compute() {
+            visit(node, depth, verb, cost);
+            search.explored.addAndGet(steps % Search.CHECK_INTERVAL);
+        }
+
+        private void visit(int node, int depth, boolean verb, double cost) {
+            if (search.stopped || (++steps % Search.CHECK_INTERVAL == 0 && search.isOver(Search.CHECK_INTERVAL))) {
+                search.stopped = true;
+                return;
+            }
+            path[depth] = node;
+            if (node == WordGraph.END) {
+                search.offer(cost, path, depth + 1, order++);
+                return;
+            }
+            int[] edges = new int[graph.getOutgoingCount(node)];
+            double[] keys = new double[edges.length];
+            int count = sort(node, depth, verb, cost, edges, keys);
+            for (int i = 0; i < count; i++) {
+                int follows = edges[i];
+                int head = graph.getHead(follows);
+                boolean next = verb || graph.isVerb(head);
+                if (!search.isPruned(keys[i], depth + 1 + search.bounds.getLength(head, depth + 1, next), order)) {
+                    used[follows] = true;
+                    visit(head, depth + 1, next, cost + graph.getWeight(follows, 1.0));
+                    used[follows] = false;
+                }
+            }
+        }
+
+        /**
+         * Sorts the feasible relationships from the given {@code node} by increasing bound on the cost
+         * of their completions, and returns how many they are.
+         */
+        private int sort(int node, int depth, boolean verb, double cost, int[] edges, double[] keys) {
+            int count = 0;
+            for (int i = 0; i < edges.length; i++) {
+                int follows = graph.getOutgoing(node, i);
+                int head = graph.getHead(follows);
+                boolean next = verb || graph.isVerb(head);
+                if (!used[follows] && search.bounds.isFeasible(head, depth + 1, next)) {
+                    double key = cost + graph.getWeight(follows, 1.0) + search.bounds.getCost(head, depth + 1, next);
+                    int j = count++;
+                    while (j > 0 && keys[j - 1] > key) {
+                        edges[j] = edges[j - 1];
+                        keys[j] = keys[j - 1];
+                        j -= 1;
+                    }
+                    edges[j] = follows;
+                    keys[j] = key;
+                }
+            }
+            return count;
+        }
+    }
+}
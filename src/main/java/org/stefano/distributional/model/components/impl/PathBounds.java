@@ -0,0 +1,107 @@
+package org.stefano.distributional.model.components.impl;
+
+import org.stefano.distributional.model.components.PathCompressor;
+import org.stefano.distributional.model.components.WordGraph;
+
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Lower bounds on the cost and on the length of the valid completions of a partial path in a {@link WordGraph}.
+ * <p>
+ * A completion is valid if it reaches {@code END} within {@code maxDepth} relationships from {@code START},
+ * the whole path is at least {@link PathCompressor#MIN_DEPTH} relationships long and contains a {@code verb}.
+ * Bounds are computed by dynamic programming over the states {@code (node, depth, seenVerb)}, hence they are exact
+ * for walks and lower bounds for paths that can't reuse a relationship.
+ */
+final class PathBounds {
+
+    private final int nodes;
+    private final int maxDepth;
+    private final double[] costs;
+    private final int[] lengths;
+
+    PathBounds(WordGraph graph, int maxDepth) {
+        requireNonNull(graph, "'graph' is null");
+
+        this.nodes = graph.getNodeCount();
+        this.maxDepth = Integer.max(0, maxDepth);
+        this.costs = new double[(this.maxDepth + 1) * 2 * nodes];
+        this.lengths = new int[costs.length];
+        Arrays.fill(costs, Double.NaN);
+        for (int depth = this.maxDepth; depth >= 0; depth--) {
+            for (int seen = 0; seen < 2; seen++) {
+                boolean verb = seen == 1;
+                if (depth >= PathCompressor.MIN_DEPTH && verb) {
+                    costs[index(WordGraph.END, depth, true)] = 0.0;
+                }
+                if (depth == this.maxDepth) {
+                    continue;
+                }
+                for (int node = 0; node < nodes; node++) {
+                    if (node == WordGraph.END) {
+                        continue;
+                    }
+                    double cost = Double.NaN;
+                    int length = Integer.MAX_VALUE;
+                    for (int i = 0; i < graph.getOutgoingCount(node); i++) {
+                        int follows = graph.getOutgoing(node, i);
+                        int head = graph.getHead(follows);
+                        int next = index(head, depth + 1, verb || graph.isVerb(head));
+                        if (!Double.isNaN(costs[next])) {
+                            double candidate = graph.getWeight(follows, 1.0) + costs[next];
+                            if (Double.isNaN(cost) || candidate < cost) {
+                                cost = candidate;
+                            }
+                            length = Integer.min(length, 1 + lengths[next]);
+                        }
+                    }
+                    costs[index(node, depth, verb)] = cost;
+                    lengths[index(node, depth, verb)] = length;
+                }
+            }
+        }
+    }
+
+    private int index(int node, int depth, boolean verb) {
+        return ((depth * 2) + (verb ? 1 : 0)) * nodes + node;
+    }
+
+    /**
+     * Checks whether a partial path that reached the given {@code node} at the given {@code depth}
+     * may have a valid completion.
+     *
+     * @param node  the last node of the partial path
+     * @param depth the length of the partial path
+     * @param verb  {@code true} if the partial path contains a {@code verb}, {@code false} otherwise
+     * @return {@code true} if a valid completion may exist, {@code false} otherwise
+     */
+    boolean isFeasible(int node, int depth, boolean verb) {
+        return depth <= maxDepth && !Double.isNaN(costs[index(node, depth, verb)]);
+    }
+
+    /**
+     * Returns a lower bound on the cost of the valid completions of a feasible partial path.
+     *
+     * @param node  the last node of the partial path
+     * @param depth the length of the partial path
+     * @param verb  {@code true} if the partial path contains a {@code verb}, {@code false} otherwise
+     * @return the lower bound on the cost of the completions
+     */
+    double getCost(int node, int depth, boolean verb) {
+        return costs[index(node, depth, verb)];
+    }
+
+    /**
+     * Returns a lower bound on the length of the valid completions of a feasible partial path.
+     *
+     * @param node  the last node of the partial path
+     * @param depth the length of the partial path
+     * @param verb  {@code true} if the partial path contains a {@code verb}, {@code false} otherwise
+     * @return the lower bound on the number of relationships of the completions
+     */
+    int getLength(int node, int depth, boolean verb) {
+        return lengths[index(node, depth, verb)];
+    }
+}
@@ -0,0 +1,209 @@
+package org.stefano.distributional.model.components.impl;
+
+import org.stefano.distributional.model.components.PathCompressor;
+import org.stefano.distributional.model.components.PathCompressor.Compression;
+import org.stefano.distributional.model.components.WordGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A bounded max-heap that keeps the {@code k} minimal cost paths of a {@link WordGraph} offered so far,
+ * ranked by increasing cost first, then by increasing length and then by increasing order of discovery,
+ * hence exact ties are won by the paths offered first.
+ * Memory is {@code O(min(k, n))} for {@code n} paths offered, as the heap grows lazily up to {@code k} paths.
+ */
+final class PathHeap {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int capacity;
+    private double[] costs;
+    private int[][] paths;
+    private long[] orders;
+    private long offered = 0L;
+    private int size = 0;
+
+    PathHeap(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("'k' is not positive: " + k);
+        }
+        int initial = Integer.min(k, INITIAL_CAPACITY);
+        this.capacity = k;
+        this.costs = new double[initial];
+        this.paths = new int[initial][];
+        this.orders = new long[initial];
+    }
+
+    private static int compare(double cost, int length, long order, double otherCost, int otherLength,
+                               long otherOrder) {
+        int result = Double.compare(cost, otherCost);
+        if (result == 0) {
+            result = Integer.compare(length, otherLength);
+        }
+        if (result == 0) {
+            result = Long.compare(order, otherOrder);
+        }
+        return result;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * Returns the cost of the worst path in the heap, which must not be empty.
+     *
+     * @return the cost of the worst path in the heap
+     */
+    double getWorstCost() {
+        return costs[0];
+    }
+
+    /**
+     * Returns the number of nodes of the worst path in the heap, which must not be empty.
+     *
+     * @return the number of nodes of the worst path in the heap
+     */
+    int getWorstSize() {
+        return paths[0].length;
+    }
+
+    /**
+     * Returns the order of discovery of the worst path in the heap, which must not be empty.
+     *
+     * @return the order of discovery of the worst path in the heap
+     */
+    long getWorstOrder() {
+        return orders[0];
+    }
+
+    /**
+     * Offers the path made by the first {@code size} nodes of the given {@code path} with the given {@code cost},
+     * which is discovered after all the paths offered so far.
+     * The path is kept if the heap is not full or if the path is strictly better than the worst path in the heap,
+     * which is discarded.
+     *
+     * @param cost the cost of the path
+     * @param path the nodes of the path (copied if kept)
+     * @param size the number of nodes of the path
+     * @return {@code true} if the path has been kept, {@code false} otherwise
+     */
+    boolean offer(double cost, int[] path, int size) {
+        return offer(cost, path, size, offered);
+    }
+
+    /**
+     * Offers the path made by the first {@code size} nodes of the given {@code path} with the given {@code cost}
+     * and the given order of discovery, for searches that don't offer their paths in order (as concurrent ones).
+     *
+     * @param cost  the cost of the path
+     * @param path  the nodes of the path (copied if kept)
+     * @param size  the number of nodes of the path
+     * @param order the order of discovery of the path
+     * @return {@code true} if the path has been kept, {@code false} otherwise
+     */
+    boolean offer(double cost, int[] path, int size, long order) {
+        offered = Long.max(offered, order + 1);
+        if (this.size < capacity) {
+            if (this.size == costs.length) {
+                grow();
+            }
+            int i = this.size++;
+            costs[i] = cost;
+            paths[i] = Arrays.copyOf(path, size);
+            orders[i] = order;
+            siftUp(i);
+            return true;
+        }
+        if (compare(cost, size, order, costs[0], paths[0].length, orders[0]) < 0) {
+            costs[0] = cost;
+            paths[0] = Arrays.copyOf(path, size);
+            orders[0] = order;
+            siftDown(0);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the paths in the heap as {@link Compression}s sorted by increasing cost and length.
+     * Summaries are decoded lazily from the given {@code graph}.
+     *
+     * @param graph       the {@link WordGraph} the paths belong to
+     * @param approximate whether the search that offered the paths stopped before completion
+     * @return the sorted list of {@link Compression}s
+     */
+    List<Compression> toCompressions(WordGraph graph, boolean approximate) {
+        Integer[] ranking = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            ranking[i] = i;
+        }
+        Arrays.sort(ranking, (i, j) -> isWorse(i, j) ? 1 : isWorse(j, i) ? -1 : 0);
+        List<Compression> result = new ArrayList<>(size);
+        for (int i : ranking) {
+            int[] path = paths[i];
+            result.add(new Compression(costs[i], path.length - 1, () -> PathCompressor.decode(graph, path),
+                    approximate));
+        }
+        return result;
+    }
+
+    private void grow() {
+        int length = (int) Long.min(capacity, 2L * costs.length);
+        costs = Arrays.copyOf(costs, length);
+        paths = Arrays.copyOf(paths, length);
+        orders = Arrays.copyOf(orders, length);
+    }
+
+    private boolean isWorse(int i, int j) {
+        return compare(costs[i], paths[i].length, orders[i], costs[j], paths[j].length, orders[j]) > 0;
+    }
+
+    private void swap(int i, int j) {
+        double cost = costs[i];
+        costs[i] = costs[j];
+        costs[j] = cost;
+        int[] path = paths[i];
+        paths[i] = paths[j];
+        paths[j] = path;
+        long order = orders[i];
+        orders[i] = orders[j];
+        orders[j] = order;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!isWorse(i, parent)) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int worst = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && isWorse(left, worst)) {
+                worst = left;
+            }
+            if (right < size && isWorse(right, worst)) {
+                worst = right;
+            }
+            if (worst == i) {
+                return;
+            }
+            swap(i, worst);
+            i = worst;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.stefano.distributional.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stefano.distributional.model.Summarizer;
+import org.stefano.distributional.model.components.SearchBudget;
+import org.stefano.distributional.model.components.StopWordLexicon;
+import org.stefano.distributional.utils.Workers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Groups the concurrent summarisation requests into micro-batches, whose clusters are submitted together
+ * to the {@link Summarizer} (see {@link Summarizer#submit}).
+ * <p>
+ * Requests wait in a bounded queue: a batch starts as soon as {@code batchSize} requests are queued or
+ * {@code linger} has elapsed since its first request, whichever comes first, and at most {@code maxBatches} batches
+ * run at once. A request is rejected as soon as the queue is full (admission control), and a request which is
+ * cancelled while queued, for instance because its caller timed out, is dropped from its batch.
+ * The result of each request is available as soon as its own summary is, regardless of the rest of its batch,
+ * and a cluster that can't be summarised only fails its own request.
+ * <p>
+ * Each request is summarised within its own default {@link SearchBudget} (see {@link Summarizer#newBudget()}),
+ * which is cancelled as soon as the request is completed otherwise, for instance because its caller timed out,
+ * so that its summary stops being computed as soon as nobody waits for it.
+ */
+final class MicroBatcher implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MicroBatcher.class);
+
+    private final Summarizer summarizer;
+    private final StopWordLexicon stopWords;
+    private final int batchSize;
+    private final long linger;
+    private final BlockingQueue<Request> queue;
+    private final Semaphore batches;
+    private final ExecutorService dispatcher = Workers.newExecutor("batcher");
+    private final Thread batcher;
+    private volatile boolean running = true;
+
+    MicroBatcher(Summarizer summarizer, StopWordLexicon stopWords, int batchSize, long lingerMillis,
+                 int queueCapacity, int maxBatches) {
+        this.summarizer = requireNonNull(summarizer, "'summarizer' is null");
+        this.stopWords = requireNonNull(stopWords, "'stopWords' is null");
+        this.batchSize = batchSize;
+        this.linger = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batches = new Semaphore(maxBatches);
+        this.batcher = new Thread(this::loop, "batcher");
+        this.batcher.setDaemon(true);
+        this.batcher.start();
+    }
+
+    /**
+     * Queues the given {@code sentences} to be summarised in the next batch.
+     *
+     * @param sentences the {@link List<String>} to compress
+     * @return the future {@code multi-sentence compression}, if any
+     * @throws RejectedExecutionException if the queue is full or the batcher is closed
+     */
+    CompletableFuture<Optional<String>> submit(List<String> sentences) {
+        requireNonNull(sentences, "'sentences' is null");
+
+        Request request = new Request(sentences);
+        if (!running || !queue.offer(request)) {
+            throw new RejectedExecutionException("Too many pending requests");
+        }
+        return request.future;
+    }
+
+    /**
+     * Returns the number of requests waiting for a batch.
+     *
+     * @return the number of queued requests
+     */
+    int getQueued() {
+        return queue.size();
+    }
+
+    private void loop() {
+        List<Request> batch = null;
+        try {
+            while (running) {
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                long deadline = System.nanoTime() + linger;
+                while (batch.size() < batchSize) {
+                    Request next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                batch.removeIf(request -> request.future.isDone());
+                if (!batch.isEmpty()) {
+                    batches.acquire();
+                    List<Request> dispatched = batch;
+                    dispatcher.execute(() -> run(dispatched));
+                }
+                batch = null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (batch != null) {
+                for (Request request : batch) {
+                    request.future.completeExceptionally(new RejectedExecutionException("Server is shutting down"));
+                }
+            }
+        }
+    }
+
+    private void run(List<Request> batch) {
+        try {
+            logger.debug("Running a batch of {} request/s...", batch.size());
+            List<CompletableFuture<?>> results = new ArrayList<>(batch.size());
+            for (Request request : batch) {
+                SearchBudget budget = summarizer.newBudget();
+                request.future.whenComplete((summary, failure) -> budget.cancel());
+                results.add(summarizer.submit(request.sentences, stopWords, budget).whenComplete((summary, failure) -> {
+                    if (failure == null) {
+                        request.future.complete(summary);
+                    } else {
+                        request.future.completeExceptionally(
+                                failure instanceof CompletionException ? failure.getCause() : failure);
+                    }
+                }));
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture[results.size()]))
+                    .handle((ignored, failure) -> null)
+                    .join();
+        } catch (RuntimeException e) {
+            for (Request request : batch) {
+                request.future.completeExceptionally(e);
+            }
+        } finally {
+            batches.release();
+        }
+    }
+
+    /**
+     * Stops batching and fails the requests still queued or being batched; running batches are completed.
+     */
+    @Override
+    public void close() {
+        running = false;
+        batcher.interrupt();
+        try {
+            batcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.future.completeExceptionally(new RejectedExecutionException("Server is shutting down"));
+        }
+        dispatcher.shutdown();
+    }
+
+    /**
+     * A queued request with its future result.
+     */
+    private static final class Request {
+        private final List<String> sentences;
+        private final CompletableFuture<Optional<String>> future = new CompletableFuture<>();
+
+        private Request(List<String> sentences) {
+            this.sentences = sentences;
+        }
+    }
+}
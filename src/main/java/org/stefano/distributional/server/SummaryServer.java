@@ -0,0 +1,399 @@
+package org.stefano.distributional.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stefano.distributional.metrics.CacheMXBean;
+import org.stefano.distributional.metrics.Metrics;
+import org.stefano.distributional.metrics.StageStatistics;
+import org.stefano.distributional.model.Summarizer;
+import org.stefano.distributional.model.SummaryCache;
+import org.stefano.distributional.model.components.PathCompressor;
+import org.stefano.distributional.model.components.StopWordLexicon;
+import org.stefano.distributional.model.components.TokenCache;
+import org.stefano.distributional.model.components.impl.AdvancedGraphWeigher;
+import org.stefano.distributional.model.components.impl.DefaultGraphEncoder;
+import org.stefano.distributional.model.components.impl.DefaultPathCompressor;
+import org.stefano.distributional.model.components.impl.OptimalPathCompressor;
+import org.stefano.distributional.model.components.impl.ParallelPathCompressor;
+import org.stefano.distributional.utils.ClusterReader;
+import org.stefano.distributional.utils.ClusterReader.Cluster;
+import org.stefano.distributional.utils.Workers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.*;
+
+/**
+ * A standalone summarisation server on localhost, which keeps the OpenNLP models and the {@code word graph}
+ * backend warm so that callers don't pay their startup.
+ * <p>
+ * Requests are served by virtual threads where available and grouped into micro-batches (see {@link MicroBatcher}).
+ * Requests beyond the capacity of the queue are rejected at once, and each request waits for its summary
+ * at most for a given timeout, so that tail latency stays predictable under bursty load.
+ * Handlers never block while a summary is computed: the response is sent by whichever thread completes
+ * the request (or its timeout), hence admitted requests don't hold any thread.
+ * Endpoints:
+ * <ul>
+ * <li>{@code POST /summarize}: the body is a cluster as a JSON object ({@code {"id": "c1", "sentences": [...]}})
+ * or array of sentences, the response is {@code {"id": "c1", "summary": "..."}} (with a {@code null} summary
+ * if none); status codes are 400 for a malformed cluster, 413 for a body larger than 1 MB, 503 (with
+ * {@code Retry-After}) when the queue is full and 504 when the request times out;</li>
+ * <li>{@code GET /metrics}: the latency statistics of each stage (see {@link Metrics}), the statistics
+ * of the {@link TokenCache} and, if enabled, of the {@link SummaryCache} as JSON;</li>
+ * <li>{@code GET /health}: {@code ok}.</li>
+ * </ul>
+ * Usage:
+ * <pre>
+ *     SummaryServer [--port 8080] [--database FOLDER] [--compressor default|optimal|parallel] [--batch-size 16]
+ *                   [--linger-ms 2] [--queue 256] [--timeout-ms 10000] [--language CODE]
+ *                   [--cache SIZE] [--cache-dir FOLDER] [--cache-files COUNT] [--cache-ttl SECONDS]
+ *                   [--search-ms MILLIS] [--storage heap|off-heap]
+ * </pre>
+ * Without {@code --database}, {@code word graphs} are kept in memory, on the heap by default or off-heap
+ * with {@code --storage off-heap} (see {@link Summarizer.RequiresFolder#offHeap()}).
+ * The path search of each cluster stops after {@code --search-ms} (the request timeout by default), counted from
+ * the start of its batch, or as soon as its request times out, which cancels its
+ * {@link org.stefano.distributional.model.components.SearchBudget} (see {@link MicroBatcher}), so that a request
+ * that timed out doesn't keep its worker busy; summaries found when the search stopped early are approximate,
+ * and are not cached.
+ * Summaries are cached (see {@link SummaryCache}) if {@code --cache} is given with the number of summaries to keep
+ * in memory, and also on disk if {@code --cache-dir} is given as well (at most {@code --cache-files} of them,
+ * {@value SummaryCache#MAX_FILES} by default); they expire after an hour by default.
+ */
+public final class SummaryServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SummaryServer.class);
+
+    private static final String USAGE = "Usage: SummaryServer [--port 8080] [--database FOLDER] "
+            + "[--compressor default|optimal|parallel] [--batch-size 16] [--linger-ms 2] [--queue 256] "
+            + "[--timeout-ms 10000] [--language CODE] [--cache SIZE] [--cache-dir FOLDER] "
+            + "[--cache-files COUNT] [--cache-ttl SECONDS] [--search-ms MILLIS] [--storage heap|off-heap]";
+
+    private static final int MAX_BODY = 1 << 20;
+
+    private final Summarizer summarizer;
+    private final SummaryCache cache;
+    private final MicroBatcher batcher;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService timers;
+    private final long timeout;
+
+    private SummaryServer(Options options) throws IOException {
+        long elapsed = System.nanoTime();
+        Summarizer.RequiresFolder builder = Summarizer.builder();
+        Summarizer.SummarizerBuilder summarizerBuilder = (options.database != null ?
+                builder.onShared(options.database) : options.offHeap ? builder.offHeap() : builder.inMemory())
+                .withEncoder(new DefaultGraphEncoder())
+                .withWeigher(new AdvancedGraphWeigher())
+                .withCompressor(options.compressor)
+                .withSearchTimeout(Duration.ofMillis(options.search > 0 ? options.search : options.timeout));
+        if (options.cacheSize > 0) {
+            Duration ttl = Duration.ofSeconds(options.cacheTtl);
+            this.cache = options.cacheFolder != null ?
+                    SummaryCache.onDisk(options.cacheFolder, options.cacheSize,
+                            Integer.max(options.cacheSize, options.cacheFiles), ttl) :
+                    SummaryCache.inMemory(options.cacheSize, ttl);
+            Metrics.expose("summaries", cache);
+            summarizerBuilder.withCache(cache);
+        } else {
+            this.cache = null;
+        }
+        this.summarizer = summarizerBuilder.build();
+        StopWordLexicon stopWords = StopWordLexicon.forLanguage(options.language);
+        summarizer.process(Arrays.asList("The server is warming up.", "The models are loaded."), stopWords);
+        this.batcher = new MicroBatcher(summarizer, stopWords, options.batchSize, options.linger, options.queue,
+                Runtime.getRuntime().availableProcessors());
+        this.timeout = options.timeout;
+        this.timers = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "server-timers");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor = Workers.newExecutor("server");
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), options.port), 0);
+        server.createContext("/summarize", this::summarize);
+        server.createContext("/metrics", this::metrics);
+        server.createContext("/health", exchange -> respond(exchange, 200, "text/plain", "ok"));
+        server.setExecutor(executor);
+        server.start();
+        elapsed = System.nanoTime() - elapsed;
+        logger.info("Server listening on {} in {} ms.", server.getAddress(),
+                String.format("%,.3f", elapsed / 1_000_000.0));
+    }
+
+    public static void main(String[] args) throws IOException {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        SummaryServer server = new SummaryServer(options);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close, "server-shutdown"));
+    }
+
+    private static byte[] read(InputStream stream) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = stream.read(buffer)) >= 0) {
+            result.write(buffer, 0, count);
+            if (result.size() > MAX_BODY) {
+                return null;
+            }
+        }
+        return result.toByteArray();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String type, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", type + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream stream = exchange.getResponseBody()) {
+            stream.write(bytes);
+        }
+    }
+
+    private static String error(String message) {
+        return "{\"error\": " + ClusterReader.quote(message) + "}";
+    }
+
+    private void summarize(HttpExchange exchange) throws IOException {
+        boolean pending = false;
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respond(exchange, 405, "application/json", error("Method not allowed"));
+                return;
+            }
+            byte[] body = read(exchange.getRequestBody());
+            if (body == null) {
+                respond(exchange, 413, "application/json", error("Request body is too large"));
+                return;
+            }
+            Cluster cluster;
+            try {
+                cluster = ClusterReader.parse(new String(body, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, "application/json", error(e.getMessage()));
+                return;
+            }
+            CompletableFuture<Optional<String>> future;
+            try {
+                future = batcher.submit(cluster.getSentences());
+            } catch (RejectedExecutionException e) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 503, "application/json", error(e.getMessage()));
+                return;
+            }
+            ScheduledFuture<?> timer = timers.schedule(
+                    () -> future.completeExceptionally(new TimeoutException()), timeout, TimeUnit.MILLISECONDS);
+            future.whenComplete((summary, failure) -> {
+                timer.cancel(false);
+                try {
+                    executor.execute(() -> reply(exchange, cluster, summary, failure));
+                } catch (RejectedExecutionException e) {
+                    exchange.close();
+                }
+            });
+            pending = true;
+        } finally {
+            if (!pending) {
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * Sends the response to the given {@code cluster}, which runs on the executor of the server rather than
+     * on the thread that completed its summary (a worker of the summarizer or the timer thread),
+     * so that a slow client doesn't hold up any other request.
+     */
+    private void reply(HttpExchange exchange, Cluster cluster, Optional<String> summary, Throwable failure) {
+        try {
+            if (failure instanceof TimeoutException) {
+                respond(exchange, 504, "application/json", error("Request timed out"));
+            } else if (failure instanceof RejectedExecutionException) {
+                respond(exchange, 503, "application/json", error(failure.getMessage()));
+            } else if (failure != null) {
+                Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+                logger.warn("Cluster '{}' can't be summarised: {}", cluster.getId(), cause.getMessage(), cause);
+                respond(exchange, 500, "application/json", error(String.valueOf(cause.getMessage())));
+            } else {
+                respond(exchange, 200, "application/json", "{\"id\": " + ClusterReader.quote(cluster.getId())
+                        + ", \"summary\": " + (summary.isPresent() ? ClusterReader.quote(summary.get()) : "null")
+                        + "}");
+            }
+        } catch (IOException e) {
+            logger.debug("Response to cluster '{}' can't be sent: {}", cluster.getId(), e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        try {
+            StringBuilder result = new StringBuilder("{\"queued\": ").append(batcher.getQueued())
+                    .append(", \"stages\": [");
+            String separator = "";
+            for (StageStatistics statistics : Metrics.global().getStages()) {
+                result.append(separator).append(String.format(
+                        "{\"stage\": \"%s\", \"count\": %d, \"mean\": %.3f, \"p50\": %.3f, \"p99\": %.3f, \"max\": %.3f}",
+                        statistics.getStage(), statistics.getCount(), statistics.getMean(), statistics.getP50(),
+                        statistics.getP99(), statistics.getMax()));
+                separator = ", ";
+            }
+            result.append("], \"tokens\": ").append(statistics(TokenCache.global()));
+            if (cache != null) {
+                result.append(", \"cache\": ").append(statistics(cache));
+            }
+            respond(exchange, 200, "application/json", result.append("}").toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String statistics(CacheMXBean cache) {
+        return String.format("{\"hits\": %d, \"misses\": %d, \"hitRate\": %.3f, \"evictions\": %d, \"size\": %d}",
+                cache.getHits(), cache.getMisses(), cache.getHitRate(), cache.getEvictions(), cache.getSize());
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for the running ones and releases the summarizer.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        batcher.close();
+        executor.shutdown();
+        timers.shutdown();
+        summarizer.close();
+        logger.info("Server stopped.");
+    }
+
+    /**
+     * The command line options of the server.
+     */
+    private static final class Options {
+        private int port = 8080;
+        private Path database;
+        private PathCompressor compressor = new DefaultPathCompressor();
+        private int batchSize = 16;
+        private long linger = 2;
+        private int queue = 256;
+        private long timeout = 10_000;
+        private String language = "en";
+        private int cacheSize = 0;
+        private Path cacheFolder;
+        private int cacheFiles = SummaryCache.MAX_FILES;
+        private long cacheTtl = 3_600;
+        private long search = 0;
+        private boolean offHeap = false;
+
+        private static Options parse(String[] args) {
+            Options result = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + arg);
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "--port":
+                        result.port = positive(arg, value);
+                        break;
+                    case "--database":
+                        result.database = Paths.get(value);
+                        break;
+                    case "--compressor":
+                        if ("default".equals(value)) {
+                            result.compressor = new DefaultPathCompressor();
+                        } else if ("optimal".equals(value)) {
+                            result.compressor = new OptimalPathCompressor();
+                        } else if ("parallel".equals(value)) {
+                            result.compressor = new ParallelPathCompressor();
+                        } else {
+                            throw new IllegalArgumentException("Unknown compressor: " + value);
+                        }
+                        break;
+                    case "--batch-size":
+                        result.batchSize = positive(arg, value);
+                        break;
+                    case "--linger-ms":
+                        result.linger = integer(arg, value, 0);
+                        break;
+                    case "--queue":
+                        result.queue = positive(arg, value);
+                        break;
+                    case "--timeout-ms":
+                        result.timeout = positive(arg, value);
+                        break;
+                    case "--language":
+                        result.language = value;
+                        break;
+                    case "--cache":
+                        result.cacheSize = integer(arg, value, 0);
+                        break;
+                    case "--cache-dir":
+                        result.cacheFolder = Paths.get(value);
+                        break;
+                    case "--cache-files":
+                        result.cacheFiles = positive(arg, value);
+                        break;
+                    case "--cache-ttl":
+                        result.cacheTtl = positive(arg, value);
+                        break;
+                    case "--search-ms":
+                        result.search = positive(arg, value);
+                        break;
+                    case "--storage":
+                        if ("heap".equals(value)) {
+                            result.offHeap = false;
+                        } else if ("off-heap".equals(value)) {
+                            result.offHeap = true;
+                        } else {
+                            throw new IllegalArgumentException("Unknown storage: " + value);
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+            return result;
+        }
+
+        private static int positive(String option, String value) {
+            return integer(option, value, 1);
+        }
+
+        private static int integer(String option, String value, int min) {
+            int result;
+            try {
+                result = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+            }
+            if (result < min) {
+                throw new IllegalArgumentException("Value for " + option + " is less than " + min + ": " + value);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package org.stefano.distributional.utils;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads clusters of sentences from local files, in either of the following formats (by file extension):
+ * <ul>
+ * <li>{@code .jsonl}: one cluster per line, as a JSON object with a {@code sentences} array of strings and
+ * an optional {@code id} (e.g. {@code {"id": "c1", "sentences": ["First.", "Second."]}}),
+ * or as a bare JSON array of strings;</li>
+ * <li>{@code .tsv}: one sentence per line, preceded by the identifier of its cluster and a tab
+ * (e.g. {@code c1\tFirst.}); consecutive lines with the same identifier form a cluster.</li>
+ * </ul>
+ * Blank lines are ignored, and so are the lines starting with {@code #} in TSV files.
+ * Clusters without an identifier are named after their line number.
+ * <p>
+ * Files can be read at once (see {@link #read(Path)}) or streamed one cluster at a time (see {@link #open(Path)}),
+ * in which case only the current cluster is kept in memory, whatever the size of the file.
+ */
+public class ClusterReader {
+
+    private ClusterReader() {
+        throw new UnsupportedOperationException("'ClusterReader' class should not be instantiated");
+    }
+
+    /**
+     * Returns the clusters in the given {@code file}, whose format is chosen by its extension.
+     *
+     * @param file the {@link Path} of a {@code .jsonl} or {@code .tsv} file (UTF-8)
+     * @return the {@link List} of {@link Cluster}s in the given {@code file}, in file order
+     * @throws IOException              if the file can't be read
+     * @throws IllegalArgumentException if the format is unknown or the content is malformed
+     */
+    public static List<Cluster> read(Path file) throws IOException {
+        List<Cluster> result = new ArrayList<>();
+        try (Source source = open(file)) {
+            Cluster cluster;
+            while ((cluster = source.next()) != null) {
+                result.add(cluster);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Opens the given {@code file}, whose format is chosen by its extension, to read its clusters one at a time.
+     *
+     * @param file the {@link Path} of a {@code .jsonl} or {@code .tsv} file (UTF-8)
+     * @return a {@link Source} of the clusters in the given {@code file}, to be closed after use
+     * @throws IOException              if the file can't be opened
+     * @throws IllegalArgumentException if the format is unknown
+     */
+    public static Source open(Path file) throws IOException {
+        requireNonNull(file, "'file' is null");
+
+        String name = file.getFileName().toString().toLowerCase();
+        boolean json = name.endsWith(".jsonl") || name.endsWith(".json");
+        if (!json && !name.endsWith(".tsv")) {
+            throw new IllegalArgumentException("Unknown format (expected .jsonl or .tsv): " + file);
+        }
+        return new Source(Files.newBufferedReader(file, StandardCharsets.UTF_8), json);
+    }
+
+    /**
+     * Returns the cluster in the given JSON {@code text}, which is either an object with a {@code sentences} array
+     * of strings and an optional {@code id}, or a bare array of strings (in which case the identifier is empty).
+     *
+     * @param text the JSON text of the cluster
+     * @return the {@link Cluster} in the given {@code text}
+     * @throws IllegalArgumentException if the text is malformed
+     */
+    public static Cluster parse(String text) {
+        requireNonNull(text, "'text' is null");
+
+        return parseJson(text, 1, "");
+    }
+
+    private static Cluster parseJson(String line, int number, String defaultId) {
+        Object value;
+        try {
+            value = new JsonParser(line).parse();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed JSON at line " + number + ": " + e.getMessage(), e);
+        }
+        String id = defaultId;
+        Object sentences = value;
+        if (value instanceof Map) {
+            Map<?, ?> object = (Map<?, ?>) value;
+            if (object.get("id") != null) {
+                id = String.valueOf(object.get("id"));
+            }
+            sentences = object.get("sentences");
+        }
+        if (!(sentences instanceof List)) {
+            throw new IllegalArgumentException("No 'sentences' array at line " + number);
+        }
+        List<String> texts = new ArrayList<>();
+        for (Object sentence : (List<?>) sentences) {
+            if (!(sentence instanceof String)) {
+                throw new IllegalArgumentException("Sentence is not a string at line " + number);
+            }
+            texts.add((String) sentence);
+        }
+        return new Cluster(id, texts);
+    }
+
+    /**
+     * Returns the given {@code text} as a JSON string literal, with quotes and control characters escaped.
+     *
+     * @param text the text to quote
+     * @return the JSON string literal of the given {@code text}
+     */
+    public static String quote(String text) {
+        requireNonNull(text, "'text' is null");
+
+        StringBuilder result = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    result.append("\\\"");
+                    break;
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        result.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        result.append(c);
+                    }
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    /**
+     * A stream of the clusters of a file, which is read line by line.
+     * Instances are not thread-safe.
+     */
+    public static final class Source implements Closeable {
+        private final BufferedReader reader;
+        private final boolean json;
+        private int number = 0;
+        private String pendingId;
+        private String pendingSentence;
+
+        private Source(BufferedReader reader, boolean json) {
+            this.reader = reader;
+            this.json = json;
+        }
+
+        /**
+         * Returns the next cluster of the file, if any.
+         *
+         * @return the next {@link Cluster}, or {@code null} at the end of the file
+         * @throws IOException              if the file can't be read
+         * @throws IllegalArgumentException if the content is malformed
+         */
+        public Cluster next() throws IOException {
+            return json ? nextJson() : nextTsv();
+        }
+
+        private Cluster nextJson() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                number += 1;
+                if (!line.trim().isEmpty()) {
+                    return parseJson(line, number, "line-" + number);
+                }
+            }
+            return null;
+        }
+
+        private Cluster nextTsv() throws IOException {
+            String id = pendingId;
+            List<String> sentences = new ArrayList<>();
+            if (pendingSentence != null) {
+                sentences.add(pendingSentence);
+            }
+            pendingId = null;
+            pendingSentence = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                number += 1;
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                if (tab < 0) {
+                    throw new IllegalArgumentException("No tab-separated cluster id at line " + number);
+                }
+                String current = line.substring(0, tab).trim();
+                if (id != null && !id.equals(current)) {
+                    pendingId = current;
+                    pendingSentence = line.substring(tab + 1);
+                    return new Cluster(id, sentences);
+                }
+                id = current;
+                sentences.add(line.substring(tab + 1));
+            }
+            return id == null ? null : new Cluster(id, sentences);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * A cluster of related sentences with its identifier.
+     */
+    public static final class Cluster {
+        private final String id;
+        private final List<String> sentences;
+
+        public Cluster(String id, List<String> sentences) {
+            this.id = requireNonNull(id, "'id' is null");
+            this.sentences = Collections.unmodifiableList(new ArrayList<>(
+                    requireNonNull(sentences, "'sentences' is null")));
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public List<String> getSentences() {
+            return sentences;
+        }
+
+        @Override
+        public String toString() {
+            return id + " (" + sentences.size() + " sentence/s)";
+        }
+    }
+
+    /**
+     * A minimal recursive descent parser for a single JSON value, which is converted into {@link Map},
+     * {@link List}, {@link String}, {@link Double}, {@link Boolean} or {@code null}.
+     */
+    private static final class JsonParser {
+        private final String text;
+        private int pos = 0;
+
+        private JsonParser(String text) {
+            this.text = text;
+        }
+
+        private Object parse() {
+            Object result = value();
+            skipWhitespace();
+            if (pos < text.length()) {
+                throw error("unexpected trailing content");
+            }
+            return result;
+        }
+
+        private Object value() {
+            skipWhitespace();
+            if (pos >= text.length()) {
+                throw error("unexpected end of input");
+            }
+            char c = text.charAt(pos);
+            switch (c) {
+                case '{':
+                    return object();
+                case '[':
+                    return array();
+                case '"':
+                    return string();
+                case 't':
+                    return literal("true", Boolean.TRUE);
+                case 'f':
+                    return literal("false", Boolean.FALSE);
+                case 'n':
+                    return literal("null", null);
+                default:
+                    return number();
+            }
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            pos += 1;
+            skipWhitespace();
+            if (peek('}')) {
+                pos += 1;
+                return result;
+            }
+            while (true) {
+                skipWhitespace();
+                if (!peek('"')) {
+                    throw error("expected a string key");
+                }
+                String key = string();
+                skipWhitespace();
+                expect(':');
+                result.put(key, value());
+                skipWhitespace();
+                if (peek(',')) {
+                    pos += 1;
+                } else {
+                    expect('}');
+                    return result;
+                }
+            }
+        }
+
+        private List<Object> array() {
+            List<Object> result = new ArrayList<>();
+            pos += 1;
+            skipWhitespace();
+            if (peek(']')) {
+                pos += 1;
+                return result;
+            }
+            while (true) {
+                result.add(value());
+                skipWhitespace();
+                if (peek(',')) {
+                    pos += 1;
+                } else {
+                    expect(']');
+                    return result;
+                }
+            }
+        }
+
+        private String string() {
+            StringBuilder result = new StringBuilder();
+            pos += 1;
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return result.toString();
+                }
+                if (c != '\\') {
+                    result.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) {
+                    break;
+                }
+                char escape = text.charAt(pos++);
+                switch (escape) {
+                    case 'b':
+                        result.append('\b');
+                        break;
+                    case 'f':
+                        result.append('\f');
+                        break;
+                    case 'n':
+                        result.append('\n');
+                        break;
+                    case 'r':
+                        result.append('\r');
+                        break;
+                    case 't':
+                        result.append('\t');
+                        break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw error("truncated unicode escape");
+                        }
+                        try {
+                            result.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("invalid unicode escape");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        result.append(escape);
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        private Double number() {
+            int start = pos;
+            while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+                pos += 1;
+            }
+            try {
+                return Double.valueOf(text.substring(start, pos));
+            } catch (NumberFormatException e) {
+                pos = start;
+                throw error("unexpected character '" + text.charAt(start) + "'");
+            }
+        }
+
+        private Object literal(String literal, Object value) {
+            if (!text.startsWith(literal, pos)) {
+                throw error("unexpected character '" + text.charAt(pos) + "'");
+            }
+            pos += literal.length();
+            return value;
+        }
+
+        private boolean peek(char c) {
+            return pos < text.length() && text.charAt(pos) == c;
+        }
+
+        private void expect(char c) {
+            if (!peek(c)) {
+                throw error("expected '" + c + "'");
+            }
+            pos += 1;
+        }
+
+        private void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos += 1;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at column " + (pos + 1));
+        }
+    }
+}
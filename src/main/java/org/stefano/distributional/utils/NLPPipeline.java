@@ -0,0 +1,133 @@
+package org.stefano.distributional.utils;
+
+import opennlp.tools.postag.POSTagger;
+import opennlp.tools.sentdetect.SentenceDetector;
+import opennlp.tools.tokenize.Tokenizer;
+import opennlp.tools.util.Span;
+import org.stefano.distributional.metrics.Metrics;
+import org.stefano.distributional.metrics.Stage;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A thread-safe pipeline for sentence detection, tokenisation and POS tagging.
+ * <p>
+ * The OpenNLP models are loaded once (see {@link OpenNLP}), while each call borrows a component from a lock-free pool
+ * and gives it back as soon as it is done, so that every worker thread uses its own instance without any locking.
+ * A new instance is created whenever the pool is empty, hence pools grow up to the maximum number of concurrent
+ * callers and work equally well with platform and virtual threads.
+ * <p>
+ * The latency of each call is recorded in the {@link Metrics#global()} registry.
+ */
+public class NLPPipeline {
+
+    private static final Pool<SentenceDetector> DETECTORS = new Pool<>(OpenNLP::newSentenceDetector);
+    private static final Pool<Tokenizer> TOKENIZERS = new Pool<>(OpenNLP::newTokenizer);
+    private static final Pool<POSTagger> TAGGERS = new Pool<>(OpenNLP::newPOSTagger);
+
+    private NLPPipeline() {
+        throw new UnsupportedOperationException("'NLPPipeline' class should not be instantiated");
+    }
+
+    /**
+     * Splits the given {@code content} into sentences.
+     *
+     * @param content the text to split
+     * @return the sentences in the given {@code content}
+     */
+    public static String[] detect(String content) {
+        requireNonNull(content, "'content' is null");
+
+        long elapsed = System.nanoTime();
+        SentenceDetector detector = DETECTORS.borrow();
+        try {
+            return detector.sentDetect(content);
+        } finally {
+            DETECTORS.release(detector);
+            Metrics.global().record(Stage.DETECTION, System.nanoTime() - elapsed);
+        }
+    }
+
+    /**
+     * Splits the given {@code sentence} into tokens.
+     *
+     * @param sentence the sentence to split
+     * @return the tokens in the given {@code sentence}
+     */
+    public static String[] tokenize(String sentence) {
+        requireNonNull(sentence, "'sentence' is null");
+
+        long elapsed = System.nanoTime();
+        Tokenizer tokenizer = TOKENIZERS.borrow();
+        try {
+            return tokenizer.tokenize(sentence);
+        } finally {
+            TOKENIZERS.release(tokenizer);
+            Metrics.global().record(Stage.TOKENIZATION, System.nanoTime() - elapsed);
+        }
+    }
+
+    /**
+     * Splits the given {@code sentence} into tokens and returns their spans,
+     * so that tokens can be inspected without creating substrings.
+     *
+     * @param sentence the sentence to split
+     * @return the spans of the tokens in the given {@code sentence}
+     */
+    public static Span[] tokenizePos(String sentence) {
+        requireNonNull(sentence, "'sentence' is null");
+
+        long elapsed = System.nanoTime();
+        Tokenizer tokenizer = TOKENIZERS.borrow();
+        try {
+            return tokenizer.tokenizePos(sentence);
+        } finally {
+            TOKENIZERS.release(tokenizer);
+            Metrics.global().record(Stage.TOKENIZATION, System.nanoTime() - elapsed);
+        }
+    }
+
+    /**
+     * Returns the POS tags of the given {@code tokens}.
+     *
+     * @param tokens the tokens of a sentence
+     * @return the POS tags of the given {@code tokens}
+     */
+    public static String[] tag(String[] tokens) {
+        requireNonNull(tokens, "'tokens' is null");
+
+        long elapsed = System.nanoTime();
+        POSTagger tagger = TAGGERS.borrow();
+        try {
+            return tagger.tag(tokens);
+        } finally {
+            TAGGERS.release(tagger);
+            Metrics.global().record(Stage.TAGGING, System.nanoTime() - elapsed);
+        }
+    }
+
+    /**
+     * An unbounded, lock-free pool of non thread-safe components.
+     */
+    private static final class Pool<T> {
+        private final Queue<T> idle = new ConcurrentLinkedQueue<>();
+        private final Supplier<T> factory;
+
+        private Pool(Supplier<T> factory) {
+            this.factory = factory;
+        }
+
+        private T borrow() {
+            T instance = idle.poll();
+            return instance != null ? instance : factory.get();
+        }
+
+        private void release(T instance) {
+            idle.offer(instance);
+        }
+    }
+}
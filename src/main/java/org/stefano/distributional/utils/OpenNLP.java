@@ -16,85 +16,94 @@ import java.io.IOException;
 import java.io.InputStream;
 
 /**
- * TODO Replace with proper description...
+ * Lazily initialised OpenNLP models.
+ * <p>
+ * Each model is immutable and loaded at most once, so it can be shared by all the threads.
+ * The components built upon the models are not thread-safe instead: each thread must use its own instance
+ * (see {@link NLPPipeline}).
  * <p>
  * Created by stefano on 23/01/2017.
  */
 public class OpenNLP {
 
     private static final Logger logger = LoggerFactory.getLogger(OpenNLP.class);
-    private static SentenceDetector detector = null;
-    private static Tokenizer tokenizer = null;
-    private static POSTagger tagger = null;
 
     private OpenNLP() {
         throw new UnsupportedOperationException("'OpenNLP' class should not be instantiated");
     }
 
-    public static SentenceDetector getSentenceDetector() {
-        if (detector == null) {
-            InputStream stream = OpenNLP.class.getResourceAsStream("/en-sent.bin");
-            try {
-                SentenceModel model = new SentenceModel(stream);
-                detector = new SentenceDetectorME(model);
-                logger.info("OpenNLP sentence detector lazily initialised");
+    /**
+     * Returns a new {@link SentenceDetector} based on the shared sentence model.
+     *
+     * @return a new {@link SentenceDetector}
+     */
+    public static SentenceDetector newSentenceDetector() {
+        return new SentenceDetectorME(SentenceHolder.MODEL);
+    }
+
+    /**
+     * Returns a new {@link Tokenizer} based on the shared tokenizer model.
+     *
+     * @return a new {@link Tokenizer}
+     */
+    public static Tokenizer newTokenizer() {
+        return new TokenizerME(TokenizerHolder.MODEL);
+    }
+
+    /**
+     * Returns a new {@link POSTagger} based on the shared POS model.
+     *
+     * @return a new {@link POSTagger}
+     */
+    public static POSTagger newPOSTagger() {
+        return new POSTaggerME(TaggerHolder.MODEL);
+    }
+
+    private static InputStream open(String resource) {
+        InputStream stream = OpenNLP.class.getResourceAsStream(resource);
+        if (stream == null) {
+            throw new IllegalStateException("OpenNLP model not found: " + resource);
+        }
+        return stream;
+    }
+
+    private static final class SentenceHolder {
+        private static final SentenceModel MODEL;
+
+        static {
+            try (InputStream stream = open("/en-sent.bin")) {
+                MODEL = new SentenceModel(stream);
+                logger.info("OpenNLP sentence model lazily initialised");
             } catch (IOException e) {
-                e.printStackTrace();
-            } finally {
-                if (stream != null) {
-                    try {
-                        stream.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
+                throw new IllegalStateException("OpenNLP sentence model can't be loaded", e);
             }
         }
-        return detector;
     }
 
-    public static Tokenizer getTokenizer() {
-        if (tokenizer == null) {
-            InputStream stream = OpenNLP.class.getResourceAsStream("/en-token.bin");
-            try {
-                TokenizerModel model = new TokenizerModel(stream);
-                tokenizer = new TokenizerME(model);
-                logger.info("OpenNLP tokenizer lazily initialised");
+    private static final class TokenizerHolder {
+        private static final TokenizerModel MODEL;
+
+        static {
+            try (InputStream stream = open("/en-token.bin")) {
+                MODEL = new TokenizerModel(stream);
+                logger.info("OpenNLP tokenizer model lazily initialised");
             } catch (IOException e) {
-                e.printStackTrace();
-            } finally {
-                if (stream != null) {
-                    try {
-                        stream.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
+                throw new IllegalStateException("OpenNLP tokenizer model can't be loaded", e);
             }
         }
-        return tokenizer;
     }
 
-    public static POSTagger getPOSTagger() {
-        if (tagger == null) {
-            InputStream stream = OpenNLP.class.getResourceAsStream("/en-pos-maxent.bin");
-            try {
-                POSModel model = new POSModel(stream);
-                tagger = new POSTaggerME(model);
-                logger.info("OpenNLP POS tagger lazily initialised");
+    private static final class TaggerHolder {
+        private static final POSModel MODEL;
+
+        static {
+            try (InputStream stream = open("/en-pos-maxent.bin")) {
+                MODEL = new POSModel(stream);
+                logger.info("OpenNLP POS model lazily initialised");
             } catch (IOException e) {
-                e.printStackTrace();
-            } finally {
-                if (stream != null) {
-                    try {
-                        stream.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
+                throw new IllegalStateException("OpenNLP POS model can't be loaded", e);
             }
         }
-        return tagger;
     }
 
 }
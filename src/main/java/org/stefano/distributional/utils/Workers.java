@@ -0,0 +1,61 @@
+package org.stefano.distributional.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory methods for the {@link ExecutorService}s that run summarisation tasks.
+ */
+public class Workers {
+
+    private static final Logger logger = LoggerFactory.getLogger(Workers.class);
+
+    private Workers() {
+        throw new UnsupportedOperationException("'Workers' class should not be instantiated");
+    }
+
+    /**
+     * Returns a new {@link ExecutorService} that starts a virtual thread for each task if the running JVM supports
+     * them, or a fixed pool of daemon threads (one per available processor) otherwise.
+     *
+     * @param name the prefix for the names of the threads of the pool, if any
+     * @return a new {@link ExecutorService}
+     */
+    public static ExecutorService newExecutor(String name) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ExecutorService executor = (ExecutorService) factory.invoke(null);
+            logger.debug("Using virtual threads for '{}'", name);
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            return newFixedExecutor(name, Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /**
+     * Returns a new {@link ExecutorService} with a fixed pool of {@code size} daemon threads.
+     *
+     * @param name the prefix for the names of the threads of the pool
+     * @param size the number of threads of the pool
+     * @return a new {@link ExecutorService}
+     */
+    public static ExecutorService newFixedExecutor(String name, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("'size' is not positive: " + size);
+        }
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        logger.debug("Using {} platform thread/s for '{}'", size, name);
+        return Executors.newFixedThreadPool(size, factory);
+    }
+}